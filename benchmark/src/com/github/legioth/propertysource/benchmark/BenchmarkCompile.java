@@ -0,0 +1,118 @@
+package com.github.legioth.propertysource.benchmark;
+
+import java.util.List;
+
+import com.github.legioth.propertysource.rebind.PropertySourceGenerator;
+import com.github.legioth.propertysource.testing.InMemoryGeneratorContext;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.InMemoryTypeOracle;
+import com.google.gwt.core.ext.RebindResult;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.TypeOracle;
+import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
+
+/**
+ * The types and properties of a simulated compile. Each benchmark iteration
+ * runs a new generator against the same type oracle, which is only built once
+ * since compiling the sources is far slower than the generator itself.
+ */
+public class BenchmarkCompile {
+    /**
+     * The selection property that defines the permutations.
+     */
+    public static final String VARIANT_PROPERTY = "benchmark.variant";
+
+    /**
+     * Number of permutations, i.e. the number of values of
+     * {@link #VARIANT_PROPERTY}.
+     */
+    public static final int PERMUTATIONS = 4;
+
+    /**
+     * Number of configuration properties named benchmark.list0,
+     * benchmark.list1 and so on.
+     */
+    public static final int LIST_PROPERTIES = 10;
+
+    private final TreeLogger logger;
+    private final TypeOracle typeOracle;
+    private final List<InMemoryPropertyOracle> permutations;
+
+    /**
+     * Compiles the sources of a simulated compile.
+     *
+     * @param sources
+     *            the sources to compile
+     * @param configuration
+     *            names and values of additional configuration properties, as
+     *            name value pairs
+     */
+    public BenchmarkCompile(InMemoryTypeOracle sources,
+            String... configuration) {
+        PrintWriterTreeLogger printLogger = new PrintWriterTreeLogger();
+        printLogger.setMaxDetail(TreeLogger.WARN);
+        logger = printLogger;
+
+        typeOracle = sources.build(logger);
+
+        String[] variants = new String[PERMUTATIONS];
+        for (int i = 0; i < variants.length; i++) {
+            variants[i] = "v" + i;
+        }
+        InMemoryPropertyOracle propertyOracle = new InMemoryPropertyOracle()
+                .setSelectionProperty(VARIANT_PROPERTY, variants);
+        for (int i = 0; i < LIST_PROPERTIES; i++) {
+            propertyOracle.setConfigurationProperty("benchmark.list" + i, "a"
+                    + i, "b" + i, "v" + i % PERMUTATIONS, "c" + i, "d" + i);
+        }
+        for (int i = 0; i < configuration.length; i += 2) {
+            propertyOracle.setConfigurationProperty(configuration[i],
+                    configuration[i + 1]);
+        }
+        permutations = propertyOracle.getPermutations();
+    }
+
+    /**
+     * Generates a type for every permutation with a new generator, like a
+     * full compile does.
+     *
+     * @param typeName
+     *            the name of the type to generate
+     * @return the name of the class used by the last permutation
+     */
+    public String generateAllPermutations(String typeName)
+            throws UnableToCompleteException {
+        PropertySourceGenerator generator = new PropertySourceGenerator();
+        InMemoryGeneratorContext context = new InMemoryGeneratorContext(
+                typeOracle, null);
+        String resultTypeName = null;
+        for (InMemoryPropertyOracle permutation : permutations) {
+            context.setPropertyOracle(permutation);
+            RebindResult result = generator.generateIncrementally(logger,
+                    context, typeName);
+            resultTypeName = result.getResultTypeName();
+        }
+        return resultTypeName;
+    }
+
+    /**
+     * Generates a type for one permutation with a new generator, like a
+     * compile with only one permutation does.
+     *
+     * @param typeName
+     *            the name of the type to generate
+     * @param permutation
+     *            the index of the permutation
+     * @return the name of the generated class
+     */
+    public String generatePermutation(String typeName, int permutation)
+            throws UnableToCompleteException {
+        InMemoryPropertyOracle propertyOracle = permutations.get(permutation
+                % permutations.size());
+        InMemoryGeneratorContext context = new InMemoryGeneratorContext(
+                typeOracle, propertyOracle);
+        return new PropertySourceGenerator().generateIncrementally(logger,
+                context, typeName).getResultTypeName();
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.legioth.propertysource.benchmark;
+
+/**
+ * The kinds of methods in the generated property source interfaces.
+ */
+public enum Conversion {
+    /**
+     * Boolean methods that compare the variant to a list of true values.
+     */
+    BOOLEAN {
+        @Override
+        protected void writeMethod(StringBuilder source, int index) {
+            source.append("    @Property(\"")
+                    .append(BenchmarkCompile.VARIANT_PROPERTY).append("\")\n");
+            source.append("    @BooleanConversion(trueValues = { \"v")
+                    .append(index % BenchmarkCompile.PERMUTATIONS)
+                    .append("\", \"x").append(index).append("\" })\n");
+            source.append("    boolean method").append(index).append("();\n");
+        }
+    },
+
+    /**
+     * Boolean methods that match the variant against a different pattern for
+     * each method.
+     */
+    REGEX {
+        @Override
+        protected void writeMethod(StringBuilder source, int index) {
+            source.append("    @Property(\"")
+                    .append(BenchmarkCompile.VARIANT_PROPERTY).append("\")\n");
+            source.append("    @BooleanConversion(truePattern = \"v[0-")
+                    .append(index % BenchmarkCompile.PERMUTATIONS)
+                    .append("]|x").append(index).append("\")\n");
+            source.append("    boolean method").append(index).append("();\n");
+        }
+    },
+
+    /**
+     * List methods that return the values of a configuration property.
+     */
+    LIST {
+        @Override
+        protected void writeMethod(StringBuilder source, int index) {
+            source.append("    @Property(\"benchmark.list")
+                    .append(index % BenchmarkCompile.LIST_PROPERTIES)
+                    .append("\")\n");
+            source.append("    List<String> method").append(index)
+                    .append("();\n");
+        }
+    };
+
+    private static final String PACKAGE_NAME = "com.github.legioth.propertysource.benchmark.client";
+
+    /**
+     * Gets the name of the interface with the given number of methods.
+     */
+    public String getTypeName(int methods) {
+        String name = name();
+        return PACKAGE_NAME + "." + name.charAt(0)
+                + name.substring(1).toLowerCase() + methods;
+    }
+
+    /**
+     * Creates the source of an interface with the given number of methods.
+     */
+    public String createSource(int methods) {
+        String typeName = getTypeName(methods);
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        source.append("import java.util.List;\n");
+        source.append("import com.github.legioth.propertysource.client.PropertySource;\n");
+        source.append("import com.github.legioth.propertysource.client.annotations.*;\n\n");
+        source.append("public interface ")
+                .append(typeName.substring(PACKAGE_NAME.length() + 1))
+                .append(" extends PropertySource {\n");
+        for (int i = 0; i < methods; i++) {
+            writeMethod(source, i);
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    protected abstract void writeMethod(StringBuilder source, int index);
+}
@@ -0,0 +1,66 @@
+package com.github.legioth.propertysource.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.legioth.propertysource.testing.InMemoryTypeOracle;
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+/**
+ * Cost of generating property source interfaces of different sizes. Results
+ * are reported per permutation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark {
+
+    @Param({ "10", "100", "1000" })
+    public int methods;
+
+    @Param
+    public Conversion conversion;
+
+    private BenchmarkCompile compile;
+    private String typeName;
+    private int permutation;
+
+    @Setup
+    public void setUp() {
+        typeName = conversion.getTypeName(methods);
+        compile = new BenchmarkCompile(new InMemoryTypeOracle().addSource(
+                typeName, conversion.createSource(methods)));
+    }
+
+    /**
+     * All permutations of a compile, sharing one generator.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCompile.PERMUTATIONS)
+    public String allPermutations() throws UnableToCompleteException {
+        return compile.generateAllPermutations(typeName);
+    }
+
+    /**
+     * One permutation with a new generator.
+     */
+    @Benchmark
+    public String singlePermutation() throws UnableToCompleteException {
+        return compile.generatePermutation(typeName, permutation++);
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.legioth.propertysource.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the generator benchmarks with allocation profiling, so that both the
+ * time and the allocated bytes per permutation are reported. Accepts the
+ * usual JMH command line options, e.g. a regular expression for selecting
+ * the benchmarks to run.
+ */
+public class GeneratorBenchmarks {
+    public static void main(String[] args) throws RunnerException,
+            CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLineOptions);
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            options.include(GeneratorBenchmarks.class.getPackage().getName()
+                    + ".*");
+        }
+        options.addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.legioth.propertysource.benchmark.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.client.PropertySnapshot;
+import com.github.legioth.propertysource.client.annotations.ArgumentValues;
+
+/**
+ * Dynamic property source where every method does a noticeable amount of
+ * work, like dynamic methods that build lookup tables or parse resources.
+ */
+public class HeavyDynamicPropertySource extends DynamicPropertySource {
+
+    public String lookupTable() {
+        String variant = getSelectionPropertyValue("benchmark.variant");
+        StringBuilder table = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            table.append(Integer.toHexString((variant + i).hashCode()));
+        }
+        return Integer.toHexString(table.toString().hashCode());
+    }
+
+    public List<String> sortedConfiguration() {
+        List<String> values = new ArrayList<String>();
+        for (String value : getConfigurationPropertyValues("benchmark.list0")) {
+            for (int i = 0; i < 5000; i++) {
+                values.add(Integer.toString((value + i).hashCode(), 36));
+            }
+        }
+        Collections.sort(values);
+        return values.subList(0, 10);
+    }
+
+    public int primeCount() {
+        String variant = getSelectionPropertyValue("benchmark.variant");
+        int limit = 100000 + 1000 * variant.length();
+        boolean[] composite = new boolean[limit];
+        int count = 0;
+        for (int i = 2; i < limit; i++) {
+            if (!composite[i]) {
+                count++;
+                for (long j = (long) i * i; j < limit; j += i) {
+                    composite[(int) j] = true;
+                }
+            }
+        }
+        return count;
+    }
+
+    public boolean isVariantListed() {
+        PropertySnapshot properties = getPropertySnapshot("benchmark.variant",
+                "benchmark.list0", "benchmark.list1");
+        String variant = properties.getValue("benchmark.variant");
+        for (String value : properties.getValues("benchmark.list0")) {
+            if (value.matches(".*" + variant.substring(1) + ".*")) {
+                return true;
+            }
+        }
+        return properties.getValues("benchmark.list1").contains(variant);
+    }
+
+    @ArgumentValues({ "v0", "v1", "v2", "v3" })
+    public int distance(String value) {
+        String variant = getSelectionPropertyValue("benchmark.variant");
+        int[][] distances = new int[value.length() + 1][variant.length() + 1];
+        for (int i = 0; i <= value.length(); i++) {
+            for (int j = 0; j <= variant.length(); j++) {
+                if (i == 0 || j == 0) {
+                    distances[i][j] = i + j;
+                } else {
+                    int substitution = value.charAt(i - 1) == variant
+                            .charAt(j - 1) ? 0 : 1;
+                    distances[i][j] = Math.min(distances[i - 1][j - 1]
+                            + substitution, Math.min(distances[i - 1][j] + 1,
+                            distances[i][j - 1] + 1));
+                }
+            }
+        }
+        return distances[value.length()][variant.length()];
+    }
+}
@@ -12,11 +12,16 @@ import com.google.gwt.core.shared.GWT;
  * <p>
  * Property values can be accessed using
  * {@link #getSelectionPropertyValue(String)} and
- * {@link #getConfigurationPropertyValues(String)}. These methods can only be
- * used during GWT compilation.
+ * {@link #getConfigurationPropertyValues(String)}, or for many properties at
+ * once using {@link #getPropertySnapshot(String...)}. Text resources from the
+ * class path can be read using {@link #readResource(String)}. These methods
+ * can only be used during GWT compilation. Everything read through them is
+ * recorded so that a result is only reused when its inputs are the same.
  * <p>
  * Supported return types for the methods are <code>String</code>,
- * <code>boolean</code> and <code>List&lt;String&gt</code>.
+ * <code>List&lt;String&gt;</code>, <code>Set&lt;String&gt;</code>,
+ * <code>Map&lt;String, String&gt;</code>, all primitive types and their boxed
+ * counterparts, and enum types.
  * 
  * 
  * @see PropertySource
@@ -31,6 +36,10 @@ public class DynamicPropertySource implements PropertySource {
         String getSelectionPropertyFallback(String name);
 
         List<String> getConfigurationPropertyValues(String name);
+
+        String readResource(String name);
+
+        PropertySnapshot getSnapshot(String[] names);
     }
 
     // Implementation gets injected here when generating the concrete class
@@ -47,7 +56,7 @@ public class DynamicPropertySource implements PropertySource {
     protected String getSelectionPropertyValue(String name) {
         if (GWT.isClient()) {
             throw new IllegalStateException(
-                    "Only supported during the comile phase.");
+                    "Only supported during the compile phase.");
         } else {
             return proxy.getSelectionPropertyValue(name);
         }
@@ -64,7 +73,7 @@ public class DynamicPropertySource implements PropertySource {
     protected String getSelectionPropertyFallback(String name) {
         if (GWT.isClient()) {
             throw new IllegalStateException(
-                    "Only supported during the comile phase.");
+                    "Only supported during the compile phase.");
         } else {
             return proxy.getSelectionPropertyFallback(name);
         }
@@ -81,9 +90,47 @@ public class DynamicPropertySource implements PropertySource {
     protected List<String> getConfigurationPropertyValues(String name) {
         if (GWT.isClient()) {
             throw new IllegalStateException(
-                    "Only supported during the comile phase.");
+                    "Only supported during the compile phase.");
         } else {
             return proxy.getConfigurationPropertyValues(name);
         }
     }
+
+    /**
+     * Gets the values of many selection and configuration properties at once.
+     * The snapshot is created once per permutation and shared by all methods
+     * that ask for the same properties, which makes it cheaper than reading
+     * the properties one by one when a method uses many properties.
+     * 
+     * @param names
+     *            the names of the properties to include
+     * @return an immutable snapshot of the property values
+     */
+    protected PropertySnapshot getPropertySnapshot(String... names) {
+        if (GWT.isClient()) {
+            throw new IllegalStateException(
+                    "Only supported during the compile phase.");
+        } else {
+            return proxy.getSnapshot(names);
+        }
+    }
+
+    /**
+     * Reads a UTF-8 encoded text resource from the class path. Resources
+     * should be read using this method rather than directly from a class
+     * loader so that changes to them are noticed.
+     * 
+     * @param name
+     *            the name of the resource, e.g. "com/example/values.txt"
+     * @return the content of the resource, or <code>null</code> if there is
+     *         no such resource
+     */
+    protected String readResource(String name) {
+        if (GWT.isClient()) {
+            throw new IllegalStateException(
+                    "Only supported during the compile phase.");
+        } else {
+            return proxy.readResource(name);
+        }
+    }
 }
@@ -0,0 +1,99 @@
+package com.github.legioth.propertysource.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Immutable view of the values of a set of properties for the permutation
+ * being compiled. Selection properties have their current value as the only
+ * value, while configuration properties have all their values. Properties that
+ * are not defined are not included.
+ * <p>
+ * Snapshots are created using
+ * {@link DynamicPropertySource#getPropertySnapshot(String...)} and are only
+ * available during GWT compilation.
+ */
+public final class PropertySnapshot {
+    private final Map<String, List<String>> values;
+
+    /**
+     * Creates a snapshot of the given property values.
+     * 
+     * @param values
+     *            a map from property name to the values of the property
+     */
+    public PropertySnapshot(Map<String, ? extends List<String>> values) {
+        Map<String, List<String>> copy = new LinkedHashMap<String, List<String>>();
+        for (Entry<String, ? extends List<String>> entry : values.entrySet()) {
+            copy.put(entry.getKey(), Collections
+                    .unmodifiableList(new ArrayList<String>(entry.getValue())));
+        }
+        this.values = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Gets the names of the properties in this snapshot, in the order they
+     * were requested.
+     */
+    public Set<String> getNames() {
+        return values.keySet();
+    }
+
+    /**
+     * Checks whether the named property is defined.
+     */
+    public boolean contains(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * Gets the only value of the named property.
+     * 
+     * @param name
+     *            the name of the property
+     * @return the property value as a string
+     * @throws IllegalArgumentException
+     *             if the property is not in the snapshot or has more than one
+     *             value
+     */
+    public String getValue(String name) {
+        List<String> propertyValues = getValues(name);
+        if (propertyValues.size() != 1) {
+            throw new IllegalArgumentException("Property " + name
+                    + " does not have exactly one value");
+        }
+        return propertyValues.get(0);
+    }
+
+    /**
+     * Gets the values of the named property.
+     * 
+     * @param name
+     *            the name of the property
+     * @return an unmodifiable list of the property values
+     * @throws IllegalArgumentException
+     *             if the property is not in the snapshot
+     */
+    public List<String> getValues(String name) {
+        List<String> propertyValues = values.get(name);
+        if (propertyValues == null) {
+            throw new IllegalArgumentException("Property " + name
+                    + " is not in the snapshot");
+        }
+        return propertyValues;
+    }
+
+    /**
+     * Gets all values in this snapshot.
+     * 
+     * @return an unmodifiable map from property name to property values
+     */
+    public Map<String, List<String>> asMap() {
+        return values;
+    }
+}
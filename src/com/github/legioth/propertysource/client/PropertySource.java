@@ -25,6 +25,26 @@ import com.github.legioth.propertysource.client.annotations.Property;
  * <code>false</code> for the value <code>"false"</code> and fail to compile if
  * the property has some other value. Other ways of converting string property
  * values to a boolean can be defined using @{@link BooleanConversion}.
+ * <p>
+ * Methods can also return any primitive type, the corresponding boxed type or
+ * an enum type. The value of a single value property is then parsed during
+ * compilation, e.g. using <code>Integer.parseInt</code> for <code>int</code>
+ * or by finding the enum constant with the same name. Compilation fails if
+ * the value can't be parsed.
+ * <p>
+ * A method returning <code>List&lt;String&gt</code> returns the same
+ * unmodifiable list instance every time it is called. The same applies for
+ * <code>Set&lt;String&gt</code> and for <code>Map&lt;String, String&gt</code>,
+ * for which each property value should be in the format
+ * <code>key=value</code>.
+ * <p>
+ * A method can also take one <code>String</code> argument. If it returns
+ * <code>boolean</code>, it tells whether the argument is one of the property
+ * values, e.g. <code>boolean isUserAgent(String userAgent)</code>. If it
+ * returns <code>String</code>, it looks up the argument in
+ * <code>key=value</code> entries and returns the value, or <code>null</code>
+ * if there is no such key. The lookup is done without creating any objects and
+ * the result can be inlined when the argument is a constant.
  * 
  * @see Property
  * @see Namespace
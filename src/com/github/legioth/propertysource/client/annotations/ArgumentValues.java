@@ -0,0 +1,30 @@
+package com.github.legioth.propertysource.client.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+
+/**
+ * Defines the argument values for which a method with an argument in a
+ * {@link DynamicPropertySource} subclass is evaluated during compilation. The
+ * generated method returns the value computed for the given argument and
+ * throws <code>IllegalArgumentException</code> for any other argument.
+ * <p>
+ * This annotation is required for <code>String</code> and <code>int</code>
+ * arguments. Methods with an enum argument are by default evaluated for all
+ * constants of the enum.
+ */
+@Target(ElementType.METHOD)
+@Documented
+public @interface ArgumentValues {
+    /**
+     * The argument values to evaluate the method for. <code>int</code>
+     * arguments are parsed using <code>Integer.parseInt</code> and enum
+     * arguments are the names of enum constants.
+     * 
+     * @return the argument values
+     */
+    public String[] value();
+}
@@ -0,0 +1,37 @@
+package com.github.legioth.propertysource.client.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+import com.github.legioth.propertysource.client.PropertySource;
+
+/**
+ * Makes methods in an interface extending {@link PropertySource} read their
+ * property from the host page when first used instead of having it compiled
+ * into the permutation. The value is looked up from the global JavaScript
+ * object named by {@link #value()}, e.g.
+ * <code>window.propertySource["foo.bool"]</code>, which may also contain an
+ * array for properties with multiple values. If the object has no value for
+ * the property,
+ * <code>&lt;meta name="gwt:property" content="foo.bool=true"&gt;</code> tags
+ * are used instead.
+ * <p>
+ * The value is converted using the same rules as for values read during
+ * compilation, e.g. as defined by @{@link BooleanConversion}, and the result
+ * is remembered for subsequent calls. If the host page doesn't define the
+ * property, the value of the property during compilation is used if there is
+ * such a property, and otherwise an exception is thrown.
+ * <p>
+ * When used on a type, the annotation applies to all methods in that type.
+ */
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Documented
+public @interface HostPageProperty {
+    /**
+     * The name of the global JavaScript object to read property values from.
+     * 
+     * @return the name of the JavaScript object
+     */
+    public String value() default "propertySource";
+}
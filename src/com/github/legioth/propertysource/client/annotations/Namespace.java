@@ -2,6 +2,8 @@ package com.github.legioth.propertysource.client.annotations;
 
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import com.github.legioth.propertysource.client.PropertySource;
@@ -18,6 +20,7 @@ import com.github.legioth.propertysource.client.PropertySource;
  * <code>mode</code>, that method will return the value of the property
  * <code>com.example.mode</code>.
  */
+@Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.TYPE)
 @Documented
 public @interface Namespace {
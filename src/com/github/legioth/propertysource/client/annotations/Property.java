@@ -2,6 +2,8 @@ package com.github.legioth.propertysource.client.annotations;
 
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 import com.github.legioth.propertysource.client.PropertySource;
@@ -20,6 +22,7 @@ import com.github.legioth.propertysource.client.PropertySource;
  * @see PropertySource
  * @see Namespace
  */
+@Retention(RetentionPolicy.RUNTIME)
 @Target({ ElementType.METHOD, ElementType.TYPE })
 @Documented
 public @interface Property {
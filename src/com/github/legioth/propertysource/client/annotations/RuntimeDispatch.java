@@ -0,0 +1,30 @@
+package com.github.legioth.propertysource.client.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+import com.github.legioth.propertysource.client.PropertySource;
+
+/**
+ * Makes methods in an interface extending {@link PropertySource} choose their
+ * return value at runtime instead of getting a separate implementation for
+ * each value of the selection property they read. The return value is
+ * computed at compile time for every possible value of the property, and the
+ * generated method picks the right one based on the property value of the
+ * running permutation. The property value is only read once.
+ * <p>
+ * This is intended for properties that are collapsed using
+ * <code>&lt;collapse-property&gt;</code>, since the same implementation can
+ * then be used for all the collapsed values instead of having the compiler
+ * switch between multiple implementations.
+ * <p>
+ * When used on a type, the annotation applies to all methods in that type.
+ * The annotation can only be used for methods that read a selection
+ * property.
+ */
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Documented
+public @interface RuntimeDispatch {
+
+}
@@ -0,0 +1,33 @@
+package com.github.legioth.propertysource.client.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+
+import com.github.legioth.propertysource.client.PropertySource;
+
+/**
+ * Generates a class with a static method for each method in the annotated
+ * {@link PropertySource} type. The static methods delegate to an instance
+ * created using <code>GWT.create</code>, which the GWT compiler inlines so
+ * that each call is replaced by the constant value of the property. Outside
+ * compiled JavaScript, the same instance is reused for all calls.
+ * <p>
+ * The class is generated by an annotation processor that is found
+ * automatically by <code>javac</code> when PropertySource is on the class
+ * path. For an interface named <code>BrowserProperties</code>, the generated
+ * class is by default named <code>BrowserPropertiesAccessors</code> and can be
+ * used as <code>BrowserPropertiesAccessors.isGecko()</code>.
+ */
+@Target(ElementType.TYPE)
+@Documented
+public @interface StaticAccessors {
+    /**
+     * The simple name of the generated class. By default, the name of the
+     * annotated type followed by <code>Accessors</code> is used. The names of
+     * any enclosing types are added as a prefix separated by <code>_</code>.
+     * 
+     * @return the name of the generated class
+     */
+    public String value() default "";
+}
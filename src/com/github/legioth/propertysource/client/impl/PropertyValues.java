@@ -0,0 +1,238 @@
+package com.github.legioth.propertysource.client.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.legioth.propertysource.client.annotations.HostPageProperty;
+import com.google.gwt.core.client.JsArrayString;
+
+/**
+ * Reads property values from the host page and converts them to return
+ * values at runtime for methods annotated with {@link HostPageProperty}. The
+ * conversions follow the same rules as when property values are converted
+ * during compilation. Only intended to be used by generated code.
+ */
+public class PropertyValues {
+
+    private PropertyValues() {
+        // Only static helpers
+    }
+
+    /**
+     * Reads the values of a property from the host page. The value is first
+     * looked up from the named global JavaScript object, where the value may
+     * be either a single value or an array of values. If not found there, the
+     * values are read from
+     * <code>&lt;meta name="gwt:property" content="name=value"&gt;</code> tags.
+     * 
+     * @param objectName
+     *            the name of the global JavaScript object to read from
+     * @param propertyName
+     *            the name of the property
+     * @param fallback
+     *            the values to use if the host page does not define the
+     *            property, or <code>null</code> if the host page must define
+     *            the property
+     * @return the property values
+     */
+    public static List<String> read(String objectName, String propertyName,
+            List<String> fallback) {
+        JsArrayString values = readFromObject(objectName, propertyName);
+        if (values == null) {
+            values = readFromMetaTags(propertyName);
+        }
+
+        if (values != null) {
+            List<String> list = new ArrayList<String>();
+            for (int i = 0; i < values.length(); i++) {
+                list.add(values.get(i));
+            }
+            return Collections.unmodifiableList(list);
+        } else if (fallback != null) {
+            return fallback;
+        } else {
+            throw new IllegalStateException("Property " + propertyName
+                    + " is not defined in the host page");
+        }
+    }
+
+    private static native JsArrayString readFromObject(String objectName,
+            String propertyName)
+    /*-{
+        var object = $wnd[objectName];
+        if (object == null || object[propertyName] == null) {
+            return null;
+        }
+        var value = object[propertyName];
+        var values = [];
+        if (Object.prototype.toString.call(value) == '[object Array]') {
+            for (var i = 0; i < value.length; i++) {
+                values.push(String(value[i]));
+            }
+        } else {
+            values.push(String(value));
+        }
+        return values;
+    }-*/;
+
+    private static native JsArrayString readFromMetaTags(String propertyName)
+    /*-{
+        var metas = $doc.getElementsByTagName('meta');
+        var values = [];
+        for (var i = 0; i < metas.length; i++) {
+            var meta = metas[i];
+            if (meta.getAttribute('name') != 'gwt:property') {
+                continue;
+            }
+            var content = meta.getAttribute('content') || '';
+            var separator = content.indexOf('=');
+            if (separator != -1
+                    && content.substring(0, separator) == propertyName) {
+                values.push(content.substring(separator + 1));
+            }
+        }
+        return values.length == 0 ? null : values;
+    }-*/;
+
+    /**
+     * Gets the only value of a property.
+     * 
+     * @param typeName
+     *            the name of the converted type, used in the error message
+     */
+    public static String getSingle(List<String> values, String typeName) {
+        if (values.size() != 1) {
+            throw new IllegalArgumentException(typeName
+                    + " only supported for properties with only one value");
+        }
+        return values.get(0);
+    }
+
+    public static boolean toBoolean(List<String> values, String truePattern,
+            String[] trueValues, boolean matchAll) {
+        for (String value : values) {
+            boolean match = true;
+            boolean useDefaultLogic = true;
+            if (truePattern.length() != 0) {
+                match &= value.matches(truePattern);
+                useDefaultLogic = false;
+            }
+            if (trueValues.length != 0) {
+                match &= isTrueValue(value, trueValues);
+                useDefaultLogic = false;
+            }
+
+            if (useDefaultLogic) {
+                match &= isTrueValue(value);
+            }
+
+            if (matchAll && !match) {
+                return false;
+            } else if (match && !matchAll) {
+                return true;
+            }
+        }
+        return matchAll;
+    }
+
+    private static boolean isTrueValue(String value, String[] trueValues) {
+        for (String trueValue : trueValues) {
+            if (trueValue.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTrueValue(String value) {
+        if (value.toLowerCase().equals("true") || value.equals("1")) {
+            return true;
+        } else if (value.toLowerCase().equals("false") || value.equals("0")) {
+            return false;
+        } else {
+            throw new IllegalArgumentException("Can not interpret " + value
+                    + " as a boolean");
+        }
+    }
+
+    public static char toChar(String value) {
+        if (value.length() != 1) {
+            throw new IllegalArgumentException("Can not interpret " + value
+                    + " as char");
+        }
+        return value.charAt(0);
+    }
+
+    public static Set<String> toSet(List<String> values) {
+        return Collections.unmodifiableSet(new LinkedHashSet<String>(values));
+    }
+
+    /**
+     * Creates an unmodifiable map from alternating keys and values, keeping
+     * the order of the keys.
+     */
+    public static Map<String, String> map(String... keysAndValues) {
+        Map<String, String> entries = new LinkedHashMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            entries.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Parses values in the format <code>key=value</code>. A later entry
+     * replaces any previous entry with the same key.
+     */
+    public static Map<String, String> toMap(List<String> values) {
+        Map<String, String> entries = new LinkedHashMap<String, String>();
+        for (String value : values) {
+            int separator = value.indexOf('=');
+            if (separator == -1) {
+                throw new IllegalArgumentException("Can not interpret "
+                        + value + " as a key=value entry");
+            }
+            entries.put(value.substring(0, separator),
+                    value.substring(separator + 1));
+        }
+        return Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * Converts values to the string representation of the int they
+     * represent, e.g. <code>01</code> to <code>1</code>.
+     */
+    public static List<String> toIntValues(List<String> values) {
+        List<String> normalized = new ArrayList<String>();
+        for (String value : values) {
+            normalized.add(toIntValue(value));
+        }
+        return Collections.unmodifiableList(normalized);
+    }
+
+    /**
+     * Converts the keys of entries to the string representation of the int
+     * they represent. A later key replaces any previous key representing the
+     * same int.
+     */
+    public static Map<String, String> toIntKeys(Map<String, String> entries) {
+        Map<String, String> normalized = new LinkedHashMap<String, String>();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            normalized.put(toIntValue(entry.getKey()), entry.getValue());
+        }
+        return Collections.unmodifiableMap(normalized);
+    }
+
+    private static String toIntValue(String value) {
+        try {
+            return String.valueOf(Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Can not interpret " + value
+                    + " as int");
+        }
+    }
+}
@@ -16,6 +16,8 @@ public class DemoEntryPoint implements EntryPoint {
         String html = "<h1>Dynamic properties</h1>";
         html += "Combined: " + dynamicSource.combineProperties() + "<br />";
         html += "Is string 2: " + dynamicSource.isString2() + "<br />";
+        html += "Is string 3: " + dynamicSource.isString("string3")
+                + "<br />";
         html += "Multi conf reversed: " + dynamicSource.multiConfigReversed()
                 + "<br />";
         html += "System properties: " + dynamicSource.readSystemProperties()
@@ -5,6 +5,8 @@ import java.util.Collections;
 import java.util.List;
 
 import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.client.PropertySnapshot;
+import com.github.legioth.propertysource.client.annotations.ArgumentValues;
 
 public class MyDynamicPropertySource extends DynamicPropertySource {
 
@@ -12,9 +14,17 @@ public class MyDynamicPropertySource extends DynamicPropertySource {
         return "string2".equals(getSelectionPropertyValue("foo.string"));
     }
 
+    @ArgumentValues({ "string1", "string2", "string3" })
+    public boolean isString(String value) {
+        return value.equals(getSelectionPropertyValue("foo.string"));
+    }
+
     public String combineProperties() {
-        String value = getSelectionPropertyValue("user.agent");
-        List<String> configurationPropertyValues = getConfigurationPropertyValues("foo.multiConf");
+        PropertySnapshot properties = getPropertySnapshot("user.agent",
+                "foo.multiConf");
+        String value = properties.getValue("user.agent");
+        List<String> configurationPropertyValues = properties
+                .getValues("foo.multiConf");
 
         StringBuilder sb = new StringBuilder();
         for (String string : configurationPropertyValues) {
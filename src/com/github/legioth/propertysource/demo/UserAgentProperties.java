@@ -0,0 +1,37 @@
+package com.github.legioth.propertysource.demo;
+
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.BooleanConversion;
+import com.github.legioth.propertysource.client.annotations.Property;
+import com.github.legioth.propertysource.client.annotations.StaticAccessors;
+
+/**
+ * Used through the static methods in the generated
+ * <code>UserAgentPermutation</code> class.
+ */
+@Property("user.agent")
+@StaticAccessors("UserAgentPermutation")
+public interface UserAgentProperties extends PropertySource {
+    @BooleanConversion(truePattern = "gecko.*")
+    public boolean isGecko();
+
+    @BooleanConversion(trueValues = "safari")
+    public boolean isSafari();
+
+    @BooleanConversion(trueValues = "opera")
+    public boolean isOpera();
+
+    @BooleanConversion(truePattern = "ie\\d+")
+    public boolean isIe();
+
+    @BooleanConversion(trueValues = "ie6")
+    public boolean isIe6();
+
+    @BooleanConversion(trueValues = "ie8")
+    public boolean isIe8();
+
+    @BooleanConversion(trueValues = "ie9")
+    public boolean isIe9();
+
+    public String name();
+}
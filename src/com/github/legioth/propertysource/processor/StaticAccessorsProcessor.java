@@ -0,0 +1,185 @@
+package com.github.legioth.propertysource.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.StaticAccessors;
+
+/**
+ * Generates the static accessor classes for types annotated with
+ * @{@link StaticAccessors}.
+ */
+@SupportedAnnotationTypes("com.github.legioth.propertysource.client.annotations.StaticAccessors")
+public class StaticAccessorsProcessor extends AbstractProcessor {
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations,
+            RoundEnvironment roundEnv) {
+        for (Element element : roundEnv
+                .getElementsAnnotatedWith(StaticAccessors.class)) {
+            if (!element.getKind().isClass()
+                    && !element.getKind().isInterface()) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            try {
+                writeAccessors(type);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Kind.ERROR,
+                        "Could not write accessors: " + e.getMessage(), type);
+            }
+        }
+        return true;
+    }
+
+    private void writeAccessors(TypeElement type) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils()
+                .getPackageOf(type);
+        String packageName = packageElement.getQualifiedName().toString();
+        String className = getClassName(type);
+        String typeName = type.getQualifiedName().toString();
+
+        String qualifiedClassName = packageElement.isUnnamed() ? className
+                : packageName + "." + className;
+        PrintWriter writer = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(qualifiedClassName, type).openWriter());
+        try {
+            if (!packageElement.isUnnamed()) {
+                writer.println("package " + packageName + ";");
+                writer.println();
+            }
+            writer.println("/**");
+            writer.println(" * Static accessors for {@link " + typeName + "}.");
+            writer.println(" */");
+            String visibility = type.getModifiers().contains(Modifier.PUBLIC) ? "public "
+                    : "";
+            writer.println(visibility + "final class " + className + " {");
+            writer.println();
+            writer.println("    private static " + typeName + " cache;");
+            writer.println();
+            writer.println("    private " + className + "() {");
+            writer.println("        // Only static methods");
+            writer.println("    }");
+            writer.println();
+            writer.println("    private static " + typeName
+                    + " propertySource() {");
+            writer.println("        if (com.google.gwt.core.shared.GWT.isProdMode()) {");
+            writer.println("            // Inlined by the compiler as long as there is no null check here");
+            writer.println("            return com.google.gwt.core.shared.GWT.create("
+                    + typeName + ".class);");
+            writer.println("        } else {");
+            writer.println("            // Use the same instance every time when not compiled");
+            writer.println("            if (cache == null) {");
+            writer.println("                cache = com.google.gwt.core.shared.GWT.create("
+                    + typeName + ".class);");
+            writer.println("            }");
+            writer.println("            return cache;");
+            writer.println("        }");
+            writer.println("    }");
+
+            // Includes inherited methods, but not the ones they override
+            DeclaredType declaredType = (DeclaredType) type.asType();
+            List<? extends Element> members = processingEnv.getElementUtils()
+                    .getAllMembers(type);
+            for (ExecutableElement method : ElementFilter.methodsIn(members)) {
+                Set<Modifier> modifiers = method.getModifiers();
+                if (modifiers.contains(Modifier.STATIC)
+                        || (type.getKind() == ElementKind.CLASS && !modifiers
+                                .contains(Modifier.PUBLIC))
+                        || isFrameworkMethod(method)) {
+                    continue;
+                }
+                writer.println();
+                writeAccessor(writer, method, (ExecutableType) processingEnv
+                        .getTypeUtils().asMemberOf(declaredType, method));
+            }
+
+            writer.println("}");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Checks whether a method is declared by <code>Object</code> or by a
+     * PropertySource base type rather than by the property source itself.
+     */
+    private static boolean isFrameworkMethod(ExecutableElement method) {
+        String declaringType = ((TypeElement) method.getEnclosingElement())
+                .getQualifiedName().toString();
+        return declaringType.equals(Object.class.getName())
+                || declaringType.equals(PropertySource.class.getName())
+                || declaringType.equals(DynamicPropertySource.class.getName());
+    }
+
+    /**
+     * Writes an accessor for a method, using the parameter and return types
+     * as seen from the annotated type so that type variables of generic
+     * supertypes are replaced.
+     */
+    private static void writeAccessor(PrintWriter writer,
+            ExecutableElement method, ExecutableType methodType) {
+        List<? extends VariableElement> parameters = method.getParameters();
+        List<? extends TypeMirror> parameterTypes = methodType
+                .getParameterTypes();
+
+        StringBuilder declaration = new StringBuilder();
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i != 0) {
+                declaration.append(", ");
+                arguments.append(", ");
+            }
+            declaration.append(parameterTypes.get(i)).append(' ')
+                    .append(parameters.get(i).getSimpleName());
+            arguments.append(parameters.get(i).getSimpleName());
+        }
+
+        writer.println("    public static " + methodType.getReturnType() + " "
+                + method.getSimpleName() + "(" + declaration + ") {");
+        writer.println("        return propertySource()."
+                + method.getSimpleName() + "(" + arguments + ");");
+        writer.println("    }");
+    }
+
+    private static String getClassName(TypeElement type) {
+        String name = type.getAnnotation(StaticAccessors.class).value();
+        if (!name.isEmpty()) {
+            return name;
+        }
+
+        StringBuilder className = new StringBuilder(type.getSimpleName());
+        Element enclosing = type.getEnclosingElement();
+        while (enclosing instanceof TypeElement) {
+            className.insert(0, '_').insert(0, enclosing.getSimpleName());
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return className.append("Accessors").toString();
+    }
+}
@@ -0,0 +1,271 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.legioth.propertysource.client.impl.PropertyValues;
+import com.google.gwt.core.ext.Generator;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.JEnumConstant;
+import com.google.gwt.core.ext.typeinfo.JEnumType;
+import com.google.gwt.core.ext.typeinfo.JParameter;
+import com.google.gwt.core.ext.typeinfo.JType;
+
+/**
+ * A supported type for the argument of a property source method. Argument
+ * values are represented as strings in the same way as property values.
+ */
+abstract class ArgumentType {
+
+    private static final ArgumentType STRING = new ArgumentType("String") {
+        @Override
+        protected boolean isValid(String value) {
+            return true;
+        }
+
+        @Override
+        public String writeCondition(String parameterName, String value) {
+            return "\"" + Generator.escape(value) + "\".equals("
+                    + parameterName + ")";
+        }
+
+        @Override
+        public String writeToString(String parameterName) {
+            return parameterName;
+        }
+
+        @Override
+        public String getCaseLabel(String value) {
+            return "\"" + Generator.escape(value) + "\"";
+        }
+
+        @Override
+        public List<String> getDefaultValues() {
+            return null;
+        }
+
+        @Override
+        public Object toJavaValue(String value, Class<?> parameterType) {
+            return value;
+        }
+    };
+
+    private static final ArgumentType INT = new ArgumentType("int") {
+        @Override
+        protected boolean isValid(String value) {
+            try {
+                parse(value);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public String writeCondition(String parameterName, String value) {
+            return parameterName + " == " + parse(value);
+        }
+
+        @Override
+        public boolean isNullable() {
+            return false;
+        }
+
+        @Override
+        public String writeToString(String parameterName) {
+            return "String.valueOf(" + parameterName + ")";
+        }
+
+        @Override
+        public String getCaseLabel(String value) {
+            return String.valueOf(parse(value));
+        }
+
+        @Override
+        public List<String> getDefaultValues() {
+            return null;
+        }
+
+        @Override
+        public Object toJavaValue(String value, Class<?> parameterType) {
+            return Integer.valueOf(parse(value));
+        }
+
+        @Override
+        public String normalize(String value) {
+            return String.valueOf(parse(value));
+        }
+
+        @Override
+        public String writeNormalizeValues(String valuesExpression) {
+            return PropertyValues.class.getName() + ".toIntValues("
+                    + valuesExpression + ")";
+        }
+
+        @Override
+        public String writeNormalizeKeys(String entriesExpression) {
+            return PropertyValues.class.getName() + ".toIntKeys("
+                    + entriesExpression + ")";
+        }
+
+        // Trimmed like numeric return values
+        private int parse(String value) {
+            return Integer.parseInt(value.trim());
+        }
+    };
+
+    private static class EnumArgumentType extends ArgumentType {
+        private final JEnumType enumType;
+
+        public EnumArgumentType(JEnumType enumType) {
+            super(enumType.getName());
+            this.enumType = enumType;
+        }
+
+        @Override
+        protected boolean isValid(String value) {
+            return getDefaultValues().contains(value);
+        }
+
+        @Override
+        public String writeCondition(String parameterName, String value) {
+            return parameterName + " == "
+                    + enumType.getQualifiedSourceName() + "." + value;
+        }
+
+        @Override
+        public String writeToString(String parameterName) {
+            return "(" + parameterName + " == null ? null : " + parameterName
+                    + ".name())";
+        }
+
+        @Override
+        public String getCaseLabel(String value) {
+            return value;
+        }
+
+        @Override
+        public List<String> getDefaultValues() {
+            List<String> values = new ArrayList<String>();
+            for (JEnumConstant constant : enumType.getEnumConstants()) {
+                values.add(constant.getName());
+            }
+            return values;
+        }
+
+        @Override
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public Object toJavaValue(String value, Class<?> parameterType) {
+            return Enum.valueOf((Class) parameterType, value);
+        }
+    }
+
+    private final String typeName;
+
+    private ArgumentType(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * Finds the argument type for a method parameter.
+     * 
+     * @return the argument type, or <code>null</code> if the type of the
+     *         parameter is not supported
+     */
+    public static ArgumentType get(JParameter parameter) {
+        JType type = parameter.getType();
+        JEnumType enumType = type.isEnum();
+        if (enumType != null) {
+            return new EnumArgumentType(enumType);
+        } else if (type.getQualifiedSourceName().equals(
+                String.class.getName())) {
+            return STRING;
+        } else if (type.getQualifiedSourceName().equals("int")) {
+            return INT;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Checks that a value can be used as an argument of this type.
+     */
+    public void validate(TreeLogger logger, String value)
+            throws UnableToCompleteException {
+        if (!isValid(value)) {
+            logger.log(Type.ERROR, "Can not interpret " + value + " as "
+                    + typeName);
+            throw new UnableToCompleteException();
+        }
+    }
+
+    protected abstract boolean isValid(String value);
+
+    /**
+     * Gets a Java expression that is true when the parameter has the given
+     * value.
+     */
+    public abstract String writeCondition(String parameterName, String value);
+
+    /**
+     * Checks whether the parameter can be <code>null</code>.
+     */
+    public boolean isNullable() {
+        return true;
+    }
+
+    /**
+     * Gets a Java expression that converts the parameter to the same string
+     * representation as used for values.
+     */
+    public abstract String writeToString(String parameterName);
+
+    /**
+     * Gets the label for the value in a switch statement.
+     * 
+     * @return the case label, or <code>null</code> if a switch can't be used
+     *         for this type
+     */
+    public abstract String getCaseLabel(String value);
+
+    /**
+     * Gets all values of this type.
+     * 
+     * @return a list of values, or <code>null</code> if there are too many
+     *         values to list
+     */
+    public abstract List<String> getDefaultValues();
+
+    /**
+     * Converts a value to an argument for invoking a method through
+     * reflection.
+     */
+    public abstract Object toJavaValue(String value, Class<?> parameterType);
+
+    /**
+     * Converts a valid value to the same string representation as used by
+     * {@link #writeToString(String)}, e.g. <code>01</code> to <code>1</code>.
+     */
+    public String normalize(String value) {
+        return value;
+    }
+
+    /**
+     * Gets a Java expression that normalizes a list of values at runtime in
+     * the same way as {@link #normalize(String)}.
+     */
+    public String writeNormalizeValues(String valuesExpression) {
+        return valuesExpression;
+    }
+
+    /**
+     * Gets a Java expression that normalizes the keys of a map at runtime in
+     * the same way as {@link #normalize(String)}. A later key replaces any
+     * previous key with the same normalized value.
+     */
+    public String writeNormalizeKeys(String entriesExpression) {
+        return entriesExpression;
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import com.github.legioth.propertysource.client.annotations.BooleanConversion;
+import com.github.legioth.propertysource.client.impl.PropertyValues;
+import com.google.gwt.core.ext.Generator;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+
+/**
+ * The rules defined by a @{@link BooleanConversion} annotation, or the default
+ * rules if there is no annotation.
+ */
+class BooleanConverter {
+    private final String truePattern;
+    private final String[] trueValues;
+    private final boolean matchAll;
+
+    // null if there is no truePattern
+    private final Pattern compiledTruePattern;
+
+    private BooleanConverter(String truePattern, String[] trueValues,
+            boolean matchAll, Pattern compiledTruePattern) {
+        this.truePattern = truePattern;
+        this.trueValues = trueValues;
+        this.matchAll = matchAll;
+        this.compiledTruePattern = compiledTruePattern;
+    }
+
+    public static BooleanConverter create(TreeLogger logger, JMethod method)
+            throws UnableToCompleteException {
+        BooleanConversion booleanConversion = method
+                .getAnnotation(BooleanConversion.class);
+        if (booleanConversion == null) {
+            return new BooleanConverter("", new String[0], false, null);
+        }
+
+        String truePattern = booleanConversion.truePattern();
+        Pattern compiledTruePattern = null;
+        if (!truePattern.isEmpty()) {
+            try {
+                compiledTruePattern = PatternCache.get(truePattern);
+            } catch (PatternSyntaxException e) {
+                logger.log(Type.ERROR, "Invalid truePattern in @"
+                        + BooleanConversion.class.getSimpleName() + " for "
+                        + method.getEnclosingType().getQualifiedSourceName()
+                        + "." + method.getName() + "(): " + e.getMessage());
+                throw new UnableToCompleteException();
+            }
+        }
+
+        return new BooleanConverter(truePattern,
+                booleanConversion.trueValues(), booleanConversion.matchAll(),
+                compiledTruePattern);
+    }
+
+    public boolean convert(TreeLogger logger, List<String> propertyValueList)
+            throws UnableToCompleteException {
+        for (String propertyValue : propertyValueList) {
+            boolean match = true;
+            boolean useDefaultLogic = true;
+            if (compiledTruePattern != null) {
+                match &= compiledTruePattern.matcher(propertyValue).matches();
+                useDefaultLogic = false;
+            }
+            if (trueValues.length != 0) {
+                match &= isTrueValue(propertyValue, trueValues);
+                useDefaultLogic = false;
+            }
+
+            if (useDefaultLogic) {
+                match &= isTrueValue(logger, propertyValue);
+            }
+
+            if (matchAll && !match) {
+                // Found one that didn't match
+                return false;
+            } else if (match && !matchAll) {
+                // Found one that did match
+                return true;
+            }
+        }
+
+        // Found all without terminating
+        if (matchAll) {
+            // This means that there wasn't any problem
+            return true;
+        } else {
+            // This means no good match was found
+            return false;
+        }
+    }
+
+    /**
+     * Gets a Java expression that applies the same conversion to property
+     * values read at runtime.
+     * 
+     * @param valuesExpression
+     *            an expression for the property values as a
+     *            <code>List&lt;String&gt;</code>
+     */
+    public String getRuntimeConversion(String valuesExpression) {
+        StringBuilder expression = new StringBuilder(
+                PropertyValues.class.getName());
+        expression.append(".toBoolean(").append(valuesExpression)
+                .append(", \"").append(Generator.escape(truePattern))
+                .append("\", new String[] {");
+        for (int i = 0; i < trueValues.length; i++) {
+            if (i != 0) {
+                expression.append(",");
+            }
+            expression.append(" \"").append(Generator.escape(trueValues[i]))
+                    .append("\"");
+        }
+        expression.append(" }, ").append(matchAll).append(")");
+        return expression.toString();
+    }
+
+    /**
+     * Describes the conversion rules in a way that changes whenever the rules
+     * change.
+     */
+    @Override
+    public String toString() {
+        return "(" + truePattern + "," + Arrays.toString(trueValues) + ","
+                + matchAll + ")";
+    }
+
+    private static boolean isTrueValue(String propertyValue, String[] trueValues) {
+        for (String trueValue : trueValues) {
+            if (trueValue.equals(propertyValue)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTrueValue(TreeLogger logger, String propertyValue)
+            throws UnableToCompleteException {
+        if (propertyValue.toLowerCase().equals("true")
+                || propertyValue.equals("1")) {
+            return true;
+        } else if (propertyValue.toLowerCase().equals("false")
+                || propertyValue.equals("0")) {
+            return false;
+        } else {
+            logger.log(Type.ERROR, "Can not interpret " + propertyValue
+                    + " as a boolean");
+            throw new UnableToCompleteException();
+        }
+    }
+}
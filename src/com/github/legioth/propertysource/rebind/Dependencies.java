@@ -0,0 +1,124 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The properties and resources that were read when evaluating a type or a
+ * single dynamic method for a permutation. Dependencies may be added
+ * concurrently from different threads.
+ */
+class Dependencies {
+    private final Set<String> selectionProperties = Collections
+            .synchronizedSet(new TreeSet<String>());
+    private final Set<String> configurationProperties = Collections
+            .synchronizedSet(new TreeSet<String>());
+    private final Set<String> possibleValueProperties = Collections
+            .synchronizedSet(new TreeSet<String>());
+    private final Set<String> fallbackProperties = Collections
+            .synchronizedSet(new TreeSet<String>());
+    private final SortedMap<String, Long> resources = Collections
+            .synchronizedSortedMap(new TreeMap<String, Long>());
+
+    /**
+     * Records that the current value of a selection property was used.
+     */
+    public void addSelectionProperty(String name) {
+        selectionProperties.add(name);
+    }
+
+    /**
+     * Records that the values of a configuration property were used.
+     */
+    public void addConfigurationProperty(String name) {
+        configurationProperties.add(name);
+    }
+
+    /**
+     * Records that all possible values of a selection property were used,
+     * regardless of the current value.
+     */
+    public void addPossibleValues(String name) {
+        possibleValueProperties.add(name);
+    }
+
+    /**
+     * Records that the fallback value of a selection property was used.
+     */
+    public void addFallback(String name) {
+        fallbackProperties.add(name);
+    }
+
+    /**
+     * Records that a class path resource was read.
+     * 
+     * @param checksum
+     *            the checksum of the content that was read, or
+     *            <code>null</code> if the resource was not found
+     */
+    public void addResource(String name, Long checksum) {
+        resources.put(name, checksum);
+    }
+
+    public void addAll(Dependencies dependencies) {
+        selectionProperties.addAll(dependencies.getSelectionProperties());
+        configurationProperties.addAll(dependencies
+                .getConfigurationProperties());
+        possibleValueProperties.addAll(dependencies
+                .getPossibleValueProperties());
+        fallbackProperties.addAll(dependencies.getFallbackProperties());
+        resources.putAll(dependencies.getResources());
+    }
+
+    /**
+     * Gets the sorted names of the selection properties whose current value
+     * was used.
+     */
+    public Set<String> getSelectionProperties() {
+        return copy(selectionProperties);
+    }
+
+    /**
+     * Gets the sorted names of the configuration properties that were used.
+     */
+    public Set<String> getConfigurationProperties() {
+        return copy(configurationProperties);
+    }
+
+    /**
+     * Gets the sorted names of the selection properties for which all
+     * possible values were used.
+     */
+    public Set<String> getPossibleValueProperties() {
+        return copy(possibleValueProperties);
+    }
+
+    /**
+     * Gets the sorted names of the selection properties whose fallback value
+     * was used.
+     */
+    public Set<String> getFallbackProperties() {
+        return copy(fallbackProperties);
+    }
+
+    /**
+     * Gets the checksums of the resources that were read, by resource name.
+     * The checksum is <code>null</code> for resources that were not found.
+     */
+    public Map<String, Long> getResources() {
+        synchronized (resources) {
+            return Collections.unmodifiableMap(new TreeMap<String, Long>(
+                    resources));
+        }
+    }
+
+    private static Set<String> copy(Set<String> set) {
+        synchronized (set) {
+            return Collections.unmodifiableSet(new TreeSet<String>(set));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+
+/**
+ * Runs the dynamic methods of one type for one permutation. All methods are
+ * run on the same property source instance, which is created when the first
+ * method is evaluated. Methods may be evaluated concurrently from different
+ * threads.
+ * <p>
+ * The properties and resources read by each method are recorded separately.
+ * Reads that can't be attributed to a method, e.g. reads from other threads
+ * started by a method, are included in the record of every method. Values that
+ * one method passes to another through fields of the instance are not
+ * tracked.
+ */
+class DynamicEvaluation {
+    private final TreeLogger logger;
+    private final MemoizingPropertyOracle oracle;
+    private final DynamicInvoker invoker;
+
+    // Reads done outside of the thread running a method
+    private final Dependencies instanceDependencies = new Dependencies();
+    private PropertyProxyImpl proxy;
+    private DynamicPropertySource source;
+
+    public DynamicEvaluation(TreeLogger logger,
+            MemoizingPropertyOracle oracle, DynamicInvoker invoker) {
+        this.logger = logger;
+        this.oracle = oracle;
+        this.invoker = invoker;
+    }
+
+    /**
+     * Evaluates a method without arguments.
+     * 
+     * @param dependencies
+     *            receives the properties and resources read by the method
+     */
+    public Object evaluate(TreeLogger logger, JMethod method,
+            Dependencies dependencies) throws UnableToCompleteException {
+        try {
+            return invoke(logger, method, null, null, dependencies);
+        } finally {
+            dependencies.addAll(instanceDependencies);
+        }
+    }
+
+    /**
+     * Evaluates a method with one argument for each of the given argument
+     * values.
+     * 
+     * @param dependencies
+     *            receives the properties and resources read by the method
+     * @return a map from argument value to return value, in the order of the
+     *         argument values
+     */
+    public Map<String, Object> evaluate(TreeLogger logger, JMethod method,
+            ArgumentType argumentType, List<String> argumentValues,
+            Dependencies dependencies) throws UnableToCompleteException {
+        Map<String, Object> returnValues = new LinkedHashMap<String, Object>();
+        try {
+            for (String argumentValue : argumentValues) {
+                returnValues.put(argumentValue, invoke(logger, method,
+                        argumentType, argumentValue, dependencies));
+            }
+        } finally {
+            dependencies.addAll(instanceDependencies);
+        }
+        return returnValues;
+    }
+
+    /**
+     * Runs a method once, with the argument value if the argument type is not
+     * <code>null</code>.
+     */
+    private Object invoke(TreeLogger logger, JMethod method,
+            ArgumentType argumentType, String argumentValue,
+            Dependencies dependencies) throws UnableToCompleteException {
+        // Lookups are included in the time of running the method
+        oracle.setNested(true);
+        try {
+            return invoke(logger, getSource(logger), method, argumentType,
+                    argumentValue, dependencies);
+        } finally {
+            oracle.setNested(false);
+        }
+    }
+
+    private Object invoke(TreeLogger logger, DynamicPropertySource source,
+            JMethod method, ArgumentType argumentType, String argumentValue,
+            Dependencies dependencies) throws UnableToCompleteException {
+        String call = method.getName() + "("
+                + (argumentType == null ? "" : argumentValue) + ")";
+        proxy.setMethodDependencies(dependencies);
+        try {
+            if (argumentType == null) {
+                return invoker.invoke(source, method);
+            } else {
+                return invoker.invoke(source, method, argumentType,
+                        argumentValue);
+            }
+        } catch (InvocationTargetException e) {
+            logger.log(Type.ERROR, call + " threw an exception", e.getCause());
+            throw new UnableToCompleteException();
+        } catch (Exception e) {
+            logger.log(Type.ERROR, "Could not run " + call, e);
+            throw new UnableToCompleteException();
+        } finally {
+            proxy.setMethodDependencies(null);
+        }
+    }
+
+    private synchronized DynamicPropertySource getSource(TreeLogger logger)
+            throws UnableToCompleteException {
+        if (source == null) {
+            proxy = new PropertyProxyImpl(this.logger, oracle,
+                    instanceDependencies);
+            String typeName = invoker.getTargetClass().getName();
+            try {
+                source = invoker.newInstance(proxy);
+            } catch (InvocationTargetException e) {
+                logger.log(Type.ERROR, "The constructor of " + typeName
+                        + " threw an exception", e.getCause());
+                throw new UnableToCompleteException();
+            } catch (Exception e) {
+                logger.log(Type.ERROR, "Could not create an instance of "
+                        + typeName, e);
+                throw new UnableToCompleteException();
+            }
+        }
+        return source;
+    }
+}
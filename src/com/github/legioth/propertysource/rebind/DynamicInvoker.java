@@ -0,0 +1,122 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.client.DynamicPropertySource.PropertyProxy;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+import com.google.gwt.core.ext.typeinfo.JParameter;
+
+/**
+ * Reflective handles for creating and running a dynamic property source,
+ * resolved once per class and then reused for all methods and permutations.
+ */
+class DynamicInvoker {
+    private static final Field proxyField;
+    static {
+        try {
+            proxyField = DynamicPropertySource.class.getDeclaredField("proxy");
+            proxyField.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Constructor<? extends DynamicPropertySource> constructor;
+    private final Map<String, Method> methods = new HashMap<String, Method>();
+
+    public DynamicInvoker(Class<? extends DynamicPropertySource> targetClass)
+            throws NoSuchMethodException {
+        constructor = targetClass.getDeclaredConstructor();
+        constructor.setAccessible(true);
+
+        for (Method method : targetClass.getMethods()) {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (parameterTypes.length <= 1
+                    && !Modifier.isStatic(method.getModifiers())) {
+                String[] parameterTypeNames = new String[parameterTypes.length];
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypeNames[i] = parameterTypes[i].getName();
+                }
+
+                // Skip access checks for each invocation
+                method.setAccessible(true);
+                methods.put(getKey(method.getName(), parameterTypeNames),
+                        method);
+            }
+        }
+    }
+
+    /**
+     * Gets the class whose methods are run.
+     */
+    public Class<? extends DynamicPropertySource> getTargetClass() {
+        return constructor.getDeclaringClass();
+    }
+
+    /**
+     * Creates a new property source instance that reads properties through
+     * the given proxy.
+     */
+    public DynamicPropertySource newInstance(PropertyProxy proxy)
+            throws InstantiationException, IllegalAccessException,
+            InvocationTargetException {
+        DynamicPropertySource source = constructor.newInstance();
+        proxyField.set(source, proxy);
+        return source;
+    }
+
+    /**
+     * Runs a method without arguments on a property source instance.
+     */
+    public Object invoke(DynamicPropertySource source, JMethod method)
+            throws NoSuchMethodException, IllegalAccessException,
+            InvocationTargetException {
+        return getMethod(method).invoke(source);
+    }
+
+    /**
+     * Runs a method with one argument on a property source instance.
+     */
+    public Object invoke(DynamicPropertySource source, JMethod method,
+            ArgumentType argumentType, String argumentValue)
+            throws NoSuchMethodException, IllegalAccessException,
+            InvocationTargetException {
+        Method javaMethod = getMethod(method);
+        return javaMethod.invoke(source, argumentType.toJavaValue(
+                argumentValue, javaMethod.getParameterTypes()[0]));
+    }
+
+    /**
+     * Finds the reflective handle for a method of the type being generated.
+     * Overloads are told apart by the erasures of their parameter types,
+     * which have the same binary names as the corresponding classes.
+     */
+    private Method getMethod(JMethod method) throws NoSuchMethodException {
+        JParameter[] parameters = method.getParameters();
+        String[] parameterTypeNames = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameterTypeNames[i] = parameters[i].getType().getErasedType()
+                    .getQualifiedBinaryName();
+        }
+
+        Method javaMethod = methods.get(getKey(method.getName(),
+                parameterTypeNames));
+        if (javaMethod == null) {
+            throw new NoSuchMethodException(method.getReadableDeclaration());
+        }
+        return javaMethod;
+    }
+
+    private static String getKey(String methodName,
+            String[] parameterTypeNames) {
+        return methodName + Arrays.toString(parameterTypeNames);
+    }
+}
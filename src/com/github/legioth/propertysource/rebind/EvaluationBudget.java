@@ -0,0 +1,220 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+/**
+ * Limits for running a single dynamic method. Each method is run in a
+ * separate worker thread while the calling thread waits for it to complete.
+ * A method that runs for too long or allocates too much memory is interrupted
+ * and the compilation fails with an error naming the method.
+ * <p>
+ * Interruption is the only way of stopping a method, so a method that ignores
+ * interruption keeps running in its daemon worker thread even though the
+ * compilation has already failed. A warning is logged if the method is still
+ * running a moment after it was interrupted.
+ */
+class EvaluationBudget {
+    // How often allocations are checked
+    private static final long POLL_MILLIS = 50;
+
+    // How long an interrupted method gets to stop before a warning
+    private static final long GRACE_MILLIS = 500;
+
+    private static final Method getThreadAllocatedBytes = findAllocationMethod();
+
+    private final long timeoutMillis;
+    private final long allocationLimit;
+
+    private final ExecutorService executor = Executors
+            .newCachedThreadPool(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                            "PropertySource dynamic method");
+                    // Don't prevent the compiler from exiting
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Creates a budget.
+     * 
+     * @param timeoutMillis
+     *            the longest time a method may run, or 0 for no limit
+     * @param allocationLimit
+     *            the number of bytes a method may allocate, or 0 for no limit
+     */
+    public EvaluationBudget(TreeLogger logger, long timeoutMillis,
+            long allocationLimit) {
+        this.timeoutMillis = timeoutMillis;
+        if (allocationLimit > 0 && getThreadAllocatedBytes == null) {
+            logger.log(Type.WARN, "This JVM can not measure allocations,"
+                    + " dynamic methods are only limited by time");
+            this.allocationLimit = 0;
+        } else {
+            this.allocationLimit = allocationLimit;
+        }
+    }
+
+    /**
+     * Runs a method within the limits of this budget.
+     * 
+     * @param methodName
+     *            the name of the method, used in error messages
+     * @param task
+     *            runs the method
+     * @return the value returned by the task
+     */
+    public <T> T run(TreeLogger logger, String methodName,
+            final Callable<T> task) throws UnableToCompleteException {
+        // The baseline is set first so that it's valid whenever the id is
+        final AtomicLong workerId = new AtomicLong(-1);
+        final AtomicLong baseline = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(1);
+        Future<T> future = executor.submit(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long threadId = Thread.currentThread().getId();
+                baseline.set(getAllocatedBytes(threadId));
+                workerId.set(threadId);
+                try {
+                    return task.call();
+                } finally {
+                    finished.countDown();
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                // Only wake up regularly if allocations must be checked
+                long waitMillis = allocationLimit > 0 ? POLL_MILLIS
+                        : Long.MAX_VALUE;
+                if (timeoutMillis > 0) {
+                    long remaining = timeoutMillis
+                            - (System.nanoTime() - start) / 1000000;
+                    if (remaining <= 0) {
+                        logger.log(Type.ERROR, methodName
+                                + " did not complete within " + timeoutMillis
+                                + " ms");
+                        cancel(logger, methodName, future, workerId, finished);
+                        throw new UnableToCompleteException();
+                    }
+                    waitMillis = Math.min(waitMillis, remaining);
+                }
+
+                try {
+                    return future.get(waitMillis, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Still running, check the limits again
+                }
+
+                long threadId = workerId.get();
+                if (allocationLimit > 0 && threadId != -1) {
+                    long allocated = getAllocatedBytes(threadId)
+                            - baseline.get();
+                    if (allocated > allocationLimit) {
+                        logger.log(Type.ERROR, methodName + " allocated "
+                                + allocated + " bytes, the limit is "
+                                + allocationLimit);
+                        cancel(logger, methodName, future, workerId,
+                                finished);
+                        throw new UnableToCompleteException();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            logger.log(Type.ERROR, "Interrupted while running " + methodName);
+            throw new UnableToCompleteException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnableToCompleteException) {
+                // Already logged
+                throw (UnableToCompleteException) e.getCause();
+            }
+            logger.log(Type.ERROR, "Could not run " + methodName,
+                    e.getCause());
+            throw new UnableToCompleteException();
+        }
+    }
+
+    /**
+     * Interrupts a method and warns if it doesn't stop within the grace
+     * period.
+     */
+    private static void cancel(TreeLogger logger, String methodName,
+            Future<?> future, AtomicLong workerId, CountDownLatch finished)
+            throws InterruptedException {
+        future.cancel(true);
+        if (workerId.get() == -1) {
+            // Never started
+            return;
+        }
+        if (!finished.await(GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+            logger.log(Type.WARN, methodName + " is still running "
+                    + GRACE_MILLIS + " ms after being interrupted and"
+                    + " keeps running in the background");
+        }
+    }
+
+    private static long getAllocatedBytes(long threadId) {
+        if (getThreadAllocatedBytes == null) {
+            return 0;
+        }
+        try {
+            Object allocated = getThreadAllocatedBytes.invoke(
+                    ManagementFactory.getThreadMXBean(),
+                    Long.valueOf(threadId));
+            return ((Long) allocated).longValue();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds the HotSpot specific method for measuring the allocations of a
+     * thread.
+     * 
+     * @return the method, or <code>null</code> if allocations can not be
+     *         measured in this JVM
+     */
+    private static Method findAllocationMethod() {
+        try {
+            Class<?> beanType = Class
+                    .forName("com.sun.management.ThreadMXBean");
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (!beanType.isInstance(bean)) {
+                return null;
+            }
+            Method method = beanType.getMethod("getThreadAllocatedBytes",
+                    long.class);
+            Method isEnabled = beanType
+                    .getMethod("isThreadAllocatedMemoryEnabled");
+            if (!((Boolean) isEnabled.invoke(bean)).booleanValue()) {
+                return null;
+            }
+            return method;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
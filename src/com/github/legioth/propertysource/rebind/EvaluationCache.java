@@ -0,0 +1,406 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.gwt.core.ext.SelectionProperty;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+
+/**
+ * Evaluation results stored on disk so that they can be reused by later
+ * compilations, e.g. by every build of an unchanged module. Each entry
+ * contains the generated class body together with every input that was used
+ * to produce it: the current and fallback values of selection properties, the
+ * values of configuration properties, the possible values of runtime
+ * dispatched properties, the checksum of resources read by dynamic methods and
+ * the bytecode checksum of the classes used for running the dynamic methods of
+ * the type. Inputs that were not defined are also recorded. An entry is only
+ * used if all those inputs are still the same.
+ * <p>
+ * Entries for a type are stored in a directory named by a hash of the type
+ * description. Each entry is written to a temporary file that is then renamed
+ * while holding a lock, which means that concurrent compilations never see
+ * partially written entries. Only the most recently written entries of each
+ * type are kept.
+ */
+class EvaluationCache {
+    /**
+     * The default number of entries to keep for each type.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 100;
+
+    // Changed whenever entries written by older versions can't be used
+    private static final int FORMAT_VERSION = 2;
+
+    private static final String TYPE_KEY = "typeKey";
+    private static final String BODY = "body";
+
+    private static final String SELECTION_PREFIX = "selection:";
+    private static final String CONFIGURATION_PREFIX = "configuration:";
+    private static final String POSSIBLE_VALUES_PREFIX = "possibleValues:";
+    private static final String FALLBACK_PREFIX = "fallback:";
+    private static final String RESOURCE_PREFIX = "resource:";
+
+    // Value of inputs that were not found, never a valid property value
+    private static final String MISSING = "<missing>";
+    private static final String CLASS_PREFIX = "class:";
+
+    // File locks are held by the JVM, so threads must also be kept apart
+    private static final Object storeLock = new Object();
+
+    /**
+     * A cached evaluation result.
+     */
+    public static class Result {
+        private final String body;
+        private final Set<String> selectionProperties;
+
+        private Result(String body, Set<String> selectionProperties) {
+            this.body = body;
+            this.selectionProperties = selectionProperties;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * Gets the names of the selection properties whose current value was
+         * used for the evaluation.
+         */
+        public Set<String> getSelectionProperties() {
+            return selectionProperties;
+        }
+    }
+
+    private final File directory;
+    private final int maxEntries;
+
+    // Entries read during this compilation, by type key
+    private final ConcurrentMap<String, List<Properties>> entries = new ConcurrentHashMap<String, List<Properties>>();
+
+    public EvaluationCache(File directory) {
+        this(directory, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache that keeps a given number of entries for each type.
+     */
+    public EvaluationCache(File directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Finds a cached result for the current permutation.
+     * 
+     * @param typeKey
+     *            a description of everything about the type that affects the
+     *            result regardless of the permutation
+     * @return the cached result, or <code>null</code> if there is no result
+     *         with the same inputs
+     */
+    public Result find(TreeLogger logger, MemoizingPropertyOracle oracle,
+            String typeKey) {
+        for (Properties entry : getEntries(logger, typeKey)) {
+            if (!typeKey.equals(entry.getProperty(TYPE_KEY))) {
+                // Hash collision
+                continue;
+            }
+
+            boolean upToDate = true;
+            Set<String> selectionProperties = new TreeSet<String>();
+            for (String key : entry.stringPropertyNames()) {
+                if (key.equals(TYPE_KEY) || key.equals(BODY)) {
+                    continue;
+                }
+                String currentValue = toInputValue(getCurrentValue(logger,
+                        oracle, key));
+                if (!entry.getProperty(key).equals(currentValue)) {
+                    upToDate = false;
+                    break;
+                }
+                if (key.startsWith(SELECTION_PREFIX)) {
+                    selectionProperties.add(key.substring(SELECTION_PREFIX
+                            .length()));
+                }
+            }
+
+            if (upToDate) {
+                return new Result(entry.getProperty(BODY),
+                        Collections.unmodifiableSet(selectionProperties));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores an evaluation result. Failures are logged but otherwise ignored
+     * since the cache isn't needed for the compilation to succeed.
+     * 
+     * @param classChecksums
+     *            checksums of the classes used for running dynamic methods
+     */
+    public void store(TreeLogger logger, MemoizingPropertyOracle oracle,
+            String typeKey, Dependencies dependencies,
+            Map<String, Long> classChecksums, String body) {
+        SortedMap<String, String> inputs = new TreeMap<String, String>();
+        for (String name : dependencies.getSelectionProperties()) {
+            addInput(logger, oracle, inputs, SELECTION_PREFIX + name);
+        }
+        for (String name : dependencies.getConfigurationProperties()) {
+            addInput(logger, oracle, inputs, CONFIGURATION_PREFIX + name);
+        }
+        for (String name : dependencies.getPossibleValueProperties()) {
+            addInput(logger, oracle, inputs, POSSIBLE_VALUES_PREFIX + name);
+        }
+        for (String name : dependencies.getFallbackProperties()) {
+            addInput(logger, oracle, inputs, FALLBACK_PREFIX + name);
+        }
+        for (Entry<String, Long> entry : dependencies.getResources()
+                .entrySet()) {
+            // The content that was actually read, even if it has changed
+            Long checksum = entry.getValue();
+            inputs.put(RESOURCE_PREFIX + entry.getKey(),
+                    checksum == null ? MISSING : checksum.toString());
+        }
+        for (Entry<String, Long> entry : classChecksums.entrySet()) {
+            inputs.put(CLASS_PREFIX + entry.getKey(), entry.getValue()
+                    .toString());
+        }
+
+        Properties entry = new Properties();
+        entry.putAll(inputs);
+        entry.setProperty(TYPE_KEY, typeKey);
+        entry.setProperty(BODY, body);
+
+        File typeDirectory = getTypeDirectory(typeKey);
+        File file = new File(typeDirectory, hash(inputs + body) + ".properties");
+        if (file.exists()) {
+            return;
+        }
+
+        try {
+            if (!typeDirectory.isDirectory() && !typeDirectory.mkdirs()) {
+                throw new IOException("Could not create " + typeDirectory);
+            }
+
+            synchronized (storeLock) {
+                RandomAccessFile lockFile = new RandomAccessFile(new File(
+                        typeDirectory, ".lock"), "rw");
+                try {
+                    FileLock lock = lockFile.getChannel().lock();
+                    try {
+                        if (!file.exists()) {
+                            write(entry, typeDirectory, file);
+                            evict(logger, typeDirectory, file);
+                        }
+                    } finally {
+                        lock.release();
+                    }
+                } finally {
+                    lockFile.close();
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Type.WARN, "Could not write PropertySource cache entry "
+                    + file, e);
+        }
+    }
+
+    private static void write(Properties entry, File directory, File file)
+            throws IOException {
+        File temp = File.createTempFile("entry", ".tmp", directory);
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                entry.store(out, null);
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(file) && !file.exists()) {
+                throw new IOException("Could not rename " + temp + " to "
+                        + file);
+            }
+        } finally {
+            // Only left if the rename failed
+            temp.delete();
+        }
+    }
+
+    /**
+     * Deletes the oldest entries of a type if there are too many of them.
+     * Must be called while holding the lock of the directory.
+     */
+    private void evict(TreeLogger logger, File typeDirectory, File newest) {
+        File[] files = listEntries(typeDirectory);
+        if (files == null || files.length <= maxEntries) {
+            return;
+        }
+
+        List<File> candidates = new ArrayList<File>(Arrays.asList(files));
+        candidates.remove(newest);
+        Collections.sort(candidates, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                long modified1 = file1.lastModified();
+                long modified2 = file2.lastModified();
+                return modified1 < modified2 ? -1
+                        : modified1 == modified2 ? 0 : 1;
+            }
+        });
+        for (File file : candidates.subList(0, files.length - maxEntries)) {
+            if (!file.delete()) {
+                logger.log(Type.DEBUG, "Could not delete cache entry " + file);
+            }
+        }
+    }
+
+    private static File[] listEntries(File typeDirectory) {
+        return typeDirectory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(".properties");
+            }
+        });
+    }
+
+    private List<Properties> getEntries(TreeLogger logger, String typeKey) {
+        List<Properties> typeEntries = entries.get(typeKey);
+        if (typeEntries != null) {
+            return typeEntries;
+        }
+
+        typeEntries = new ArrayList<Properties>();
+        File[] files = listEntries(getTypeDirectory(typeKey));
+        if (files != null) {
+            for (File file : files) {
+                Properties entry = new Properties();
+                try {
+                    InputStream in = new FileInputStream(file);
+                    try {
+                        entry.load(in);
+                    } finally {
+                        in.close();
+                    }
+                    typeEntries.add(entry);
+                } catch (FileNotFoundException e) {
+                    // Evicted by another compilation
+                } catch (IOException e) {
+                    logger.log(Type.DEBUG, "Ignoring unreadable cache entry "
+                            + file, e);
+                }
+            }
+        }
+
+        List<Properties> existing = entries.putIfAbsent(typeKey, typeEntries);
+        return existing != null ? existing : typeEntries;
+    }
+
+    private File getTypeDirectory(String typeKey) {
+        return new File(directory, hash(FORMAT_VERSION + ";" + typeKey));
+    }
+
+    private static void addInput(TreeLogger logger,
+            MemoizingPropertyOracle oracle, Map<String, String> inputs,
+            String key) {
+        inputs.put(key, toInputValue(getCurrentValue(logger, oracle, key)));
+    }
+
+    /**
+     * Gets the current value of an input.
+     * 
+     * @return the value, or <code>null</code> if the input is not available
+     */
+    private static String getCurrentValue(TreeLogger logger,
+            MemoizingPropertyOracle oracle, String key) {
+        if (key.startsWith(SELECTION_PREFIX)) {
+            return oracle.getSelectionPropertyValue(logger,
+                    key.substring(SELECTION_PREFIX.length()));
+        } else if (key.startsWith(CONFIGURATION_PREFIX)) {
+            List<String> values = oracle.getConfigurationPropertyValues(key
+                    .substring(CONFIGURATION_PREFIX.length()));
+            return values == null ? null : encode(values);
+        } else if (key.startsWith(POSSIBLE_VALUES_PREFIX)) {
+            SelectionProperty property = oracle.findSelectionProperty(logger,
+                    key.substring(POSSIBLE_VALUES_PREFIX.length()));
+            return property == null ? null : encode(new ArrayList<String>(
+                    property.getPossibleValues()));
+        } else if (key.startsWith(FALLBACK_PREFIX)) {
+            SelectionProperty property = oracle.findSelectionProperty(logger,
+                    key.substring(FALLBACK_PREFIX.length()));
+            return property == null ? null : property.getFallbackValue();
+        } else if (key.startsWith(RESOURCE_PREFIX)) {
+            Long checksum = EvaluationClassLoader.getResourceChecksum(key
+                    .substring(RESOURCE_PREFIX.length()));
+            return checksum == null ? null : checksum.toString();
+        } else if (key.startsWith(CLASS_PREFIX)) {
+            Long checksum = EvaluationClassLoader.getCurrentChecksum(key
+                    .substring(CLASS_PREFIX.length()));
+            return checksum == null ? null : checksum.toString();
+        } else {
+            return null;
+        }
+    }
+
+    private static String toInputValue(String value) {
+        return value == null ? MISSING : value;
+    }
+
+    /**
+     * Encodes a list of values so that different lists never get the same
+     * encoding.
+     */
+    private static String encode(List<String> values) {
+        StringBuilder encoded = new StringBuilder();
+        for (String value : values) {
+            encoded.append(value == null ? -1 : value.length()).append(':')
+                    .append(value).append(';');
+        }
+        return encoded.toString();
+    }
+
+    private static String hash(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(value.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 10; i++) {
+                hex.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(bytes[i] & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            // SHA-1 and UTF-8 are always supported
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+
+/**
+ * Class loader used for running dynamic methods. Classes that are loaded from
+ * directories, i.e. classes that are part of the project being compiled, are
+ * defined by this class loader so that changes are picked up when a new loader
+ * is created. Everything else, including classes from jar files, is delegated
+ * to the parent. The bytecode of classes from jar files is still hashed when
+ * they are used by a dynamic method, so that cached results are not reused
+ * after a library has changed.
+ * <p>
+ * The same loader is reused as long as none of the classes it has defined have
+ * changed. This means that a long running Super Dev Mode session only pays for
+ * loading the classes again after they have actually been recompiled.
+ */
+class EvaluationClassLoader extends ClassLoader {
+    /**
+     * Packages that must always be delegated, either because they are part of
+     * the platform or because classes in them are shared with the generator.
+     */
+    private static final String[] sharedPackages = { "java.", "javax.",
+            "sun.", "com.google.gwt.",
+            "com.github.legioth.propertysource.client.",
+            "com.github.legioth.propertysource.rebind." };
+
+    // Finds classes of the platform, which are not hashed
+    private static final ClassLoader platformClassLoader = ClassLoader
+            .getSystemClassLoader().getParent();
+
+    private static EvaluationClassLoader current;
+
+    // Where classes and resources are read from, only replaced by tests
+    private static ClassLoader classPath = EvaluationClassLoader.class
+            .getClassLoader();
+
+    // Checksum of the bytecode of each class defined by this loader
+    private final Map<String, Long> checksums = new ConcurrentHashMap<String, Long>();
+
+    // Checksum of the bytecode of classes from jar files, read when needed
+    private final Map<String, Long> jarChecksums = new ConcurrentHashMap<String, Long>();
+
+    // Names of the classes referenced from each class that has a checksum
+    private final Map<String, Set<String>> references = new ConcurrentHashMap<String, Set<String>>();
+
+    private EvaluationClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    /**
+     * Gets a class loader for evaluating dynamic methods. The previous loader
+     * is reused if no class that it has loaded has changed.
+     * 
+     * @param logger
+     *            the logger to use
+     * @return a class loader with up to date classes
+     */
+    public static synchronized EvaluationClassLoader get(TreeLogger logger) {
+        if (current != null && !current.isUpToDate()) {
+            logger.log(Type.DEBUG,
+                    "Classes have changed, using a new class loader for dynamic methods");
+            current = null;
+        }
+        if (current == null) {
+            current = new EvaluationClassLoader(classPath);
+        }
+        return current;
+    }
+
+    /**
+     * Sets where classes and resources for dynamic methods are read from.
+     * Only intended for tests.
+     */
+    static synchronized void setClassPath(ClassLoader classPath) {
+        EvaluationClassLoader.classPath = classPath;
+        current = null;
+    }
+
+    @Override
+    protected synchronized Class<?> loadClass(String name, boolean resolve)
+            throws ClassNotFoundException {
+        Class<?> loadedClass = findLoadedClass(name);
+        if (loadedClass == null) {
+            byte[] bytecode = isShared(name) ? null : readReloadableClass(
+                    getParent(), name);
+            if (bytecode == null) {
+                return super.loadClass(name, resolve);
+            }
+            loadedClass = defineClass(name, bytecode, 0, bytecode.length);
+            checksums.put(name, Long.valueOf(checksum(bytecode)));
+            references.put(name, readReferences(bytecode));
+        }
+        if (resolve) {
+            resolveClass(loadedClass);
+        }
+        return loadedClass;
+    }
+
+    /**
+     * Gets the checksums of the bytecode of all classes defined by this
+     * loader so far.
+     * 
+     * @return a map from class name to checksum
+     */
+    public Map<String, Long> getChecksums() {
+        return new HashMap<String, Long>(checksums);
+    }
+
+    /**
+     * Gets the checksums of the bytecode of a class and of the classes that it
+     * references, directly or through other such classes. Classes from jar
+     * files are included, as well as project classes defined by this loader.
+     * Project classes that have not been loaded are not included since they
+     * have not been used.
+     * 
+     * @param className
+     *            the binary name of the class
+     * @return a map from class name to checksum
+     */
+    public Map<String, Long> getChecksums(String className) {
+        Map<String, Long> found = new HashMap<String, Long>();
+        Deque<String> pending = new ArrayDeque<String>();
+        pending.add(className);
+        while (!pending.isEmpty()) {
+            String name = pending.remove();
+            if (found.containsKey(name)) {
+                continue;
+            }
+            Long checksum = checksums.get(name);
+            if (checksum == null) {
+                checksum = getJarChecksum(name);
+            }
+            if (checksum != null) {
+                found.put(name, checksum);
+                pending.addAll(references.get(name));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the checksum of a class that is loaded from a jar file by the
+     * parent, reading the class file the first time.
+     * 
+     * @return the checksum, or <code>null</code> if the class is shared, part
+     *         of the platform, not found or not in a jar file
+     */
+    private Long getJarChecksum(String className) {
+        Long checksum = jarChecksums.get(className);
+        if (checksum != null || isShared(className)) {
+            return checksum;
+        }
+        String path = className.replace('.', '/') + ".class";
+        URL url = getParent().getResource(path);
+        if (url == null || "file".equals(url.getProtocol())
+                || (platformClassLoader != null && platformClassLoader
+                        .getResource(path) != null)) {
+            return null;
+        }
+        byte[] bytecode = read(url);
+        if (bytecode == null) {
+            return null;
+        }
+        checksum = Long.valueOf(checksum(bytecode));
+        references.put(className, readReferences(bytecode));
+        jarChecksums.put(className, checksum);
+        return checksum;
+    }
+
+    /**
+     * Computes the checksum of the current bytecode of a class without
+     * loading it. The class may be either in a directory or in a jar file.
+     * 
+     * @return the checksum, or <code>null</code> if the class is not found
+     */
+    public static Long getCurrentChecksum(String className) {
+        byte[] bytecode = readResource(className.replace('.', '/')
+                + ".class");
+        if (bytecode == null) {
+            return null;
+        } else {
+            return Long.valueOf(checksum(bytecode));
+        }
+    }
+
+    private boolean isUpToDate() {
+        for (Entry<String, Long> entry : checksums.entrySet()) {
+            byte[] bytecode = readReloadableClass(getParent(), entry.getKey());
+            if (bytecode == null
+                    || checksum(bytecode) != entry.getValue().longValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isShared(String className) {
+        for (String sharedPackage : sharedPackages) {
+            if (className.startsWith(sharedPackage)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the bytecode of a class if it is found in a directory.
+     * 
+     * @return the bytecode, or <code>null</code> if the class is not found or
+     *         is not in a directory
+     */
+    private static byte[] readReloadableClass(ClassLoader parent,
+            String className) {
+        URL url = parent.getResource(
+                className.replace('.', '/') + ".class");
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return null;
+        }
+        return read(url);
+    }
+
+    /**
+     * Reads a resource from the class path used for running dynamic methods.
+     * Unlike classes, resources in jar files are also read.
+     * 
+     * @return the content, or <code>null</code> if the resource is not found
+     */
+    public static byte[] readResource(String name) {
+        URL url = getClassPath().getResource(name);
+        if (url == null) {
+            return null;
+        }
+        return read(url);
+    }
+
+    /**
+     * Computes the checksum of the current content of a resource.
+     * 
+     * @return the checksum, or <code>null</code> if the resource is not found
+     */
+    public static Long getResourceChecksum(String name) {
+        byte[] content = readResource(name);
+        if (content == null) {
+            return null;
+        } else {
+            return Long.valueOf(checksum(content));
+        }
+    }
+
+    private static synchronized ClassLoader getClassPath() {
+        return classPath;
+    }
+
+    private static byte[] read(URL url) {
+        try {
+            // Cached jar files would not show changes made on disk
+            URLConnection connection = url.openConnection();
+            connection.setUseCaches(false);
+            InputStream in = connection.getInputStream();
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+                return out.toByteArray();
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the names of the classes in the constant pool of a class file.
+     * This includes the superclass, interfaces, nested classes and every
+     * class whose members are used.
+     */
+    private static Set<String> readReferences(byte[] bytecode) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                    bytecode));
+            // Magic number and version
+            in.skipBytes(8);
+            int count = in.readUnsignedShort();
+            String[] utf8 = new String[count];
+            int[] classNames = new int[count];
+            int classCount = 0;
+            for (int i = 1; i < count; i++) {
+                int tag = in.readUnsignedByte();
+                switch (tag) {
+                case 1:
+                    utf8[i] = in.readUTF();
+                    break;
+                case 7:
+                    classNames[classCount++] = in.readUnsignedShort();
+                    break;
+                case 8:
+                case 16:
+                case 19:
+                case 20:
+                    in.skipBytes(2);
+                    break;
+                case 15:
+                    in.skipBytes(3);
+                    break;
+                case 3:
+                case 4:
+                case 9:
+                case 10:
+                case 11:
+                case 12:
+                case 17:
+                case 18:
+                    in.skipBytes(4);
+                    break;
+                case 5:
+                case 6:
+                    // Takes two entries
+                    in.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new IOException("Unknown constant pool tag " + tag);
+                }
+            }
+
+            Set<String> names = new HashSet<String>();
+            for (int i = 0; i < classCount; i++) {
+                String name = utf8[classNames[i]];
+                // Arrays are referenced by their descriptor
+                int start = name.lastIndexOf('[') + 1;
+                if (start > 0) {
+                    if (name.charAt(start) != 'L') {
+                        continue;
+                    }
+                    name = name.substring(start + 1, name.length() - 1);
+                }
+                names.add(name.replace('/', '.'));
+            }
+            return names;
+        } catch (IOException e) {
+            // Not expected for classes that could be defined
+            return Collections.emptySet();
+        }
+    }
+
+    public static long checksum(byte[] bytecode) {
+        CRC32 crc = new CRC32();
+        crc.update(bytecode);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,300 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gwt.core.ext.RebindMode;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+
+/**
+ * Collects the cost of generating each property source type during a compile
+ * and writes it as a JSON and a CSV report. The report is written by
+ * {@link GeneratorReportLinker} once all types have been generated.
+ */
+class GeneratorMetrics implements Serializable {
+
+    /**
+     * The phases that time is measured for.
+     */
+    public enum Phase {
+        /**
+         * Reading properties from the property oracle, except for reads that
+         * are part of another phase, e.g. reads done by dynamic methods.
+         */
+        ORACLE,
+        /**
+         * Checking property values for all permutations before the first
+         * permutation is generated.
+         */
+        VALIDATION,
+        /**
+         * Converting property values for non-dynamic methods.
+         */
+        CONVERSION,
+        /**
+         * Running dynamic methods, including the properties they read.
+         */
+        DYNAMIC,
+        /**
+         * Reading and writing evaluation results in the cache directory.
+         */
+        CACHE,
+        /**
+         * Writing the source of generated classes.
+         */
+        EMISSION;
+    }
+
+    /**
+     * Time spent running one dynamic method, summed over all permutations.
+     */
+    private static class MethodMetrics implements Serializable {
+        private final AtomicLong runs = new AtomicLong();
+        private final AtomicLong nanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private void add(long nanoTime) {
+            runs.incrementAndGet();
+            nanos.addAndGet(nanoTime);
+            long max = maxNanos.get();
+            while (nanoTime > max && !maxNanos.compareAndSet(max, nanoTime)) {
+                max = maxNanos.get();
+            }
+        }
+    }
+
+    /**
+     * Metrics for one property source type, summed over all permutations.
+     */
+    public static class TypeMetrics implements Serializable {
+        private final String typeName;
+        private final AtomicLong invocations = new AtomicLong();
+        private final AtomicLong evaluations = new AtomicLong();
+        private final AtomicLong cachedResults = new AtomicLong();
+        private final AtomicLong existingResults = new AtomicLong();
+        private final AtomicLong diskCachedResults = new AtomicLong();
+        private final AtomicLong reusedMethods = new AtomicLong();
+        private final AtomicLong[] nanos = new AtomicLong[Phase.values().length];
+        private final Set<String> classNames = Collections
+                .synchronizedSet(new TreeSet<String>());
+        private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<String, MethodMetrics>();
+
+        private TypeMetrics(String typeName) {
+            this.typeName = typeName;
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] = new AtomicLong();
+            }
+        }
+
+        public void addTime(Phase phase, long nanoTime) {
+            nanos[phase.ordinal()].addAndGet(nanoTime);
+        }
+
+        /**
+         * Records that the methods of the type have been evaluated for a
+         * permutation.
+         */
+        public void addEvaluation() {
+            evaluations.incrementAndGet();
+        }
+
+        /**
+         * Records that the result of a previous evaluation was read from the
+         * disk cache instead of evaluating the methods again.
+         */
+        public void addDiskCacheHit() {
+            diskCachedResults.incrementAndGet();
+        }
+
+        /**
+         * Records the time spent running a dynamic method for a permutation.
+         */
+        public void addMethodTime(String methodName, long nanoTime) {
+            MethodMetrics method = methods.get(methodName);
+            if (method == null) {
+                method = new MethodMetrics();
+                MethodMetrics existing = methods.putIfAbsent(methodName,
+                        method);
+                if (existing != null) {
+                    method = existing;
+                }
+            }
+            method.add(nanoTime);
+        }
+
+        /**
+         * Records that a dynamic method was not run since its result from
+         * another permutation could be used.
+         */
+        public void addReusedMethod() {
+            reusedMethods.incrementAndGet();
+        }
+
+        /**
+         * Records the result of a generator invocation.
+         */
+        public void addResult(RebindMode mode, String className) {
+            invocations.incrementAndGet();
+            if (mode == RebindMode.USE_ALL_CACHED) {
+                cachedResults.incrementAndGet();
+            } else if (mode == RebindMode.USE_EXISTING) {
+                existingResults.incrementAndGet();
+            }
+            classNames.add(className);
+        }
+
+        private long getMillis(Phase phase) {
+            return nanos[phase.ordinal()].get() / 1000000;
+        }
+    }
+
+    private final ConcurrentMap<String, TypeMetrics> types = new ConcurrentHashMap<String, TypeMetrics>();
+
+    public TypeMetrics get(String typeName) {
+        TypeMetrics metrics = types.get(typeName);
+        if (metrics == null) {
+            metrics = new TypeMetrics(typeName);
+            TypeMetrics existing = types.putIfAbsent(typeName, metrics);
+            if (existing != null) {
+                metrics = existing;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Writes <code>propertysource-report.json</code> and
+     * <code>propertysource-report.csv</code> to a directory, replacing any
+     * previous reports. Failures are logged but otherwise ignored since the
+     * report isn't needed for the compilation to succeed.
+     */
+    public synchronized void writeReport(TreeLogger logger, File directory) {
+        List<TypeMetrics> sortedTypes = new ArrayList<TypeMetrics>();
+        for (String typeName : new TreeSet<String>(types.keySet())) {
+            sortedTypes.add(types.get(typeName));
+        }
+
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Could not create " + directory);
+            }
+
+            PrintWriter json = openReport(directory, "json");
+            json.println("{\"types\": [");
+            for (int i = 0; i < sortedTypes.size(); i++) {
+                TypeMetrics type = sortedTypes.get(i);
+                json.print("  {\"type\": " + quote(type.typeName));
+                json.print(", \"invocations\": " + type.invocations);
+                json.print(", \"evaluations\": " + type.evaluations);
+                json.print(", \"cachedResults\": " + type.cachedResults);
+                json.print(", \"existingResults\": " + type.existingResults);
+                json.print(", \"diskCachedResults\": "
+                        + type.diskCachedResults);
+                json.print(", \"reusedMethods\": " + type.reusedMethods);
+                for (Phase phase : Phase.values()) {
+                    json.print(", \"" + phase.name().toLowerCase()
+                            + "Millis\": " + type.getMillis(phase));
+                }
+                json.print(", \"classes\": [");
+                synchronized (type.classNames) {
+                    boolean first = true;
+                    for (String className : type.classNames) {
+                        if (!first) {
+                            json.print(", ");
+                        }
+                        json.print(quote(className));
+                        first = false;
+                    }
+                }
+                json.print("], \"methods\": [");
+                Map<String, MethodMetrics> sortedMethods = new TreeMap<String, MethodMetrics>(
+                        type.methods);
+                boolean first = true;
+                for (Entry<String, MethodMetrics> entry : sortedMethods
+                        .entrySet()) {
+                    if (!first) {
+                        json.print(", ");
+                    }
+                    MethodMetrics method = entry.getValue();
+                    json.print("{\"method\": " + quote(entry.getKey())
+                            + ", \"runs\": " + method.runs
+                            + ", \"millis\": " + method.nanos.get() / 1000000
+                            + ", \"maxMillis\": " + method.maxNanos.get()
+                            / 1000000 + "}");
+                    first = false;
+                }
+                json.print("]}");
+                json.println(i == sortedTypes.size() - 1 ? "" : ",");
+            }
+            json.println("]}");
+            closeReport(directory, "json", json);
+
+            PrintWriter csv = openReport(directory, "csv");
+            csv.print("type,invocations,evaluations,cachedResults,existingResults,diskCachedResults,reusedMethods,classes");
+            for (Phase phase : Phase.values()) {
+                csv.print("," + phase.name().toLowerCase() + "Millis");
+            }
+            csv.println();
+            for (TypeMetrics type : sortedTypes) {
+                csv.print(type.typeName + "," + type.invocations + ","
+                        + type.evaluations + "," + type.cachedResults + ","
+                        + type.existingResults + "," + type.diskCachedResults
+                        + "," + type.reusedMethods + ","
+                        + type.classNames.size());
+                for (Phase phase : Phase.values()) {
+                    csv.print("," + type.getMillis(phase));
+                }
+                csv.println();
+            }
+            closeReport(directory, "csv", csv);
+        } catch (IOException e) {
+            logger.log(Type.WARN, "Could not write PropertySource report to "
+                    + directory, e);
+        }
+    }
+
+    private static PrintWriter openReport(File directory, String extension)
+            throws IOException {
+        return new PrintWriter(new OutputStreamWriter(new FileOutputStream(
+                getReportFile(directory, extension + ".tmp")), "UTF-8"));
+    }
+
+    private static void closeReport(File directory, String extension,
+            PrintWriter writer) throws IOException {
+        writer.close();
+        if (writer.checkError()) {
+            throw new IOException("Could not write report");
+        }
+
+        // Replace the old report only once the new one is complete
+        File file = getReportFile(directory, extension);
+        file.delete();
+        if (!getReportFile(directory, extension + ".tmp").renameTo(file)) {
+            throw new IOException("Could not create " + file);
+        }
+    }
+
+    private static File getReportFile(File directory, String extension) {
+        return new File(directory, "propertysource-report." + extension);
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
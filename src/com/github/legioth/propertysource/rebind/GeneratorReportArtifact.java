@@ -0,0 +1,52 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gwt.core.ext.linker.Artifact;
+import com.google.gwt.core.ext.linker.Transferable;
+
+/**
+ * Carries the metrics of a generator to {@link GeneratorReportLinker}. Results
+ * reused from the generator cache bring along the artifacts of earlier
+ * compiles, so artifacts are ordered by when their generator was created and
+ * the linker only uses the last one.
+ */
+@Transferable
+class GeneratorReportArtifact extends Artifact<GeneratorReportArtifact> {
+    private static final AtomicLong nextSequence = new AtomicLong();
+
+    private final long created = System.currentTimeMillis();
+    private final long sequence = nextSequence.incrementAndGet();
+
+    private final GeneratorMetrics metrics;
+
+    public GeneratorReportArtifact(GeneratorMetrics metrics) {
+        super(GeneratorReportLinker.class);
+        this.metrics = metrics;
+    }
+
+    public GeneratorMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (created ^ (created >>> 32)) * 31 + (int) sequence;
+    }
+
+    @Override
+    protected int compareToComparableArtifact(GeneratorReportArtifact o) {
+        if (created != o.created) {
+            return created < o.created ? -1 : 1;
+        } else if (sequence != o.sequence) {
+            return sequence < o.sequence ? -1 : 1;
+        } else {
+            return 0;
+        }
+    }
+
+    @Override
+    protected Class<GeneratorReportArtifact> getComparableArtifactType() {
+        return GeneratorReportArtifact.class;
+    }
+}
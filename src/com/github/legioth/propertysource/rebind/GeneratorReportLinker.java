@@ -0,0 +1,72 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.io.File;
+import java.util.List;
+import java.util.SortedSet;
+
+import com.google.gwt.core.ext.LinkerContext;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.linker.AbstractLinker;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.ConfigurationProperty;
+import com.google.gwt.core.ext.linker.LinkerOrder;
+import com.google.gwt.core.ext.linker.LinkerOrder.Order;
+import com.google.gwt.core.ext.linker.Shardable;
+
+/**
+ * Writes the report of the cost of generating property source types. The
+ * report is written once per compile, after all types have been generated, if
+ * the <code>propertysource.reportDirectory</code> configuration property is
+ * set.
+ */
+@LinkerOrder(Order.POST)
+@Shardable
+public class GeneratorReportLinker extends AbstractLinker {
+
+    @Override
+    public String getDescription() {
+        return "PropertySource generator report";
+    }
+
+    @Override
+    public ArtifactSet link(TreeLogger logger, LinkerContext context,
+            ArtifactSet artifacts, boolean onePermutation)
+            throws UnableToCompleteException {
+        if (onePermutation) {
+            // Everything is already known before the first permutation
+            return artifacts;
+        }
+
+        String reportDirectory = getReportDirectory(context);
+        if (reportDirectory == null) {
+            // The generator doesn't commit any report in this case
+            return artifacts;
+        }
+
+        SortedSet<GeneratorReportArtifact> reports = artifacts
+                .find(GeneratorReportArtifact.class);
+        if (!reports.isEmpty()) {
+            reports.last().getMetrics().writeReport(logger,
+                    new File(reportDirectory));
+        }
+        return artifacts;
+    }
+
+    private static String getReportDirectory(LinkerContext context) {
+        for (ConfigurationProperty property : context
+                .getConfigurationProperties()) {
+            if (property.getName().equals(
+                    PropertySourceGenerator.REPORT_DIRECTORY_PROPERTY)) {
+                List<String> values = property.getValues();
+                if (values.isEmpty() || values.get(0) == null
+                        || values.get(0).isEmpty()) {
+                    return null;
+                } else {
+                    return values.get(0);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,239 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.legioth.propertysource.client.PropertySnapshot;
+import com.google.gwt.core.ext.BadPropertyValueException;
+import com.google.gwt.core.ext.ConfigurationProperty;
+import com.google.gwt.core.ext.PropertyOracle;
+import com.google.gwt.core.ext.SelectionProperty;
+import com.google.gwt.core.ext.TreeLogger;
+
+/**
+ * View of a {@link PropertyOracle} that remembers the result of each lookup,
+ * including lookups of properties that don't exist. One instance is used for
+ * all lookups while generating the types of a permutation, so snapshots built
+ * from the looked up values are also kept here to share them between types.
+ */
+class MemoizingPropertyOracle {
+    // Marker for properties that are known not to exist
+    private static final Object MISSING = new Object();
+
+    /**
+     * A snapshot together with the properties it was built from.
+     */
+    public static class Snapshot {
+        private final PropertySnapshot snapshot;
+        private final Dependencies dependencies;
+
+        private Snapshot(PropertySnapshot snapshot, Dependencies dependencies) {
+            this.snapshot = snapshot;
+            this.dependencies = dependencies;
+        }
+
+        public PropertySnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        /**
+         * Gets the properties that the snapshot was built from. Every method
+         * using the snapshot depends on all of them.
+         */
+        public Dependencies getDependencies() {
+            return dependencies;
+        }
+    }
+
+    private final PropertyOracle oracle;
+
+    private final Map<String, Object> selectionProperties = new HashMap<String, Object>();
+    private final Map<String, Object> configurationProperties = new HashMap<String, Object>();
+
+    // Snapshots built for this permutation, by the requested property names
+    private final Map<List<String>, Snapshot> snapshots = new HashMap<List<String>, Snapshot>();
+
+    // Time spent waiting for the actual oracle, except for nested lookups
+    private long lookupNanos = 0;
+
+    // Whether lookups by the current thread are timed as part of something else
+    private final ThreadLocal<Boolean> nested = new ThreadLocal<Boolean>();
+
+    public MemoizingPropertyOracle(PropertyOracle oracle) {
+        this.oracle = oracle;
+    }
+
+    /**
+     * Finds a selection property.
+     * 
+     * @return the selection property, or <code>null</code> if there is no
+     *         selection property with the given name
+     */
+    public synchronized SelectionProperty findSelectionProperty(
+            TreeLogger logger, String name) {
+        Object property = selectionProperties.get(name);
+        if (property == null) {
+            long start = System.nanoTime();
+            try {
+                property = oracle.getSelectionProperty(logger, name);
+            } catch (BadPropertyValueException e) {
+                property = MISSING;
+            }
+            addLookupTime(start);
+            selectionProperties.put(name, property);
+        }
+        if (property == MISSING) {
+            return null;
+        } else {
+            return (SelectionProperty) property;
+        }
+    }
+
+    /**
+     * Finds a configuration property.
+     * 
+     * @return the configuration property, or <code>null</code> if there is no
+     *         configuration property with the given name
+     */
+    public synchronized ConfigurationProperty findConfigurationProperty(
+            String name) {
+        Object property = configurationProperties.get(name);
+        if (property == null) {
+            long start = System.nanoTime();
+            try {
+                property = oracle.getConfigurationProperty(name);
+            } catch (BadPropertyValueException e) {
+                property = MISSING;
+            }
+            addLookupTime(start);
+            configurationProperties.put(name, property);
+        }
+        if (property == MISSING) {
+            return null;
+        } else {
+            return (ConfigurationProperty) property;
+        }
+    }
+
+    /**
+     * Gets the value of a selection property for the current permutation.
+     * 
+     * @return the property value, or <code>null</code> if there is no
+     *         selection property with the given name
+     */
+    public String getSelectionPropertyValue(TreeLogger logger, String name) {
+        SelectionProperty property = findSelectionProperty(logger, name);
+        if (property == null) {
+            return null;
+        } else {
+            return property.getCurrentValue();
+        }
+    }
+
+    /**
+     * Gets the values of a configuration property.
+     * 
+     * @return the property values, or <code>null</code> if there is no
+     *         configuration property with the given name
+     */
+    public List<String> getConfigurationPropertyValues(String name) {
+        ConfigurationProperty property = findConfigurationProperty(name);
+        if (property == null) {
+            return null;
+        } else {
+            return property.getValues();
+        }
+    }
+
+    /**
+     * Gets the value of a single valued configuration property.
+     * 
+     * @return the property value, or <code>null</code> if there is no such
+     *         configuration property or if it has no value
+     */
+    public String getConfigurationPropertyValue(String name) {
+        List<String> values = getConfigurationPropertyValues(name);
+        if (values == null || values.isEmpty() || values.get(0) == null
+                || values.get(0).isEmpty()) {
+            return null;
+        } else {
+            return values.get(0);
+        }
+    }
+
+    /**
+     * Gets a snapshot of the current values of some properties. A selection
+     * property is used if there is one with the name, otherwise a
+     * configuration property, in the same way as for methods reading a
+     * property.
+     * 
+     * @param names
+     *            an unmodifiable list of property names
+     * @return the snapshot, shared with everyone requesting the same names
+     */
+    public synchronized Snapshot getSnapshot(TreeLogger logger,
+            List<String> names) {
+        Snapshot snapshot = snapshots.get(names);
+        if (snapshot == null) {
+            snapshot = createSnapshot(logger, names);
+            snapshots.put(names, snapshot);
+        }
+        return snapshot;
+    }
+
+    private Snapshot createSnapshot(TreeLogger logger, List<String> names) {
+        Dependencies dependencies = new Dependencies();
+        Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+        for (String name : names) {
+            String selectionPropertyValue = getSelectionPropertyValue(logger,
+                    name);
+            if (selectionPropertyValue != null) {
+                dependencies.addSelectionProperty(name);
+                values.put(name,
+                        Collections.singletonList(selectionPropertyValue));
+            } else {
+                dependencies.addConfigurationProperty(name);
+                List<String> configurationPropertyValues = getConfigurationPropertyValues(name);
+                if (configurationPropertyValues != null) {
+                    values.put(name, configurationPropertyValues);
+                }
+            }
+        }
+        return new Snapshot(new PropertySnapshot(values), dependencies);
+    }
+
+    /**
+     * Sets whether lookups done by the current thread are nested in something
+     * else whose time is measured, e.g. running a dynamic method. The time
+     * spent in nested lookups is not included in {@link #getLookupNanos()}
+     * so that it isn't counted twice.
+     * 
+     * @param nested
+     *            <code>true</code> to start nested lookups,
+     *            <code>false</code> to end them
+     */
+    public void setNested(boolean nested) {
+        if (nested) {
+            this.nested.set(Boolean.TRUE);
+        } else {
+            this.nested.remove();
+        }
+    }
+
+    private void addLookupTime(long start) {
+        if (nested.get() == null) {
+            lookupNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Gets the total time spent in the actual property oracle, excluding
+     * nested lookups.
+     */
+    public synchronized long getLookupNanos() {
+        return lookupNanos;
+    }
+}
@@ -0,0 +1,293 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import com.github.legioth.propertysource.client.annotations.ArgumentValues;
+import com.github.legioth.propertysource.client.annotations.HostPageProperty;
+import com.github.legioth.propertysource.client.annotations.Namespace;
+import com.github.legioth.propertysource.client.annotations.Property;
+import com.github.legioth.propertysource.client.annotations.RuntimeDispatch;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.JClassType;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+import com.google.gwt.core.ext.typeinfo.JType;
+
+/**
+ * Everything about a property source method that does not depend on the
+ * permutation being compiled.
+ */
+class MethodModel {
+    private final JMethod method;
+    private final TypeHandler<Object> typeHandler;
+    private final String propertyName;
+    private final BooleanConverter booleanConverter;
+    private final ArgumentType argumentType;
+    private final List<String> argumentValues;
+    private final boolean runtimeDispatch;
+    private final String hostPageObject;
+
+    private final Set<Set<String>> knownUsedSelectionProperties = new CopyOnWriteArraySet<Set<String>>();
+
+    private MethodModel(JMethod method, TypeHandler<Object> typeHandler,
+            String propertyName, BooleanConverter booleanConverter,
+            ArgumentType argumentType, List<String> argumentValues,
+            boolean runtimeDispatch, String hostPageObject) {
+        this.method = method;
+        this.typeHandler = typeHandler;
+        this.propertyName = propertyName;
+        this.booleanConverter = booleanConverter;
+        this.argumentType = argumentType;
+        this.argumentValues = argumentValues;
+        this.runtimeDispatch = runtimeDispatch;
+        this.hostPageObject = hostPageObject;
+    }
+
+    public static MethodModel create(TreeLogger logger, JMethod method)
+            throws UnableToCompleteException {
+        if (method.getParameters().length > 1) {
+            logger.log(Type.ERROR,
+                    "Only supporting methods with no arguments or one argument");
+            throw new UnableToCompleteException();
+        }
+
+        ArgumentType argumentType = null;
+        if (method.getParameters().length != 0) {
+            argumentType = ArgumentType.get(method.getParameters()[0]);
+            if (argumentType == null) {
+                logger.log(Type.ERROR,
+                        "Only String, int and enum arguments are supported");
+                throw new UnableToCompleteException();
+            }
+        }
+
+        JType returnType = method.getReturnType();
+        TypeHandler<Object> typeHandler = TypeHandlers.get(method);
+        if (typeHandler == null) {
+            if (method.getParameters().length != 0) {
+                logger.log(Type.ERROR, returnType.getQualifiedSourceName()
+                        + " is not supported for methods with an argument."
+                        + " Only boolean and String are supported.");
+            } else {
+                logger.log(Type.ERROR, returnType.getQualifiedSourceName()
+                        + " is not supported");
+            }
+            throw new UnableToCompleteException();
+        }
+        typeHandler.validate(logger, method);
+
+        String propertyName = null;
+        List<String> argumentValues = null;
+        if (method.isAbstract()) {
+            propertyName = getPropertyName(method);
+        } else if (argumentType != null) {
+            argumentValues = getArgumentValues(logger, method, argumentType);
+        }
+
+        boolean runtimeDispatch = method
+                .getAnnotation(RuntimeDispatch.class) != null;
+        if (runtimeDispatch && !method.isAbstract()) {
+            logger.log(Type.ERROR, "@" + RuntimeDispatch.class.getSimpleName()
+                    + " can only be used for methods that read a property");
+            throw new UnableToCompleteException();
+        } else if (method.isAbstract()) {
+            runtimeDispatch |= method.getEnclosingType().getAnnotation(
+                    RuntimeDispatch.class) != null;
+        }
+
+        String hostPageObject = getHostPageObject(logger, method);
+        if (hostPageObject != null && runtimeDispatch) {
+            logger.log(Type.ERROR, "@" + RuntimeDispatch.class.getSimpleName()
+                    + " can not be combined with @"
+                    + HostPageProperty.class.getSimpleName());
+            throw new UnableToCompleteException();
+        }
+
+        BooleanConverter booleanConverter = BooleanConverter.create(logger,
+                method);
+
+        return new MethodModel(method, typeHandler, propertyName,
+                booleanConverter, argumentType, argumentValues,
+                runtimeDispatch, hostPageObject);
+    }
+
+    private static String getHostPageObject(TreeLogger logger, JMethod method)
+            throws UnableToCompleteException {
+        HostPageProperty annotation = method
+                .getAnnotation(HostPageProperty.class);
+        if (annotation != null && !method.isAbstract()) {
+            logger.log(Type.ERROR, "@"
+                    + HostPageProperty.class.getSimpleName()
+                    + " can only be used for methods that read a property");
+            throw new UnableToCompleteException();
+        } else if (annotation == null && method.isAbstract()) {
+            annotation = method.getEnclosingType().getAnnotation(
+                    HostPageProperty.class);
+        }
+
+        if (annotation == null) {
+            return null;
+        } else {
+            return annotation.value();
+        }
+    }
+
+    private static List<String> getArgumentValues(TreeLogger logger,
+            JMethod method, ArgumentType argumentType)
+            throws UnableToCompleteException {
+        List<String> argumentValues;
+        ArgumentValues annotation = method.getAnnotation(ArgumentValues.class);
+        if (annotation != null) {
+            argumentValues = Arrays.asList(annotation.value());
+        } else {
+            argumentValues = argumentType.getDefaultValues();
+            if (argumentValues == null) {
+                logger.log(Type.ERROR, "Dynamic methods with a "
+                        + method.getParameters()[0].getType()
+                                .getSimpleSourceName()
+                        + " argument must define @"
+                        + ArgumentValues.class.getSimpleName());
+                throw new UnableToCompleteException();
+            }
+        }
+
+        for (String argumentValue : argumentValues) {
+            argumentType.validate(logger, argumentValue);
+        }
+        return argumentValues;
+    }
+
+    public JMethod getMethod() {
+        return method;
+    }
+
+    public TypeHandler<Object> getTypeHandler() {
+        return typeHandler;
+    }
+
+    /**
+     * Gets the name of the property that this method returns.
+     * 
+     * @return the property name, or <code>null</code> if this is a dynamic
+     *         method
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public BooleanConverter getBooleanConverter() {
+        return booleanConverter;
+    }
+
+    /**
+     * Gets the type of the argument of this method.
+     * 
+     * @return the argument type, or <code>null</code> if the method has no
+     *         argument
+     */
+    public ArgumentType getArgumentType() {
+        return argumentType;
+    }
+
+    /**
+     * Gets the arguments to evaluate a dynamic method with.
+     * 
+     * @return a list of argument values, or <code>null</code> if this is not
+     *         a dynamic method with an argument
+     */
+    public List<String> getArgumentValues() {
+        return argumentValues;
+    }
+
+    /**
+     * Checks whether the return value is computed by running the method
+     * implementation instead of reading a property.
+     */
+    public boolean isDynamic() {
+        return propertyName == null;
+    }
+
+    /**
+     * Checks whether the return value is chosen at runtime based on the value
+     * of the property, instead of being fixed for the permutation.
+     */
+    public boolean isRuntimeDispatch() {
+        return runtimeDispatch;
+    }
+
+    /**
+     * Gets the name of the JavaScript object in the host page that the
+     * property is read from at runtime.
+     * 
+     * @return the object name, or <code>null</code> if the property is not
+     *         read from the host page
+     */
+    public String getHostPageObject() {
+        return hostPageObject;
+    }
+
+    /**
+     * Gets all the different sets of selection properties that have been used
+     * when running this dynamic method for previous permutations.
+     */
+    public Set<Set<String>> getKnownUsedSelectionProperties() {
+        return Collections.unmodifiableSet(knownUsedSelectionProperties);
+    }
+
+    /**
+     * Remembers the selection properties used when running this dynamic
+     * method for a permutation.
+     */
+    public void addKnownUsedSelectionProperties(
+            Set<String> usedSelectionProperties) {
+        knownUsedSelectionProperties.add(Collections
+                .unmodifiableSet(new TreeSet<String>(usedSelectionProperties)));
+    }
+
+    /**
+     * Describes the method in a way that changes whenever the generated
+     * method might change, given the same property values.
+     */
+    @Override
+    public String toString() {
+        return method.getReadableDeclaration() + "=" + propertyName
+                + booleanConverter + argumentValues
+                + (runtimeDispatch ? "@runtime" : "")
+                + (hostPageObject != null ? "@" + hostPageObject : "");
+    }
+
+    private static String getPropertyName(JMethod method) {
+        // Use @Property on method if defined
+        Property methodPropertyAnnotation = method
+                .getAnnotation(Property.class);
+        if (methodPropertyAnnotation != null) {
+            return methodPropertyAnnotation.value();
+        }
+
+        JClassType enclosingType = method.getEnclosingType();
+
+        // Use @Property on type if defined
+        Property typePropertyAnnotation = enclosingType
+                .getAnnotation(Property.class);
+        if (typePropertyAnnotation != null) {
+            return typePropertyAnnotation.value();
+        }
+
+        // Default to using method name
+        String propertyName = method.getName();
+
+        // Supplement with @Namespace on type if defined
+        Namespace namespace = enclosingType.getAnnotation(Namespace.class);
+        if (namespace != null) {
+            return namespace.value() + "." + propertyName;
+        } else {
+            return propertyName;
+        }
+    }
+}
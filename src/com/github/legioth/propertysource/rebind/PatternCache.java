@@ -0,0 +1,46 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled regular expressions shared by all generator invocations. The cache
+ * is bounded since it outlives individual compiles e.g. in Super Dev Mode.
+ */
+class PatternCache {
+    private static final int MAX_SIZE = 256;
+
+    private static final Map<String, Pattern> patterns = new LinkedHashMap<String, Pattern>(
+            16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Entry<String, Pattern> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private PatternCache() {
+        // Only static helpers
+    }
+
+    /**
+     * Gets a compiled pattern for a regular expression.
+     * 
+     * @param regex
+     *            the regular expression
+     * @return the compiled pattern
+     * @throws java.util.regex.PatternSyntaxException
+     *             if the regular expression is not valid
+     */
+    public static Pattern get(String regex) {
+        synchronized (patterns) {
+            Pattern pattern = patterns.get(regex);
+            if (pattern == null) {
+                pattern = Pattern.compile(regex);
+                patterns.put(regex, pattern);
+            }
+            return pattern;
+        }
+    }
+}
@@ -1,53 +1,116 @@
 package com.github.legioth.propertysource.rebind;
 
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 import com.github.legioth.propertysource.client.DynamicPropertySource.PropertyProxy;
+import com.github.legioth.propertysource.client.PropertySnapshot;
+import com.github.legioth.propertysource.rebind.MemoizingPropertyOracle.Snapshot;
 import com.google.gwt.core.ext.BadPropertyValueException;
-import com.google.gwt.core.ext.PropertyOracle;
+import com.google.gwt.core.ext.ConfigurationProperty;
+import com.google.gwt.core.ext.SelectionProperty;
 import com.google.gwt.core.ext.TreeLogger;
 
 class PropertyProxyImpl implements PropertyProxy {
 
     private final TreeLogger logger;
-    private final PropertyOracle oracle;
-    private final Set<String> usedSelectionProperties;
+    private final MemoizingPropertyOracle oracle;
 
-    public PropertyProxyImpl(TreeLogger logger, PropertyOracle oracle,
-            Set<String> usedSelectionProperties) {
+    // Reads that are not done by the thread running a method
+    private final Dependencies instanceDependencies;
+
+    // Reads done by the method that the current thread is running
+    private final ThreadLocal<Dependencies> methodDependencies = new ThreadLocal<Dependencies>();
+
+    public PropertyProxyImpl(TreeLogger logger, MemoizingPropertyOracle oracle,
+            Dependencies instanceDependencies) {
         this.logger = logger;
         this.oracle = oracle;
-        this.usedSelectionProperties = usedSelectionProperties;
+        this.instanceDependencies = instanceDependencies;
+    }
+
+    /**
+     * Sets where to record the reads done by the current thread.
+     * 
+     * @param dependencies
+     *            the dependencies of the method that is about to run, or
+     *            <code>null</code> when the method is done
+     */
+    public void setMethodDependencies(Dependencies dependencies) {
+        if (dependencies == null) {
+            methodDependencies.remove();
+        } else {
+            methodDependencies.set(dependencies);
+        }
+    }
+
+    private Dependencies getDependencies() {
+        Dependencies dependencies = methodDependencies.get();
+        if (dependencies == null) {
+            return instanceDependencies;
+        } else {
+            return dependencies;
+        }
     }
 
     @Override
     public String getSelectionPropertyValue(String name) {
-        try {
-            usedSelectionProperties.add(name);
-            return oracle.getSelectionProperty(logger, name).getCurrentValue();
-        } catch (BadPropertyValueException e) {
-            throw new RuntimeException(e);
-        }
+        getDependencies().addSelectionProperty(name);
+        return getSelectionProperty(name).getCurrentValue();
     }
 
     @Override
     public String getSelectionPropertyFallback(String name) {
-        try {
-            usedSelectionProperties.add(name);
-            return oracle.getSelectionProperty(logger, name).getFallbackValue();
-        } catch (BadPropertyValueException e) {
-            throw new RuntimeException(e);
-        }
+        getDependencies().addFallback(name);
+        return getSelectionProperty(name).getFallbackValue();
     }
 
     @Override
     public List<String> getConfigurationPropertyValues(String name) {
+        getDependencies().addConfigurationProperty(name);
+        ConfigurationProperty property = oracle.findConfigurationProperty(name);
+        if (property == null) {
+            throw new RuntimeException(new BadPropertyValueException(name));
+        }
+        return property.getValues();
+    }
+
+    @Override
+    public String readResource(String name) {
+        byte[] content = EvaluationClassLoader.readResource(name);
+        if (content == null) {
+            getDependencies().addResource(name, null);
+            return null;
+        }
+
+        getDependencies().addResource(name,
+                Long.valueOf(EvaluationClassLoader.checksum(content)));
         try {
-            return oracle.getConfigurationProperty(name).getValues();
-        } catch (BadPropertyValueException e) {
+            return new String(content, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
             throw new RuntimeException(e);
         }
     }
 
+    @Override
+    public PropertySnapshot getSnapshot(String[] names) {
+        Snapshot snapshot = oracle.getSnapshot(logger,
+                Collections.unmodifiableList(Arrays.asList(names.clone())));
+
+        // Every method using the snapshot depends on all of its properties
+        getDependencies().addAll(snapshot.getDependencies());
+        return snapshot.getSnapshot();
+    }
+
+    private SelectionProperty getSelectionProperty(String name) {
+        SelectionProperty property = oracle.findSelectionProperty(logger, name);
+        if (property == null) {
+            throw new RuntimeException(new BadPropertyValueException(name));
+        }
+        return property;
+    }
+
 }
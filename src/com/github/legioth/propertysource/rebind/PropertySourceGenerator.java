@@ -1,226 +1,407 @@
 package com.github.legioth.propertysource.rebind;
 
+import java.io.File;
 import java.io.PrintWriter;
 import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.github.legioth.propertysource.client.DynamicPropertySource;
-import com.github.legioth.propertysource.client.annotations.BooleanConversion;
-import com.github.legioth.propertysource.client.annotations.Namespace;
+import com.github.legioth.propertysource.client.PropertySource;
 import com.github.legioth.propertysource.client.annotations.Property;
-import com.google.gwt.core.ext.BadPropertyValueException;
-import com.google.gwt.core.ext.ConfigurationProperty;
+import com.github.legioth.propertysource.client.impl.PropertyValues;
+import com.github.legioth.propertysource.rebind.GeneratorMetrics.Phase;
+import com.github.legioth.propertysource.rebind.GeneratorMetrics.TypeMetrics;
+import com.google.gwt.core.ext.CachedGeneratorResult;
 import com.google.gwt.core.ext.Generator;
 import com.google.gwt.core.ext.GeneratorContext;
+import com.google.gwt.core.ext.IncrementalGenerator;
+import com.google.gwt.core.ext.PropertyOracle;
+import com.google.gwt.core.ext.RebindMode;
+import com.google.gwt.core.ext.RebindResult;
 import com.google.gwt.core.ext.SelectionProperty;
+import com.google.gwt.core.ext.SubsetFilteringPropertyOracle;
 import com.google.gwt.core.ext.TreeLogger;
 import com.google.gwt.core.ext.TreeLogger.Type;
 import com.google.gwt.core.ext.UnableToCompleteException;
 import com.google.gwt.core.ext.typeinfo.JClassType;
 import com.google.gwt.core.ext.typeinfo.JMethod;
-import com.google.gwt.core.ext.typeinfo.JParameterizedType;
-import com.google.gwt.core.ext.typeinfo.JType;
+import com.google.gwt.core.ext.typeinfo.JParameter;
 import com.google.gwt.core.ext.typeinfo.TypeOracle;
 import com.google.gwt.user.rebind.ClassSourceFileComposerFactory;
 import com.google.gwt.user.rebind.SourceWriter;
 import com.google.gwt.user.rebind.StringSourceWriter;
 
-public class PropertySourceGenerator extends Generator {
+public class PropertySourceGenerator extends IncrementalGenerator {
 
-    private interface TypeHandler<T> {
-        public T getStaticReturnValue(TreeLogger logger,
-                List<String> propertyValue, JMethod method)
-                throws UnableToCompleteException;
+    /**
+     * Should be incremented whenever the generated code changes so that
+     * results cached by an older version are not reused.
+     */
+    private static final long VERSION_ID = 11;
 
-        public void writeValue(TreeLogger logger, SourceWriter writer, T value);
+    /**
+     * Client data key for the description of everything that the previously
+     * generated class was based on.
+     */
+    private static final String INPUT_KEY = "inputKey";
+
+    /**
+     * Configuration property defining how many dynamic methods can be
+     * evaluated concurrently.
+     */
+    private static final String EVALUATION_THREADS_PROPERTY = "propertysource.evaluationThreads";
+
+    /**
+     * Configuration property defining a directory where a report of the cost
+     * of generating each type is written.
+     */
+    static final String REPORT_DIRECTORY_PROPERTY = "propertysource.reportDirectory";
+
+    /**
+     * Configuration property defining a directory where evaluation results are
+     * stored so that they can be reused by later compiles.
+     */
+    private static final String CACHE_DIRECTORY_PROPERTY = "propertysource.cacheDirectory";
+
+    /**
+     * Configuration property defining how many milliseconds a dynamic method
+     * may run for one permutation.
+     */
+    private static final String METHOD_TIMEOUT_PROPERTY = "propertysource.methodTimeout";
+
+    /**
+     * Configuration property defining how many bytes a dynamic method may
+     * allocate for one permutation.
+     */
+    private static final String METHOD_ALLOCATION_LIMIT_PROPERTY = "propertysource.methodAllocationLimit";
+
+    /**
+     * Configuration property defining whether property values are checked for
+     * all possible values of the selection properties when a type is first
+     * generated.
+     */
+    private static final String VALIDATE_ALL_VALUES_PROPERTY = "propertysource.validateAllValues";
+
+    /**
+     * Oracle used by GWT for finding the properties that a generator uses.
+     * The same instance returns different values for each run.
+     */
+    private static final String DYNAMIC_PROPERTY_ORACLE = "com.google.gwt.dev.cfg.DynamicPropertyOracle";
+
+    private static final Field wrappedPropertyOracle = findWrappedOracleField();
+
+    /**
+     * Analyzed types. The same generator instance is used for all permutations
+     * of a compile, whereas each new compile gets a new type oracle with new
+     * type instances.
+     */
+    private final ConcurrentMap<JClassType, PropertySourceModel> models = new ConcurrentHashMap<JClassType, PropertySourceModel>();
+
+    /**
+     * Names of the classes generated during this compile, keyed by the type
+     * name and the values of the selection properties that were used.
+     */
+    private final ConcurrentMap<String, String> classNames = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Results of dynamic methods run during this compile, keyed by the method
+     * and the values of the selection properties that the method used.
+     */
+    private final ConcurrentMap<String, DynamicResult> dynamicResults = new ConcurrentHashMap<String, DynamicResult>();
+
+    /**
+     * Memoizing views of the property oracles of the permutations of this
+     * compile, shared by all types generated for the same permutation. A view
+     * only holds the values that have been looked up, so keeping them until
+     * the end of the compile is cheap.
+     */
+    private final Map<PropertyOracle, MemoizingPropertyOracle> permutationOracles = new IdentityHashMap<PropertyOracle, MemoizingPropertyOracle>();
+
+    /**
+     * Class loader for dynamic methods, checked for changes once per compile.
+     */
+    private EvaluationClassLoader evaluationClassLoader;
+
+    /**
+     * Evaluation results stored on disk, or <code>null</code> if no cache
+     * directory is configured.
+     */
+    private EvaluationCache evaluationCache;
+    private boolean evaluationCacheResolved = false;
+
+    /**
+     * Reflective handles for the dynamic property source types.
+     */
+    private final ConcurrentMap<JClassType, DynamicInvoker> invokers = new ConcurrentHashMap<JClassType, DynamicInvoker>();
+
+    /**
+     * Executor for evaluating dynamic methods in parallel, or
+     * <code>null</code> if methods are evaluated sequentially.
+     */
+    private ExecutorService evaluationExecutor;
+    private boolean evaluationExecutorResolved = false;
+
+    /**
+     * Limits for running dynamic methods, or <code>null</code> if methods are
+     * run directly without any limits.
+     */
+    private EvaluationBudget evaluationBudget;
+    private boolean evaluationBudgetResolved = false;
+
+    private final GeneratorMetrics metrics = new GeneratorMetrics();
+    private final GeneratorReportArtifact reportArtifact = new GeneratorReportArtifact(
+            metrics);
+
+    /**
+     * The return value of a dynamic method together with everything that the
+     * method used.
+     */
+    private static class DynamicResult {
+        private final Object returnValue;
+        private final Dependencies dependencies;
+
+        public DynamicResult(Object returnValue, Dependencies dependencies) {
+            this.returnValue = returnValue;
+            this.dependencies = dependencies;
+        }
     }
 
-    private static final Map<String, TypeHandler<?>> typeHandlers = new HashMap<String, TypeHandler<?>>();
-    static {
-        typeHandlers.put(String.class.getName(), new TypeHandler<String>() {
-            @Override
-            public String getStaticReturnValue(TreeLogger logger,
-                    List<String> propertyValue, JMethod method)
-                    throws UnableToCompleteException {
-                if (propertyValue.size() != 1) {
-                    logger.log(Type.ERROR,
-                            "String only supported for properties with only one value");
-                    throw new UnableToCompleteException();
-                }
-                return propertyValue.get(0);
-            }
-
-            @Override
-            public void writeValue(TreeLogger logger, SourceWriter writer,
-                    String value) {
-                writer.print("\"");
-                writer.print(escape(value));
-                writer.print("\"");
-            }
-        });
-        typeHandlers.put("boolean", new TypeHandler<Boolean>() {
-            @Override
-            public Boolean getStaticReturnValue(TreeLogger logger,
-                    List<String> propertyValueList, JMethod method)
-                    throws UnableToCompleteException {
-                String truePattern = "";
-                String[] trueValues = new String[0];
-                boolean matchAll = false;
-
-                BooleanConversion booleanConversion = method
-                        .getAnnotation(BooleanConversion.class);
-                if (booleanConversion != null) {
-                    truePattern = booleanConversion.truePattern();
-                    trueValues = booleanConversion.trueValues();
-                    matchAll = booleanConversion.matchAll();
-                }
+    @Override
+    public long getVersionId() {
+        return VERSION_ID;
+    }
 
-                for (String propertyValue : propertyValueList) {
-                    boolean match = true;
-                    boolean useDefaultLogic = true;
-                    if (!truePattern.isEmpty()) {
-                        match &= valueMatches(propertyValue, truePattern);
-                        useDefaultLogic = false;
-                    }
-                    if (trueValues.length != 0) {
-                        match &= isTrueValue(propertyValue, trueValues);
-                        useDefaultLogic = false;
-                    }
+    @Override
+    public RebindResult generateIncrementally(TreeLogger logger,
+            GeneratorContext context, String typeName)
+            throws UnableToCompleteException {
+        MemoizingPropertyOracle oracle = getPermutationOracle(context
+                .getPropertyOracle());
+        TypeMetrics typeMetrics = metrics.get(typeName);
 
-                    if (useDefaultLogic) {
-                        match &= isTrueValue(logger, propertyValue);
-                    }
+        long lookupNanos = oracle.getLookupNanos();
+        RebindResult result = generate(logger, context, typeName, oracle,
+                typeMetrics);
 
-                    if (matchAll && !match) {
-                        // Found one that didn't match
-                        return Boolean.FALSE;
-                    } else if (match && !matchAll) {
-                        // Found one that did match
-                        return Boolean.TRUE;
-                    }
-                }
+        typeMetrics.addTime(Phase.ORACLE, oracle.getLookupNanos()
+                - lookupNanos);
+        typeMetrics.addResult(result.getRebindMode(),
+                result.getResultTypeName());
 
-                // Found all without terminating
-                if (matchAll) {
-                    // This means that there wasn't any problem
-                    return Boolean.TRUE;
-                } else {
-                    // This means no good match was found
-                    return Boolean.FALSE;
-                }
-            }
+        /*
+         * The report is written by GeneratorReportLinker once all types have
+         * been generated instead of being rewritten for every type. Committing
+         * the same artifact again only replaces it.
+         */
+        String reportDirectory = oracle
+                .getConfigurationPropertyValue(REPORT_DIRECTORY_PROPERTY);
+        if (reportDirectory != null) {
+            context.commitArtifact(logger, reportArtifact);
+        }
 
-            @Override
-            public void writeValue(TreeLogger logger, SourceWriter writer,
-                    Boolean value) {
-                writer.print(value.toString());
-            }
-        });
-        typeHandlers.put(List.class.getName(), new TypeHandler<List<String>>() {
-            @Override
-            public List<String> getStaticReturnValue(TreeLogger logger,
-                    List<String> propertyValue, JMethod method)
-                    throws UnableToCompleteException {
-                JType type = method.getReturnType();
-                JParameterizedType parameterizedType = type.isParameterized();
-                if (parameterizedType == null
-                        || !parameterizedType.getTypeArgs()[0]
-                                .getQualifiedSourceName().equals(
-                                        String.class.getName())) {
-                    logger.log(
-                            Type.ERROR,
-                            type.getParameterizedQualifiedSourceName()
-                                    + " is not supported. List<String> is the only supported List type.");
-                    throw new UnableToCompleteException();
-                }
+        return result;
+    }
 
-                return propertyValue;
-            }
+    /**
+     * Gets the memoizing view of the permutation of a property oracle. GWT
+     * wraps the oracle of the permutation in a new filtering oracle for each
+     * generator call, so views are shared based on the wrapped oracle.
+     */
+    private synchronized MemoizingPropertyOracle getPermutationOracle(
+            PropertyOracle propertyOracle) {
+        PropertyOracle permutationOracle = unwrap(propertyOracle);
+        if (permutationOracle.getClass().getName()
+                .equals(DYNAMIC_PROPERTY_ORACLE)) {
+            return new MemoizingPropertyOracle(propertyOracle);
+        }
 
-            @Override
-            public void writeValue(TreeLogger logger, SourceWriter writer,
-                    List<String> value) {
-                // Arrays.asList(value1, value2);
-                writer.print(Arrays.class.getName());
-                writer.print(".asList(");
-                for (int i = 0; i < value.size(); i++) {
-                    if (i != 0) {
-                        writer.print(",");
-                    }
-                    writer.print("\"");
-                    writer.print(escape(value.get(i)));
-                    writer.print("\"");
-                }
-                writer.print(")");
+        MemoizingPropertyOracle oracle = permutationOracles
+                .get(permutationOracle);
+        if (oracle == null) {
+            oracle = new MemoizingPropertyOracle(propertyOracle);
+            permutationOracles.put(permutationOracle, oracle);
+        }
+        return oracle;
+    }
+
+    private static PropertyOracle unwrap(PropertyOracle propertyOracle) {
+        while (propertyOracle instanceof SubsetFilteringPropertyOracle
+                && wrappedPropertyOracle != null) {
+            try {
+                propertyOracle = (PropertyOracle) wrappedPropertyOracle
+                        .get(propertyOracle);
+            } catch (IllegalAccessException e) {
+                // Accessible since the field was found
+                throw new RuntimeException(e);
             }
-        });
+        }
+        return propertyOracle;
     }
 
-    @Override
-    public String generate(TreeLogger logger, GeneratorContext context,
-            String typeName) throws UnableToCompleteException {
+    private static Field findWrappedOracleField() {
+        try {
+            Field field = SubsetFilteringPropertyOracle.class
+                    .getDeclaredField("wrappedPropertyOracle");
+            field.setAccessible(true);
+            return field;
+        } catch (Exception e) {
+            // Each generator call gets its own view
+            return null;
+        }
+    }
 
+    private RebindResult generate(TreeLogger logger, GeneratorContext context,
+            String typeName, MemoizingPropertyOracle oracle,
+            TypeMetrics typeMetrics) throws UnableToCompleteException {
         TypeOracle typeOracle = context.getTypeOracle();
         JClassType type = typeOracle.findType(typeName);
 
-        if (type.isAbstract() && type.isInterface() == null) {
-            logger.log(Type.ERROR,
-                    "Target type should either be an interface or a non-abstract class");
-            throw new UnableToCompleteException();
+        PropertySourceModel model = getModel(logger, oracle, type,
+                typeMetrics);
+
+        /*
+         * Evaluation is deterministic for the same property values. If an
+         * earlier permutation had the same values for a set of properties that
+         * was used when evaluating this type, that evaluation would have read
+         * the same properties again and produced the same class.
+         */
+        for (Set<String> knownUsedSelectionProperties : model
+                .getKnownUsedSelectionProperties()) {
+            String existingClassName = classNames.get(getSelectionKey(logger,
+                    oracle, model.getType().getQualifiedSourceName(),
+                    knownUsedSelectionProperties));
+            if (existingClassName != null) {
+                logger.log(Type.DEBUG, "Reusing " + existingClassName);
+                return new RebindResult(RebindMode.USE_EXISTING,
+                        existingClassName);
+            }
         }
 
         /*
-         * Class name depends on the used properties -> must evaluate the type
-         * before we know whether to generate a new class. Most of the effort
-         * does currently go to the evaluation, so we might as well keep the
-         * design simple by directly producing the class body at the same time
-         * instead of first populating a data model and then using that data
-         * model to produce the source only when needed.
+         * The result of a dynamic method depends on code that we can't
+         * inspect, so only types without dynamic methods can be reused from
+         * the cache.
          */
-        StringSourceWriter sourceWriter = new StringSourceWriter();
-        Set<String> usedSelectionProperties = writeMethods(
-                logger.branch(Type.DEBUG, "Processing methods in " + typeName),
-                context, type, sourceWriter);
+        String inputKey = null;
+        if (!model.hasDynamicMethods()) {
+            inputKey = getInputKey(logger, oracle, model);
 
-        // Properties in deterministic order
-        ArrayList<String> sortedProperties = new ArrayList<String>(
-                usedSelectionProperties);
-        Collections.sort(sortedProperties);
+            CachedGeneratorResult cachedResult = context
+                    .getCachedGeneratorResult();
+            if (context.isGeneratorResultCachingEnabled()
+                    && cachedResult != null
+                    && inputKey.equals(cachedResult.getClientData(INPUT_KEY))) {
+                logger.log(Type.DEBUG, "Reusing cached "
+                        + cachedResult.getResultTypeName());
+                return new RebindResult(RebindMode.USE_ALL_CACHED,
+                        cachedResult.getResultTypeName());
+            }
+        }
 
-        StringBuilder prefixes = new StringBuilder("Impl");
-        for (String propertyName : sortedProperties) {
+        /*
+         * Class name depends on the generated content -> must evaluate the type
+         * before we know whether to generate a new class. The analysis that
+         * doesn't depend on the permutation is cached in the model, so what
+         * remains is the evaluation which is done while directly producing the
+         * class body.
+         */
+        EvaluationCache cache = getEvaluationCache(oracle);
+        String typeKey = VERSION_ID + ";" + model.getDescription();
+        EvaluationCache.Result cachedEvaluation = null;
+        if (cache != null) {
+            long start = System.nanoTime();
+            oracle.setNested(true);
             try {
-                SelectionProperty property = context.getPropertyOracle()
-                        .getSelectionProperty(logger, propertyName);
-                if (property.getPossibleValues().size() > 1) {
-                    /*
-                     * Separating with not 100% safe as a_b + c and a + b_c
-                     * would both give a_b_c, but the collision risk is quite
-                     * minimal. AbstractClientBundleGenerator seems to use the
-                     * same strategy in generateSimpleSourceName.
-                     */
-                    prefixes.append('_').append(property.getCurrentValue());
+                cachedEvaluation = cache.find(logger, oracle, typeKey);
+            } finally {
+                oracle.setNested(false);
+                typeMetrics.addTime(Phase.CACHE, System.nanoTime() - start);
+            }
+        }
+
+        String body;
+        Set<String> usedSelectionProperties;
+        if (cachedEvaluation != null) {
+            logger.log(Type.DEBUG, "Using evaluation result from "
+                    + cache.getDirectory());
+            typeMetrics.addDiskCacheHit();
+            body = cachedEvaluation.getBody();
+            usedSelectionProperties = cachedEvaluation.getSelectionProperties();
+        } else {
+            typeMetrics.addEvaluation();
+            StringSourceWriter sourceWriter = new StringSourceWriter();
+            Dependencies dependencies = writeMethods(
+                    logger.branch(Type.DEBUG, "Processing methods in "
+                            + typeName), oracle, model, typeMetrics,
+                    sourceWriter);
+            body = sourceWriter.toString();
+            usedSelectionProperties = dependencies.getSelectionProperties();
+
+            if (cache != null) {
+                Map<String, Long> classChecksums;
+                if (model.hasDynamicMethods()) {
+                    classChecksums = getEvaluationClassLoader(logger)
+                            .getChecksums(type.getQualifiedBinaryName());
+                } else {
+                    classChecksums = Collections.emptyMap();
+                }
+                long start = System.nanoTime();
+                oracle.setNested(true);
+                try {
+                    cache.store(logger, oracle, typeKey, dependencies,
+                            classChecksums, body);
+                } finally {
+                    oracle.setNested(false);
+                    typeMetrics.addTime(Phase.CACHE, System.nanoTime()
+                            - start);
                 }
-            } catch (BadPropertyValueException e) {
-                logger.log(Type.ERROR, "Could not recheck property", e);
-                throw new UnableToCompleteException();
             }
         }
 
+        /*
+         * Name the class based on its content so that all permutations that
+         * produce the same methods share the same class, and the same content
+         * gets the same name in every build.
+         */
         String packageName = type.getPackage().getName();
-        String className = type.getSimpleSourceName() + prefixes.toString();
+        String className = type.getSimpleSourceName() + "Impl_"
+                + getContentHash(logger, type, body);
+
+        String createdClassName = packageName + "." + className;
+
+        model.addKnownUsedSelectionProperties(usedSelectionProperties);
+        classNames.put(
+                getSelectionKey(logger, oracle, model.getType()
+                        .getQualifiedSourceName(), usedSelectionProperties),
+                createdClassName);
 
         PrintWriter writer = context.tryCreate(logger, packageName, className);
 
-        if (writer != null) {
+        if (writer == null) {
+            // Already generated for a permutation with the same content
+            return new RebindResult(RebindMode.USE_EXISTING, createdClassName);
+        } else {
+            long start = System.nanoTime();
             ClassSourceFileComposerFactory factory = new ClassSourceFileComposerFactory(
                     packageName, className);
             logger.log(Type.DEBUG,
@@ -234,74 +415,515 @@ public class PropertySourceGenerator extends Generator {
             SourceWriter realSourceWriter = factory.createSourceWriter(context,
                     writer);
 
-            realSourceWriter.print(sourceWriter.toString());
+            realSourceWriter.print(body);
 
             realSourceWriter.commit(logger);
+
+            if (!model.getRuntimePropertyNames().isEmpty()) {
+                createRuntimePropertiesType(logger, context, model);
+            }
+            typeMetrics.addTime(Phase.EMISSION, System.nanoTime() - start);
+
+            RebindResult result = new RebindResult(RebindMode.USE_ALL_NEW,
+                    createdClassName);
+            if (inputKey != null) {
+                result.putClientData(INPUT_KEY, inputKey);
+            }
+            return result;
         }
+    }
 
-        String createdClassName = packageName + "." + className;
-        return createdClassName;
+    private PropertySourceModel getModel(TreeLogger logger,
+            MemoizingPropertyOracle oracle, JClassType type,
+            TypeMetrics typeMetrics) throws UnableToCompleteException {
+        PropertySourceModel model = models.get(type);
+        if (model == null) {
+            model = PropertySourceModel.create(
+                    logger.branch(Type.DEBUG,
+                            "Analyzing " + type.getQualifiedSourceName()),
+                    type);
+
+            // Keep the first one if another thread was quicker
+            PropertySourceModel existing = models.putIfAbsent(type, model);
+            if (existing != null) {
+                model = existing;
+            } else if (isValidateAllValues(oracle)) {
+                long start = System.nanoTime();
+                oracle.setNested(true);
+                try {
+                    validateAllValues(logger.branch(Type.DEBUG, "Validating "
+                            + type.getQualifiedSourceName()), oracle, model);
+                } finally {
+                    oracle.setNested(false);
+                    typeMetrics.addTime(Phase.VALIDATION, System.nanoTime()
+                            - start);
+                }
+            }
+        }
+        return model;
     }
 
-    private static Set<String> writeMethods(TreeLogger logger,
-            GeneratorContext context, JClassType type, SourceWriter writer)
-            throws UnableToCompleteException {
-        Set<String> allUsedSelectionProperties = new HashSet<String>();
+    private static boolean isValidateAllValues(MemoizingPropertyOracle oracle) {
+        String value = oracle
+                .getConfigurationPropertyValue(VALIDATE_ALL_VALUES_PROPERTY);
+        return value == null || Boolean.parseBoolean(value.trim());
+    }
 
-        JMethod[] methods = type.getMethods();
-        for (JMethod method : methods) {
-            if (method.isStatic()) {
-                logger.log(Type.DEBUG,
-                        "Ignoring static method " + method.getName());
+    /**
+     * Checks that each property method can convert every value that its
+     * property might have in any permutation. This is done once per compile
+     * so that a value that can't be converted fails the compile right away
+     * instead of when the permutation using it is generated. Dynamic methods
+     * are not checked since their values are only known by running them.
+     */
+    private static void validateAllValues(TreeLogger logger,
+            MemoizingPropertyOracle oracle, PropertySourceModel model)
+            throws UnableToCompleteException {
+        boolean valid = true;
+        for (MethodModel methodModel : model.getMethods()) {
+            if (methodModel.isDynamic()) {
                 continue;
             }
 
-            if (!method.isPublic()) {
-                logger.log(Type.DEBUG,
-                        "Ignoring non-public method " + method.getName());
-                continue;
+            TreeLogger methodLogger = logger.branch(Type.DEBUG,
+                    "Validating method "
+                            + methodModel.getMethod().getReadableDeclaration());
+            String propertyName = methodModel.getPropertyName();
+            SelectionProperty property = oracle.findSelectionProperty(
+                    methodLogger, propertyName);
+
+            List<List<String>> allValues = new ArrayList<List<String>>();
+            if (property != null) {
+                for (String value : property.getPossibleValues()) {
+                    allValues.add(Collections.singletonList(value));
+                }
+            } else {
+                List<String> configurationPropertyValues = oracle
+                        .getConfigurationPropertyValues(propertyName);
+                if (configurationPropertyValues != null) {
+                    allValues.add(configurationPropertyValues);
+                } else if (methodModel.getHostPageObject() == null) {
+                    // Host page properties need no compile time value
+                    methodLogger.log(Type.ERROR, "Property " + propertyName
+                            + " not found");
+                    valid = false;
+                }
+            }
+
+            for (List<String> values : allValues) {
+                try {
+                    methodModel.getTypeHandler().getStaticReturnValue(
+                            methodLogger.branch(Type.DEBUG, "Validating "
+                                    + propertyName + "=" + values), values,
+                            methodModel);
+                } catch (UnableToCompleteException e) {
+                    // Keep going to report all invalid values at once
+                    valid = false;
+                }
+            }
+        }
+
+        if (!valid) {
+            logger.log(Type.ERROR, "Invalid property values for "
+                    + model.getType().getQualifiedSourceName()
+                    + ", set " + VALIDATE_ALL_VALUES_PROPERTY
+                    + " to false to only check the values that are compiled");
+            throw new UnableToCompleteException();
+        }
+    }
+
+    /**
+     * Computes a hash of the generated methods of a class, to be used as a
+     * suffix for the class name.
+     */
+    private static String getContentHash(TreeLogger logger, JClassType type,
+            String body) throws UnableToCompleteException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            digest.update(type.getQualifiedSourceName().getBytes("UTF-8"));
+            digest.update((byte) 0);
+            digest.update(body.getBytes("UTF-8"));
+
+            // 64 bits is plenty for the few variants of a single type
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) {
+                hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(hash[i] & 0xf, 16));
             }
+            return hex.toString();
+        } catch (Exception e) {
+            logger.log(Type.ERROR, "Could not compute class name", e);
+            throw new UnableToCompleteException();
+        }
+    }
 
-            Set<String> usedSeletionProperties = writeMethod(
-                    logger.branch(
-                            Type.DEBUG,
-                            "Processing method "
-                                    + method.getReadableDeclaration()),
-                    context, method, writer);
-            if (usedSeletionProperties != null) {
-                allUsedSelectionProperties.addAll(usedSeletionProperties);
+    /**
+     * Describes the current values of some selection properties for a type or
+     * a method.
+     */
+    private static String getSelectionKey(TreeLogger logger,
+            MemoizingPropertyOracle oracle, String name,
+            Set<String> selectionProperties) throws UnableToCompleteException {
+        StringBuilder key = new StringBuilder(name);
+
+        // Properties in deterministic order
+        for (String propertyName : new TreeSet<String>(selectionProperties)) {
+            String value = oracle.getSelectionPropertyValue(logger,
+                    propertyName);
+            if (value == null) {
+                logger.log(Type.ERROR, "Could not recheck property "
+                        + propertyName);
+                throw new UnableToCompleteException();
             }
+            key.append(';').append(propertyName).append('=').append(value);
         }
 
-        return allUsedSelectionProperties;
+        return key.toString();
+    }
+
+    /**
+     * Describes the declarations of the type and the values of all properties
+     * used by it. Two invocations returning the same key would generate the
+     * same class.
+     */
+    private static String getInputKey(TreeLogger logger,
+            MemoizingPropertyOracle oracle, PropertySourceModel model) {
+        StringBuilder key = new StringBuilder(model.getDescription());
+
+        for (String propertyName : model.getPropertyNames()) {
+            key.append(';').append(propertyName).append('=');
+            String selectionPropertyValue = oracle.getSelectionPropertyValue(
+                    logger, propertyName);
+            if (selectionPropertyValue != null) {
+                key.append(selectionPropertyValue);
+            } else {
+                key.append(oracle.getConfigurationPropertyValues(propertyName));
+            }
+        }
+
+        for (String propertyName : model.getRuntimePropertyNames()) {
+            key.append(';').append(propertyName).append('=');
+            SelectionProperty property = oracle.findSelectionProperty(logger,
+                    propertyName);
+            if (property != null) {
+                key.append(property.getPossibleValues());
+            }
+        }
+
+        return key.toString();
+    }
+
+    private synchronized EvaluationClassLoader getEvaluationClassLoader(
+            TreeLogger logger) {
+        if (evaluationClassLoader == null) {
+            evaluationClassLoader = EvaluationClassLoader.get(logger);
+        }
+        return evaluationClassLoader;
+    }
+
+    private DynamicInvoker getDynamicInvoker(TreeLogger logger,
+            JClassType type) throws UnableToCompleteException {
+        DynamicInvoker invoker = invokers.get(type);
+        if (invoker == null) {
+            if (type.isAbstract()) {
+                logger.log(Type.ERROR,
+                        "Can not evaluate method in abstract class");
+                throw new UnableToCompleteException();
+            }
+
+            String typeName = type.getQualifiedBinaryName();
+            try {
+                Class<? extends DynamicPropertySource> targetClass = Class
+                        .forName(typeName, true,
+                                getEvaluationClassLoader(logger)).asSubclass(
+                                DynamicPropertySource.class);
+                invoker = new DynamicInvoker(targetClass);
+            } catch (NoSuchMethodException e) {
+                logger.log(Type.ERROR, typeName
+                        + " must have a constructor without parameters");
+                throw new UnableToCompleteException();
+            } catch (ClassNotFoundException e) {
+                logger.log(Type.ERROR, "Could not load " + typeName
+                        + " for running its methods", e);
+                throw new UnableToCompleteException();
+            } catch (LinkageError e) {
+                logger.log(Type.ERROR, "Could not load " + typeName
+                        + " for running its methods", e);
+                throw new UnableToCompleteException();
+            }
+
+            // Keep the first one if another thread was quicker
+            DynamicInvoker existing = invokers.putIfAbsent(type, invoker);
+            if (existing != null) {
+                invoker = existing;
+            }
+        }
+        return invoker;
+    }
+
+    private synchronized EvaluationCache getEvaluationCache(
+            MemoizingPropertyOracle oracle) {
+        if (!evaluationCacheResolved) {
+            String directory = oracle
+                    .getConfigurationPropertyValue(CACHE_DIRECTORY_PROPERTY);
+            if (directory != null) {
+                evaluationCache = new EvaluationCache(new File(directory));
+            }
+            evaluationCacheResolved = true;
+        }
+        return evaluationCache;
+    }
+
+    private synchronized ExecutorService getEvaluationExecutor(
+            TreeLogger logger, MemoizingPropertyOracle oracle)
+            throws UnableToCompleteException {
+        if (!evaluationExecutorResolved) {
+            int threads = getEvaluationThreads(logger, oracle);
+            if (threads > 1) {
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                        threads, 10, TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<Runnable>(),
+                        new ThreadFactory() {
+                            @Override
+                            public Thread newThread(Runnable runnable) {
+                                Thread thread = new Thread(runnable,
+                                        "PropertySource evaluation");
+                                // Don't prevent the compiler from exiting
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+                executor.allowCoreThreadTimeOut(true);
+                evaluationExecutor = executor;
+            }
+            evaluationExecutorResolved = true;
+        }
+        return evaluationExecutor;
+    }
+
+    private synchronized EvaluationBudget getEvaluationBudget(
+            TreeLogger logger, MemoizingPropertyOracle oracle)
+            throws UnableToCompleteException {
+        if (!evaluationBudgetResolved) {
+            long timeout = getLongProperty(logger, oracle,
+                    METHOD_TIMEOUT_PROPERTY);
+            long allocationLimit = getLongProperty(logger, oracle,
+                    METHOD_ALLOCATION_LIMIT_PROPERTY);
+            if (timeout > 0 || allocationLimit > 0) {
+                evaluationBudget = new EvaluationBudget(logger, timeout,
+                        allocationLimit);
+            }
+            evaluationBudgetResolved = true;
+        }
+        return evaluationBudget;
     }
 
-    private static Set<String> writeMethod(TreeLogger logger,
-            GeneratorContext context, JMethod method, SourceWriter writer)
+    /**
+     * Reads a numerical configuration property.
+     * 
+     * @return the value, or 0 if the property is not set
+     */
+    private static long getLongProperty(TreeLogger logger,
+            MemoizingPropertyOracle oracle, String propertyName)
             throws UnableToCompleteException {
+        String value = oracle.getConfigurationPropertyValue(propertyName);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Type.ERROR, "Can not interpret " + value
+                    + " as a number for " + propertyName);
+            throw new UnableToCompleteException();
+        }
+    }
 
-        if (method.getParameters().length != 0) {
-            logger.log(Type.ERROR, "Only supporting methods with no arguments");
+    private static int getEvaluationThreads(TreeLogger logger,
+            MemoizingPropertyOracle oracle) throws UnableToCompleteException {
+        String value = oracle
+                .getConfigurationPropertyValue(EVALUATION_THREADS_PROPERTY);
+        if (value == null) {
+            return 1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.log(Type.ERROR, "Can not interpret " + value
+                    + " as the number of threads for "
+                    + EVALUATION_THREADS_PROPERTY);
             throw new UnableToCompleteException();
         }
+    }
+
+    private Dependencies writeMethods(final TreeLogger logger,
+            final MemoizingPropertyOracle oracle, PropertySourceModel model,
+            final TypeMetrics typeMetrics, SourceWriter writer)
+            throws UnableToCompleteException {
+        final Dependencies dependencies = new Dependencies();
+
+        DynamicEvaluation dynamicEvaluation = null;
+        ExecutorService executor = null;
+        if (model.hasDynamicMethods()) {
+            dynamicEvaluation = new DynamicEvaluation(logger, oracle,
+                    getDynamicInvoker(logger, model.getType()));
+            executor = getEvaluationExecutor(logger, oracle);
+        }
+
+        /*
+         * Dynamic methods are submitted to the executor if there is one, while
+         * everything else is evaluated right away. Logger branches are created
+         * in declaration order before anything is submitted and the results
+         * are written in the same order regardless of when they are done.
+         */
+        List<MethodModel> methods = model.getMethods();
+        TreeLogger[] methodLoggers = new TreeLogger[methods.size()];
+        Object[] returnValues = new Object[methods.size()];
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (int i = 0; i < methods.size(); i++) {
+            final MethodModel method = methods.get(i);
+            methodLoggers[i] = logger.branch(Type.DEBUG, "Processing method "
+                    + method.getMethod().getReadableDeclaration());
+
+            if (method.isDynamic() && executor != null) {
+                final TreeLogger methodLogger = methodLoggers[i];
+                final DynamicEvaluation evaluation = dynamicEvaluation;
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws UnableToCompleteException {
+                        return evaluateMethod(methodLogger, oracle, method,
+                                evaluation, dependencies, typeMetrics);
+                    }
+                }));
+            } else {
+                futures.add(null);
+                returnValues[i] = evaluateMethod(methodLoggers[i], oracle,
+                        method, dynamicEvaluation, dependencies,
+                        typeMetrics);
+            }
+        }
 
-        JType returnType = method.getReturnType();
-        TypeHandler<Object> typeHandler = (TypeHandler<Object>) typeHandlers
-                .get(returnType.getQualifiedSourceName());
-        if (typeHandler == null) {
-            logger.log(Type.ERROR, returnType.getQualifiedSourceName()
-                    + " is not supported");
+        for (int i = 0; i < futures.size(); i++) {
+            Future<Object> future = futures.get(i);
+            if (future != null) {
+                returnValues[i] = getResult(methodLoggers[i], future, futures);
+            }
+        }
+
+        long start = System.nanoTime();
+        writeRuntimePropertyAccessors(model, writer);
+        for (int i = 0; i < methods.size(); i++) {
+            writeMethod(methodLoggers[i], model, methods.get(i),
+                    returnValues[i], writer);
+        }
+        typeMetrics.addTime(Phase.EMISSION, System.nanoTime() - start);
+
+        return dependencies;
+    }
+
+    private static Object getResult(TreeLogger logger, Future<Object> future,
+            List<Future<Object>> allFutures) throws UnableToCompleteException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            cancelAll(allFutures);
+            Thread.currentThread().interrupt();
+            logger.log(Type.ERROR, "Interrupted while evaluating method");
+            throw new UnableToCompleteException();
+        } catch (ExecutionException e) {
+            // No point in continuing with the other methods
+            cancelAll(allFutures);
+
+            Throwable cause = e.getCause();
+            if (cause instanceof UnableToCompleteException) {
+                // Already logged
+                throw (UnableToCompleteException) cause;
+            }
+            logger.log(Type.ERROR, "Could not evaluate method", cause);
             throw new UnableToCompleteException();
         }
+    }
 
-        final Set<String> usedSelectionProperties;
-        Object returnValue;
-        if (method.isAbstract()) {
-            String propertyName = getPropertyName(method);
-            String selectionPropertyValue = getStaticSelectionPropertyValue(
-                    logger, context, propertyName);
-            List<String> configurationPropertyValues = getStaticConfigurationPropertyValues(
-                    context, propertyName);
+    private static void cancelAll(List<Future<Object>> futures) {
+        for (Future<Object> future : futures) {
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Computes the return value of a method for the current permutation and
+     * adds everything it used to dependencies.
+     */
+    private Object evaluateMethod(TreeLogger logger,
+            MemoizingPropertyOracle oracle, MethodModel methodModel,
+            DynamicEvaluation dynamicEvaluation,
+            Dependencies dependencies, TypeMetrics typeMetrics)
+            throws UnableToCompleteException {
+        TypeHandler<Object> typeHandler = methodModel.getTypeHandler();
+        long start;
+
+        if (methodModel.isRuntimeDispatch()) {
+            String propertyName = methodModel.getPropertyName();
+            SelectionProperty property = oracle.findSelectionProperty(logger,
+                    propertyName);
+            if (property == null) {
+                logger.log(Type.ERROR, "Selection property " + propertyName
+                        + " not found. Runtime dispatch is only supported"
+                        + " for selection properties.");
+                throw new UnableToCompleteException();
+            }
+
+            // The result is the same regardless of the current value
+            dependencies.addPossibleValues(propertyName);
+            start = System.nanoTime();
+            try {
+                Map<String, Object> returnValues = new LinkedHashMap<String, Object>();
+                for (String value : property.getPossibleValues()) {
+                    returnValues.put(value, typeHandler.getStaticReturnValue(
+                            logger.branch(Type.DEBUG, "Evaluating for "
+                                    + propertyName + "=" + value),
+                            Collections.singletonList(value), methodModel));
+                }
+                return returnValues;
+            } finally {
+                typeMetrics.addTime(Phase.CONVERSION, System.nanoTime()
+                        - start);
+            }
+        } else if (methodModel.getHostPageObject() != null) {
+            // Compile time value is only used if the host page has no value
+            String propertyName = methodModel.getPropertyName();
+            String selectionPropertyValue = oracle.getSelectionPropertyValue(
+                    logger, propertyName);
+            List<String> fallback;
+            if (selectionPropertyValue != null) {
+                dependencies.addSelectionProperty(propertyName);
+                fallback = Collections.singletonList(selectionPropertyValue);
+            } else {
+                dependencies.addConfigurationProperty(propertyName);
+                fallback = oracle.getConfigurationPropertyValues(propertyName);
+            }
+
+            if (fallback != null) {
+                // Report invalid compile time values already now
+                start = System.nanoTime();
+                try {
+                    typeHandler.getStaticReturnValue(logger, fallback,
+                            methodModel);
+                } finally {
+                    typeMetrics.addTime(Phase.CONVERSION, System.nanoTime()
+                            - start);
+                }
+            }
+            return fallback;
+        } else if (!methodModel.isDynamic()) {
+            String propertyName = methodModel.getPropertyName();
+            String selectionPropertyValue = oracle.getSelectionPropertyValue(
+                    logger, propertyName);
+            List<String> configurationPropertyValues = oracle
+                    .getConfigurationPropertyValues(propertyName);
             if (selectionPropertyValue == null
                     && configurationPropertyValues == null) {
                 logger.log(Type.ERROR, "Property " + propertyName
@@ -309,151 +931,466 @@ public class PropertySourceGenerator extends Generator {
                 throw new UnableToCompleteException();
             }
 
-            if (selectionPropertyValue != null) {
-                returnValue = typeHandler.getStaticReturnValue(logger,
-                        Collections.singletonList(selectionPropertyValue),
-                        method);
-                usedSelectionProperties = Collections.singleton(propertyName);
+            start = System.nanoTime();
+            try {
+                if (selectionPropertyValue != null) {
+                    dependencies.addSelectionProperty(propertyName);
+                    return typeHandler.getStaticReturnValue(logger,
+                            Collections.singletonList(selectionPropertyValue),
+                            methodModel);
+                } else {
+                    dependencies.addConfigurationProperty(propertyName);
+                    return typeHandler.getStaticReturnValue(logger,
+                            configurationPropertyValues, methodModel);
+                }
+            } finally {
+                typeMetrics.addTime(Phase.CONVERSION, System.nanoTime()
+                        - start);
+            }
+        } else {
+            return evaluateDynamicMethod(logger, oracle, methodModel,
+                    dynamicEvaluation, dependencies, typeMetrics);
+        }
+    }
+
+    /**
+     * Runs a dynamic method for the current permutation, unless it has
+     * already been run for a permutation with the same values for the
+     * selection properties that it used.
+     */
+    private Object evaluateDynamicMethod(TreeLogger logger,
+            MemoizingPropertyOracle oracle, final MethodModel methodModel,
+            final DynamicEvaluation dynamicEvaluation,
+            Dependencies dependencies,
+            TypeMetrics typeMetrics) throws UnableToCompleteException {
+        String methodKey = methodModel.getMethod().getEnclosingType()
+                .getQualifiedSourceName()
+                + "#" + methodModel.getMethod().getReadableDeclaration();
+
+        for (Set<String> knownUsedSelectionProperties : methodModel
+                .getKnownUsedSelectionProperties()) {
+            DynamicResult result = dynamicResults.get(getSelectionKey(logger,
+                    oracle, methodKey, knownUsedSelectionProperties));
+            if (result != null) {
+                logger.log(Type.DEBUG, "Reusing result from another permutation");
+                typeMetrics.addReusedMethod();
+                dependencies.addAll(result.dependencies);
+                return result.returnValue;
+            }
+        }
+
+        final Dependencies methodDependencies = new Dependencies();
+        final TreeLogger evaluationLogger = logger.branch(Type.DEBUG,
+                "Evaluating method");
+
+        EvaluationBudget budget = getEvaluationBudget(logger, oracle);
+        Object returnValue;
+        long start = System.nanoTime();
+        try {
+            if (budget != null) {
+                returnValue = budget.run(logger, methodKey,
+                        new Callable<Object>() {
+                            @Override
+                            public Object call()
+                                    throws UnableToCompleteException {
+                                return runDynamicMethod(evaluationLogger,
+                                        methodModel, dynamicEvaluation,
+                                        methodDependencies);
+                            }
+                        });
             } else {
-                returnValue = typeHandler.getStaticReturnValue(logger,
-                        configurationPropertyValues, method);
-                usedSelectionProperties = null;
+                returnValue = runDynamicMethod(evaluationLogger, methodModel,
+                        dynamicEvaluation, methodDependencies);
             }
+        } finally {
+            long nanoTime = System.nanoTime() - start;
+            typeMetrics.addTime(Phase.DYNAMIC, nanoTime);
+            typeMetrics.addMethodTime(methodModel.getMethod()
+                    .getReadableDeclaration(), nanoTime);
+        }
+
+        Set<String> usedSelectionProperties = methodDependencies
+                .getSelectionProperties();
+        methodModel.addKnownUsedSelectionProperties(usedSelectionProperties);
+        dynamicResults.put(
+                getSelectionKey(logger, oracle, methodKey,
+                        usedSelectionProperties), new DynamicResult(
+                        returnValue, methodDependencies));
+
+        dependencies.addAll(methodDependencies);
+        return returnValue;
+    }
+
+    private static Object runDynamicMethod(TreeLogger logger,
+            MethodModel methodModel, DynamicEvaluation dynamicEvaluation,
+            Dependencies dependencies) throws UnableToCompleteException {
+        if (methodModel.getArgumentValues() != null) {
+            return dynamicEvaluation.evaluate(logger, methodModel.getMethod(),
+                    methodModel.getArgumentType(),
+                    methodModel.getArgumentValues(), dependencies);
         } else {
-            usedSelectionProperties = new HashSet<String>();
-            returnValue = getDynamicPropertyValue(
-                    logger.branch(Type.DEBUG, "Evaluating method"), context,
-                    method, usedSelectionProperties);
+            return dynamicEvaluation.evaluate(logger, methodModel.getMethod(),
+                    dependencies);
+        }
+    }
+
+    /**
+     * Writes a cached accessor for each property that is read at runtime.
+     * The value is read from the generated runtime properties type, which
+     * has a separate implementation for each permutation.
+     */
+    private static void writeRuntimePropertyAccessors(
+            PropertySourceModel model, SourceWriter writer) {
+        String typeName = model.getType().getPackage().getName() + "."
+                + model.getRuntimePropertiesTypeName();
+        int index = 0;
+        for (String propertyName : model.getRuntimePropertyNames()) {
+            String fieldName = "runtimeProperty" + index;
+
+            writer.println("// %s", propertyName);
+            writer.println("private static String %s;", fieldName);
+            writer.println();
+            writer.println("private static String %s() {",
+                    getRuntimePropertyAccessor(model, propertyName));
+            writer.indent();
+            writer.println("if (%s == null) {", fieldName);
+            writer.indent();
+            writer.println(
+                    "%s = ((%s) com.google.gwt.core.client.GWT.create(%s.class)).property%s();",
+                    fieldName, typeName, typeName, Integer.valueOf(index));
+            writer.outdent();
+            writer.println("}");
+            writer.println("return %s;", fieldName);
+            writer.outdent();
+            writer.println("}");
+            writer.println();
+
+            index++;
+        }
+    }
+
+    private static String getRuntimePropertyAccessor(
+            PropertySourceModel model, String propertyName) {
+        int index = new ArrayList<String>(model.getRuntimePropertyNames())
+                .indexOf(propertyName);
+        return "getRuntimeProperty" + index;
+    }
+
+    /**
+     * Creates the property source interface used for reading the runtime
+     * properties of a type, unless it has already been created.
+     */
+    private static void createRuntimePropertiesType(TreeLogger logger,
+            GeneratorContext context, PropertySourceModel model) {
+        String packageName = model.getType().getPackage().getName();
+        String className = model.getRuntimePropertiesTypeName();
+        PrintWriter printWriter = context.tryCreate(logger, packageName,
+                className);
+        if (printWriter == null) {
+            return;
+        }
+
+        ClassSourceFileComposerFactory factory = new ClassSourceFileComposerFactory(
+                packageName, className);
+        factory.makeInterface();
+        factory.addImplementedInterface(PropertySource.class.getName());
+
+        SourceWriter writer = factory.createSourceWriter(context, printWriter);
+        int index = 0;
+        for (String propertyName : model.getRuntimePropertyNames()) {
+            writer.println("@%s(\"%s\")", Property.class.getName(),
+                    Generator.escape(propertyName));
+            writer.println("String property%s();", Integer.valueOf(index++));
+            writer.println();
+        }
+        writer.commit(logger);
+    }
+
+    private static void writeMethod(TreeLogger logger,
+            PropertySourceModel model, MethodModel methodModel,
+            Object returnValue, SourceWriter writer) {
+        if (methodModel.isRuntimeDispatch()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> returnValues = (Map<String, Object>) returnValue;
+            writeRuntimeDispatchMethod(logger, methodModel, returnValues,
+                    getRuntimePropertyAccessor(model,
+                            methodModel.getPropertyName()), writer);
+            return;
+        } else if (methodModel.getHostPageObject() != null) {
+            @SuppressWarnings("unchecked")
+            List<String> fallback = (List<String>) returnValue;
+            writeHostPageMethod(methodModel, fallback, writer);
+            return;
+        } else if (methodModel.getArgumentValues() != null) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> returnValues = (Map<String, Object>) returnValue;
+            writeDispatchMethod(logger, methodModel, returnValues, writer);
+            return;
+        }
+
+        JMethod method = methodModel.getMethod();
+
+        String fieldName = null;
+        if (isStoredInField(methodModel)) {
+            fieldName = method.getName() + "Value";
+            writeField(logger, methodModel, fieldName, returnValue, writer);
         }
 
         writer.println("%s {",
                 method.getReadableDeclaration(false, false, false, false, true));
         writer.indent();
 
-        writer.print("return ");
-        typeHandler.writeValue(logger, writer, returnValue);
-        writer.println(";");
+        writeReturn(logger, methodModel, returnValue, fieldName, writer);
 
         writer.outdent();
         writer.println("}");
         writer.println();
-
-        return usedSelectionProperties;
     }
 
-    private static Object getDynamicPropertyValue(TreeLogger logger,
-            GeneratorContext context, JMethod method,
-            Set<String> usedSelectionProperties)
-            throws UnableToCompleteException {
-        JClassType enclosingType = method.getEnclosingType();
-        if (enclosingType.isAbstract()) {
-            logger.log(Type.ERROR, "Can not evaluate method in abstract class");
-            throw new UnableToCompleteException();
-        }
+    /**
+     * Writes a dynamic method with an argument, returning the value evaluated
+     * for the argument. A switch is used for argument types that support it
+     * and an if chain for others.
+     */
+    private static void writeDispatchMethod(TreeLogger logger,
+            MethodModel methodModel, Map<String, Object> returnValues,
+            SourceWriter writer) {
+        JMethod method = methodModel.getMethod();
+        ArgumentType argumentType = methodModel.getArgumentType();
+        String parameterName = method.getParameters()[0].getName();
 
-        try {
-            // TODO Load class using a new class loader to pick up changes
-            Class<? extends DynamicPropertySource> targetClass = Class.forName(
-                    enclosingType.getQualifiedSourceName()).asSubclass(
-                    DynamicPropertySource.class);
-            DynamicPropertySource source = targetClass.newInstance();
-
-            Field proxyField = DynamicPropertySource.class
-                    .getDeclaredField("proxy");
-            proxyField.setAccessible(true);
-
-            PropertyProxyImpl proxy = new PropertyProxyImpl(logger,
-                    context.getPropertyOracle(), usedSelectionProperties);
-            proxyField.set(source, proxy);
-
-            Method instanceMethod = targetClass.getMethod(method.getName());
-            Object result = instanceMethod.invoke(source);
-            return result;
+        Map<String, String> fieldNames = writeFields(logger, methodModel,
+                returnValues, writer);
 
-        } catch (Exception e) {
-            logger.log(Type.ERROR, "Could not get dynamic type", e);
-            throw new UnableToCompleteException();
+        writer.println("%s {",
+                method.getReadableDeclaration(false, false, false, false, true));
+        writer.indent();
+
+        boolean useSwitch = !returnValues.isEmpty()
+                && argumentType.getCaseLabel(returnValues.keySet().iterator()
+                        .next()) != null;
+        boolean nullCheck = useSwitch && argumentType.isNullable();
+        if (nullCheck) {
+            // Switching on null would throw
+            writer.println("if (%s != null) {", parameterName);
+            writer.indent();
+        }
+        if (useSwitch) {
+            writer.println("switch (%s) {", parameterName);
+        }
+        for (Entry<String, Object> entry : returnValues.entrySet()) {
+            String argumentValue = entry.getKey();
+            if (useSwitch) {
+                writer.println("case %s:",
+                        argumentType.getCaseLabel(argumentValue));
+            } else {
+                writer.println("if (%s) {", argumentType.writeCondition(
+                        parameterName, argumentValue));
+            }
+            writer.indent();
+            writeReturn(logger, methodModel, entry.getValue(),
+                    fieldNames.get(argumentValue), writer);
+            writer.outdent();
+            if (!useSwitch) {
+                writer.println("}");
+            }
+        }
+        if (useSwitch) {
+            writer.println("}");
+        }
+        if (nullCheck) {
+            writer.outdent();
+            writer.println("}");
         }
+        writer.println(
+                "throw new IllegalArgumentException(\"Unsupported argument: \" + %s);",
+                parameterName);
+
+        writer.outdent();
+        writer.println("}");
+        writer.println();
     }
 
-    private static boolean valueMatches(String propertyValue, String pattern) {
-        return propertyValue.matches(pattern);
+    /**
+     * Writes a method that returns the value evaluated for the runtime value
+     * of its property. The property is read once and the value is picked
+     * using a switch. The last possible value is used as a fallback since
+     * the property provider never returns anything else.
+     */
+    private static void writeRuntimeDispatchMethod(TreeLogger logger,
+            MethodModel methodModel, Map<String, Object> returnValues,
+            String accessor, SourceWriter writer) {
+        JMethod method = methodModel.getMethod();
+
+        Map<String, String> fieldNames = writeFields(logger, methodModel,
+                returnValues, writer);
+
+        writer.println("%s {",
+                method.getReadableDeclaration(false, false, false, false, true));
+        writer.indent();
+
+        List<Entry<String, Object>> entries = new ArrayList<Entry<String, Object>>(
+                returnValues.entrySet());
+        Entry<String, Object> fallback = entries.remove(entries.size() - 1);
+        if (!entries.isEmpty()) {
+            String localName = getUnusedLocalName(method, "runtimeValue");
+            writer.println("String %s = %s();", localName, accessor);
+            writer.println("switch (%s) {", localName);
+            for (Entry<String, Object> entry : entries) {
+                writer.println("case \"%s\":",
+                        Generator.escape(entry.getKey()));
+                writer.indent();
+                writeReturn(logger, methodModel, entry.getValue(),
+                        fieldNames.get(entry.getKey()), writer);
+                writer.outdent();
+            }
+            writer.println("}");
+        }
+        writeReturn(logger, methodModel, fallback.getValue(),
+                fieldNames.get(fallback.getKey()), writer);
+
+        writer.outdent();
+        writer.println("}");
+        writer.println();
     }
 
-    private static boolean isTrueValue(String propertyValue, String[] trueValues) {
-        for (String trueValue : trueValues) {
-            if (trueValue.equals(propertyValue)) {
-                return true;
+    /**
+     * Gets a name for a local variable that doesn't hide any parameter of a
+     * method.
+     */
+    private static String getUnusedLocalName(JMethod method, String name) {
+        for (JParameter parameter : method.getParameters()) {
+            if (parameter.getName().equals(name)) {
+                return getUnusedLocalName(method, name + "_");
             }
         }
-        return false;
+        return name;
     }
 
-    private static boolean isTrueValue(TreeLogger logger, String propertyValue)
-            throws UnableToCompleteException {
-        if (propertyValue.toLowerCase().equals("true")
-                || propertyValue.equals("1")) {
-            return true;
-        } else if (propertyValue.toLowerCase().equals("false")
-                || propertyValue.equals("0")) {
-            return false;
+    /**
+     * Writes a method that reads its property from the host page the first
+     * time it's run. Methods without arguments also remember the converted
+     * value, whereas methods with an argument only remember the property
+     * values.
+     */
+    private static void writeHostPageMethod(MethodModel methodModel,
+            List<String> fallback, SourceWriter writer) {
+        JMethod method = methodModel.getMethod();
+        TypeHandler<Object> typeHandler = methodModel.getTypeHandler();
+
+        StringSourceWriter readExpression = new StringSourceWriter();
+        readExpression.print("%s.read(\"%s\", \"%s\", ",
+                PropertyValues.class.getName(),
+                Generator.escape(methodModel.getHostPageObject()),
+                Generator.escape(methodModel.getPropertyName()));
+        if (fallback == null) {
+            readExpression.print("null");
         } else {
-            logger.log(Type.ERROR, "Can not interpret " + propertyValue
-                    + " as a boolean");
-            throw new UnableToCompleteException();
+            TypeHandlers.writeUnmodifiableList(readExpression, fallback);
         }
-    }
+        readExpression.print(")");
 
-    private static String getStaticSelectionPropertyValue(TreeLogger logger,
-            GeneratorContext context, String propertyName) {
-        try {
-            SelectionProperty property = context.getPropertyOracle()
-                    .getSelectionProperty(logger, propertyName);
-            String propertyValue = property.getCurrentValue();
-            return propertyValue;
-        } catch (BadPropertyValueException e) {
-            return null;
+        String cacheField;
+        String readField = null;
+        if (method.getParameters().length == 0) {
+            cacheField = method.getName() + "Value";
+            readField = method.getName() + "Read";
+            writer.println("private static boolean %s;", readField);
+            writer.println("private static %s %s;", method.getReturnType()
+                    .getParameterizedQualifiedSourceName(), cacheField);
+        } else {
+            cacheField = method.getName() + "Values";
+            writer.println(
+                    "private static java.util.List<java.lang.String> %s;",
+                    cacheField);
         }
-    }
+        writer.println();
 
-    private static List<String> getStaticConfigurationPropertyValues(
-            GeneratorContext context, String propertyName) {
-        try {
-            ConfigurationProperty property = context.getPropertyOracle()
-                    .getConfigurationProperty(propertyName);
-            return property.getValues();
-        } catch (BadPropertyValueException e) {
-            return null;
+        writer.println("%s {",
+                method.getReadableDeclaration(false, false, false, false, true));
+        writer.indent();
+
+        if (readField != null) {
+            writer.println("if (!%s) {", readField);
+            writer.indent();
+            writer.println("%s = %s;", cacheField,
+                    typeHandler.getRuntimeConversion(
+                            readExpression.toString(), methodModel));
+            writer.println("%s = true;", readField);
+            writer.outdent();
+            writer.println("}");
+            writer.println("return %s;", cacheField);
+        } else {
+            writer.println("if (%s == null) {", cacheField);
+            writer.indent();
+            writer.println("%s = %s;", cacheField, readExpression.toString());
+            writer.outdent();
+            writer.println("}");
+            writer.println("return %s;", typeHandler.getRuntimeConversion(
+                    cacheField, methodModel));
         }
+
+        writer.outdent();
+        writer.println("}");
+        writer.println();
     }
 
-    private static String getPropertyName(JMethod method) {
-        // Use @Property on method if defined
-        Property methodPropertyAnnotation = method
-                .getAnnotation(Property.class);
-        if (methodPropertyAnnotation != null) {
-            return methodPropertyAnnotation.value();
+    /**
+     * Writes a field for each value that should be stored in a field.
+     * 
+     * @return a map from the keys of the values map to field names
+     */
+    private static Map<String, String> writeFields(TreeLogger logger,
+            MethodModel methodModel, Map<String, Object> values,
+            SourceWriter writer) {
+        Map<String, String> fieldNames = new HashMap<String, String>();
+        if (isStoredInField(methodModel)) {
+            for (Entry<String, Object> entry : values.entrySet()) {
+                String fieldName = methodModel.getMethod().getName() + "Value"
+                        + fieldNames.size();
+                writeField(logger, methodModel, fieldName, entry.getValue(),
+                        writer);
+                fieldNames.put(entry.getKey(), fieldName);
+            }
         }
+        return fieldNames;
+    }
 
-        JClassType enclosingType = method.getEnclosingType();
+    private static boolean isStoredInField(MethodModel methodModel) {
+        TypeHandler<Object> typeHandler = methodModel.getTypeHandler();
+        return typeHandler instanceof ValueTypeHandler<?>
+                && ((ValueTypeHandler<Object>) typeHandler).isStoredInField();
+    }
 
-        // Use @Property on type if defined
-        Property typePropertyAnnotation = enclosingType
-                .getAnnotation(Property.class);
-        if (typePropertyAnnotation != null) {
-            return typePropertyAnnotation.value();
-        }
+    private static void writeField(TreeLogger logger, MethodModel methodModel,
+            String fieldName, Object value, SourceWriter writer) {
+        writer.print("private static final %s %s = ", methodModel.getMethod()
+                .getReturnType().getParameterizedQualifiedSourceName(),
+                fieldName);
+        ((ValueTypeHandler<Object>) methodModel.getTypeHandler()).writeValue(
+                logger, writer, value);
+        writer.println(";");
+        writer.println();
+    }
 
-        // Default to using method name
-        String propertyName = method.getName();
+    private static void writeReturn(TreeLogger logger,
+            MethodModel methodModel, Object value, String fieldName,
+            SourceWriter writer) {
+        TypeHandler<Object> typeHandler = methodModel.getTypeHandler();
+        if (typeHandler instanceof StatementTypeHandler<?>) {
+            ((StatementTypeHandler<Object>) typeHandler).writeReturn(logger,
+                    writer, value);
+            return;
+        }
 
-        // Supplement with @Namespace on type if defined
-        Namespace namespace = enclosingType.getAnnotation(Namespace.class);
-        if (namespace != null) {
-            return namespace.value() + "." + propertyName;
+        writer.print("return ");
+        if (fieldName != null) {
+            writer.print(fieldName);
         } else {
-            return propertyName;
+            ((ValueTypeHandler<Object>) typeHandler).writeValue(logger, writer,
+                    value);
         }
+        writer.println(";");
     }
 
 }
@@ -0,0 +1,160 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.JClassType;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+
+/**
+ * The result of analyzing a property source type. Everything in the model is
+ * independent of the permutation being compiled, which means that it can be
+ * shared by all permutations.
+ */
+class PropertySourceModel {
+    private final JClassType type;
+    private final List<MethodModel> methods;
+    private final Set<String> propertyNames;
+    private final Set<String> runtimePropertyNames;
+    private final boolean dynamic;
+    private final String description;
+
+    private final Set<Set<String>> knownUsedSelectionProperties = new CopyOnWriteArraySet<Set<String>>();
+
+    private PropertySourceModel(JClassType type, List<MethodModel> methods) {
+        this.type = type;
+        this.methods = Collections.unmodifiableList(methods);
+
+        // Properties in deterministic order
+        Set<String> propertyNames = new TreeSet<String>();
+        Set<String> runtimePropertyNames = new TreeSet<String>();
+        boolean dynamic = false;
+        StringBuilder description = new StringBuilder(
+                type.getQualifiedSourceName());
+        for (MethodModel method : methods) {
+            if (method.isDynamic()) {
+                dynamic = true;
+            } else if (method.isRuntimeDispatch()) {
+                runtimePropertyNames.add(method.getPropertyName());
+            } else {
+                propertyNames.add(method.getPropertyName());
+            }
+            description.append(';').append(method);
+        }
+        this.propertyNames = Collections.unmodifiableSet(propertyNames);
+        this.runtimePropertyNames = Collections
+                .unmodifiableSet(runtimePropertyNames);
+        this.dynamic = dynamic;
+        this.description = description.toString();
+    }
+
+    public static PropertySourceModel create(TreeLogger logger,
+            JClassType type) throws UnableToCompleteException {
+        if (type.isAbstract() && type.isInterface() == null) {
+            logger.log(Type.ERROR,
+                    "Target type should either be an interface or a non-abstract class");
+            throw new UnableToCompleteException();
+        }
+
+        List<MethodModel> methods = new ArrayList<MethodModel>();
+        for (JMethod method : type.getMethods()) {
+            if (method.isStatic()) {
+                logger.log(Type.DEBUG,
+                        "Ignoring static method " + method.getName());
+                continue;
+            }
+
+            if (!method.isPublic()) {
+                logger.log(Type.DEBUG,
+                        "Ignoring non-public method " + method.getName());
+                continue;
+            }
+
+            methods.add(MethodModel.create(
+                    logger.branch(
+                            Type.DEBUG,
+                            "Analyzing method "
+                                    + method.getReadableDeclaration()),
+                    method));
+        }
+
+        return new PropertySourceModel(type, methods);
+    }
+
+    public JClassType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the methods to implement, in declaration order.
+     */
+    public List<MethodModel> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Gets the sorted names of all properties read by non-dynamic methods
+     * that are not dispatched at runtime.
+     */
+    public Set<String> getPropertyNames() {
+        return propertyNames;
+    }
+
+    /**
+     * Gets the sorted names of all properties read at runtime by methods
+     * using runtime dispatch.
+     */
+    public Set<String> getRuntimePropertyNames() {
+        return runtimePropertyNames;
+    }
+
+    /**
+     * Gets the name of the generated property source interface that is used
+     * for reading the runtime properties.
+     */
+    public String getRuntimePropertiesTypeName() {
+        return type.getName().replace('.', '_') + "_RuntimeProperties";
+    }
+
+    /**
+     * Checks whether any method is evaluated by running its implementation.
+     */
+    public boolean hasDynamicMethods() {
+        return dynamic;
+    }
+
+    /**
+     * Describes all methods in a way that changes whenever the generated
+     * class might change, given the same property values.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets all the different sets of selection properties that have been used
+     * when evaluating this type for previous permutations. There is typically
+     * only one set, but dynamic methods might read different properties
+     * depending on the values of other properties.
+     */
+    public Set<Set<String>> getKnownUsedSelectionProperties() {
+        return Collections.unmodifiableSet(knownUsedSelectionProperties);
+    }
+
+    /**
+     * Remembers the selection properties used when evaluating this type for a
+     * permutation.
+     */
+    public void addKnownUsedSelectionProperties(
+            Set<String> usedSelectionProperties) {
+        knownUsedSelectionProperties.add(Collections
+                .unmodifiableSet(new TreeSet<String>(usedSelectionProperties)));
+    }
+}
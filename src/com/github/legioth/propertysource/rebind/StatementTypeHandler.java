@@ -0,0 +1,18 @@
+package com.github.legioth.propertysource.rebind;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.user.rebind.SourceWriter;
+
+/**
+ * A type handler that writes return values as statements instead of as an
+ * expression, e.g. to look up the value using a switch.
+ *
+ * @param <T>
+ *            the Java type used to represent converted values
+ */
+interface StatementTypeHandler<T> extends TypeHandler<T> {
+    /**
+     * Writes statements that always return the value.
+     */
+    public void writeReturn(TreeLogger logger, SourceWriter writer, T value);
+}
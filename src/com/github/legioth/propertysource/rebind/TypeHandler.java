@@ -0,0 +1,39 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.List;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+
+/**
+ * Converts property values to the return type of a method. Converted values
+ * are written either as an expression by a {@link ValueTypeHandler} or as
+ * statements by a {@link StatementTypeHandler}.
+ * 
+ * @param <T>
+ *            the Java type used to represent converted values
+ */
+interface TypeHandler<T> {
+    /**
+     * Checks that the handler can be used for the given method. Run only once
+     * per method when the type is analyzed.
+     */
+    public void validate(TreeLogger logger, JMethod method)
+            throws UnableToCompleteException;
+
+    public T getStaticReturnValue(TreeLogger logger,
+            List<String> propertyValue, MethodModel method)
+            throws UnableToCompleteException;
+
+    /**
+     * Gets a Java expression that converts property values read at runtime
+     * using the same rules as {@link #getStaticReturnValue}.
+     * 
+     * @param valuesExpression
+     *            an expression for the property values as a
+     *            <code>List&lt;String&gt;</code>
+     */
+    public String getRuntimeConversion(String valuesExpression,
+            MethodModel method);
+}
@@ -0,0 +1,799 @@
+package com.github.legioth.propertysource.rebind;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.github.legioth.propertysource.client.impl.PropertyValues;
+import com.google.gwt.core.ext.Generator;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.JClassType;
+import com.google.gwt.core.ext.typeinfo.JEnumConstant;
+import com.google.gwt.core.ext.typeinfo.JEnumType;
+import com.google.gwt.core.ext.typeinfo.JMethod;
+import com.google.gwt.core.ext.typeinfo.JParameter;
+import com.google.gwt.core.ext.typeinfo.JParameterizedType;
+import com.google.gwt.core.ext.typeinfo.JType;
+import com.google.gwt.user.rebind.SourceWriter;
+
+/**
+ * Registry of the {@link TypeHandler}s for all supported return types. Enum
+ * types are handled separately since they are not known in advance.
+ */
+class TypeHandlers {
+
+    private static final String PROPERTY_VALUES = PropertyValues.class
+            .getName();
+
+    private static final Map<String, TypeHandler<?>> typeHandlers = new HashMap<String, TypeHandler<?>>();
+    static {
+        typeHandlers.put(String.class.getName(), new ValueTypeHandler<String>() {
+            @Override
+            public void validate(TreeLogger logger, JMethod method) {
+                // Always valid
+            }
+
+            @Override
+            public String getStaticReturnValue(TreeLogger logger,
+                    List<String> propertyValue, MethodModel method)
+                    throws UnableToCompleteException {
+                if (propertyValue.size() != 1) {
+                    logger.log(Type.ERROR,
+                            "String only supported for properties with only one value");
+                    throw new UnableToCompleteException();
+                }
+                return propertyValue.get(0);
+            }
+
+            @Override
+            public boolean isStoredInField() {
+                return false;
+            }
+
+            @Override
+            public void writeValue(TreeLogger logger, SourceWriter writer,
+                    String value) {
+                writeString(writer, value);
+            }
+
+            @Override
+            public String getRuntimeConversion(String valuesExpression,
+                    MethodModel method) {
+                return PROPERTY_VALUES + ".getSingle(" + valuesExpression
+                        + ", \"String\")";
+            }
+        });
+        ValueTypeHandler<Boolean> booleanHandler = new ValueTypeHandler<Boolean>() {
+            @Override
+            public void validate(TreeLogger logger, JMethod method) {
+                // Conversion rules are validated by BooleanConverter
+            }
+
+            @Override
+            public Boolean getStaticReturnValue(TreeLogger logger,
+                    List<String> propertyValueList, MethodModel method)
+                    throws UnableToCompleteException {
+                return Boolean.valueOf(method.getBooleanConverter().convert(
+                        logger, propertyValueList));
+            }
+
+            @Override
+            public boolean isStoredInField() {
+                return false;
+            }
+
+            @Override
+            public void writeValue(TreeLogger logger, SourceWriter writer,
+                    Boolean value) {
+                writer.print(value.toString());
+            }
+
+            @Override
+            public String getRuntimeConversion(String valuesExpression,
+                    MethodModel method) {
+                return method.getBooleanConverter().getRuntimeConversion(
+                        valuesExpression);
+            }
+        };
+        typeHandlers.put("boolean", booleanHandler);
+        typeHandlers.put(Boolean.class.getName(), booleanHandler);
+        typeHandlers.put(List.class.getName(), new ValueTypeHandler<List<String>>() {
+            @Override
+            public void validate(TreeLogger logger, JMethod method)
+                    throws UnableToCompleteException {
+                validateStringTypeArguments(logger, method, "List<String>");
+            }
+
+            @Override
+            public List<String> getStaticReturnValue(TreeLogger logger,
+                    List<String> propertyValue, MethodModel method) {
+                return propertyValue;
+            }
+
+            @Override
+            public boolean isStoredInField() {
+                // Avoid creating a new list for each call
+                return true;
+            }
+
+            @Override
+            public void writeValue(TreeLogger logger, SourceWriter writer,
+                    List<String> value) {
+                writeUnmodifiableList(writer, value);
+            }
+
+            @Override
+            public String getRuntimeConversion(String valuesExpression,
+                    MethodModel method) {
+                // Values are already an unmodifiable list
+                return valuesExpression;
+            }
+        });
+        typeHandlers.put(Set.class.getName(),
+                new ValueTypeHandler<Collection<String>>() {
+                    @Override
+                    public void validate(TreeLogger logger, JMethod method)
+                            throws UnableToCompleteException {
+                        validateStringTypeArguments(logger, method,
+                                "Set<String>");
+                    }
+
+                    @Override
+                    public Collection<String> getStaticReturnValue(
+                            TreeLogger logger, List<String> propertyValue,
+                            MethodModel method) {
+                        return propertyValue;
+                    }
+
+                    @Override
+                    public boolean isStoredInField() {
+                        // Avoid creating a new set for each call
+                        return true;
+                    }
+
+                    @Override
+                    public void writeValue(TreeLogger logger,
+                            SourceWriter writer, Collection<String> value) {
+                        if (value.isEmpty()) {
+                            // Collections.<String> emptySet()
+                            writer.print(Collections.class.getName());
+                            writer.print(".<java.lang.String> emptySet()");
+                            return;
+                        }
+
+                        /*
+                         * Collections.unmodifiableSet(new
+                         * LinkedHashSet<String>(Arrays.asList(value1,
+                         * value2)))
+                         */
+                        writer.print(Collections.class.getName());
+                        writer.print(".unmodifiableSet(new ");
+                        writer.print(LinkedHashSet.class.getName());
+                        writer.print("<java.lang.String>(");
+                        writeAsList(writer, new ArrayList<String>(value));
+                        writer.print("))");
+                    }
+
+                    @Override
+                    public String getRuntimeConversion(
+                            String valuesExpression, MethodModel method) {
+                        return PROPERTY_VALUES + ".toSet(" + valuesExpression
+                                + ")";
+                    }
+                });
+        typeHandlers.put(Map.class.getName(),
+                new ValueTypeHandler<Map<String, String>>() {
+                    @Override
+                    public void validate(TreeLogger logger, JMethod method)
+                            throws UnableToCompleteException {
+                        validateStringTypeArguments(logger, method,
+                                "Map<String, String>");
+                    }
+
+                    @Override
+                    public Map<String, String> getStaticReturnValue(
+                            TreeLogger logger, List<String> propertyValue,
+                            MethodModel method)
+                            throws UnableToCompleteException {
+                        return parseEntries(logger, propertyValue);
+                    }
+
+                    @Override
+                    public boolean isStoredInField() {
+                        // Avoid creating a new map for each call
+                        return true;
+                    }
+
+                    @Override
+                    public void writeValue(TreeLogger logger,
+                            SourceWriter writer, Map<String, String> value) {
+                        if (value.isEmpty()) {
+                            // Collections.<String, String> emptyMap()
+                            writer.print(Collections.class.getName());
+                            writer.print(".<java.lang.String, java.lang.String> emptyMap()");
+                            return;
+                        }
+
+                        // PropertyValues.map(key1, value1, key2, value2)
+                        writer.print(PROPERTY_VALUES);
+                        writer.print(".map(");
+                        boolean first = true;
+                        for (Entry<String, String> entry : value.entrySet()) {
+                            if (!first) {
+                                writer.print(",");
+                            }
+                            writeString(writer, entry.getKey());
+                            writer.print(",");
+                            writeString(writer, entry.getValue());
+                            first = false;
+                        }
+                        writer.print(")");
+                    }
+
+                    @Override
+                    public String getRuntimeConversion(
+                            String valuesExpression, MethodModel method) {
+                        return PROPERTY_VALUES + ".toMap(" + valuesExpression
+                                + ")";
+                    }
+                });
+
+        registerNumberHandlers();
+    }
+
+    /**
+     * Base class for types that are parsed from a single property value and
+     * written as a literal.
+     */
+    private static abstract class SingleValueHandler<T> implements
+            ValueTypeHandler<T> {
+        private final String typeName;
+        private final String runtimeParser;
+
+        /**
+         * @param runtimeParser
+         *            the static method that parses the value at runtime
+         */
+        public SingleValueHandler(String typeName, String runtimeParser) {
+            this.typeName = typeName;
+            this.runtimeParser = runtimeParser;
+        }
+
+        @Override
+        public void validate(TreeLogger logger, JMethod method)
+                throws UnableToCompleteException {
+            // Always valid
+        }
+
+        @Override
+        public T getStaticReturnValue(TreeLogger logger,
+                List<String> propertyValue, MethodModel method)
+                throws UnableToCompleteException {
+            if (propertyValue.size() != 1) {
+                logger.log(Type.ERROR, typeName
+                        + " only supported for properties with only one value");
+                throw new UnableToCompleteException();
+            }
+            try {
+                return parse(propertyValue.get(0).trim());
+            } catch (IllegalArgumentException e) {
+                logger.log(Type.ERROR, "Can not interpret "
+                        + propertyValue.get(0) + " as " + typeName);
+                throw new UnableToCompleteException();
+            }
+        }
+
+        @Override
+        public boolean isStoredInField() {
+            return false;
+        }
+
+        @Override
+        public void writeValue(TreeLogger logger, SourceWriter writer, T value) {
+            writer.print(toLiteral(value));
+        }
+
+        @Override
+        public String getRuntimeConversion(String valuesExpression,
+                MethodModel method) {
+            return runtimeParser + "(" + PROPERTY_VALUES + ".getSingle("
+                    + valuesExpression + ", \"" + typeName + "\").trim())";
+        }
+
+        /**
+         * Parses a property value.
+         * 
+         * @throws IllegalArgumentException
+         *             if the value can't be parsed
+         */
+        protected abstract T parse(String value);
+
+        protected abstract String toLiteral(T value);
+    }
+
+    private static void register(TypeHandler<?> handler, String primitiveName,
+            Class<?> boxedType) {
+        typeHandlers.put(primitiveName, handler);
+        typeHandlers.put(boxedType.getName(), handler);
+    }
+
+    private static void registerNumberHandlers() {
+        register(new SingleValueHandler<Integer>("int",
+                "java.lang.Integer.parseInt") {
+            @Override
+            protected Integer parse(String value) {
+                return Integer.valueOf(value);
+            }
+
+            @Override
+            protected String toLiteral(Integer value) {
+                return value.toString();
+            }
+        }, "int", Integer.class);
+        register(new SingleValueHandler<Long>("long",
+                "java.lang.Long.parseLong") {
+            @Override
+            protected Long parse(String value) {
+                return Long.valueOf(value);
+            }
+
+            @Override
+            protected String toLiteral(Long value) {
+                return value + "L";
+            }
+        }, "long", Long.class);
+        register(new SingleValueHandler<Short>("short",
+                "java.lang.Short.parseShort") {
+            @Override
+            protected Short parse(String value) {
+                return Short.valueOf(value);
+            }
+
+            @Override
+            protected String toLiteral(Short value) {
+                return "(short) " + value;
+            }
+        }, "short", Short.class);
+        register(new SingleValueHandler<Byte>("byte",
+                "java.lang.Byte.parseByte") {
+            @Override
+            protected Byte parse(String value) {
+                return Byte.valueOf(value);
+            }
+
+            @Override
+            protected String toLiteral(Byte value) {
+                return "(byte) " + value;
+            }
+        }, "byte", Byte.class);
+        register(new SingleValueHandler<Double>("double",
+                "java.lang.Double.parseDouble") {
+            @Override
+            protected Double parse(String value) {
+                return Double.valueOf(value);
+            }
+
+            @Override
+            protected String toLiteral(Double value) {
+                if (value.isNaN()) {
+                    return "java.lang.Double.NaN";
+                } else if (value.doubleValue() == Double.POSITIVE_INFINITY) {
+                    return "java.lang.Double.POSITIVE_INFINITY";
+                } else if (value.doubleValue() == Double.NEGATIVE_INFINITY) {
+                    return "java.lang.Double.NEGATIVE_INFINITY";
+                } else {
+                    return value + "d";
+                }
+            }
+        }, "double", Double.class);
+        register(new SingleValueHandler<Float>("float",
+                "java.lang.Float.parseFloat") {
+            @Override
+            protected Float parse(String value) {
+                return Float.valueOf(value);
+            }
+
+            @Override
+            protected String toLiteral(Float value) {
+                if (value.isNaN()) {
+                    return "java.lang.Float.NaN";
+                } else if (value.floatValue() == Float.POSITIVE_INFINITY) {
+                    return "java.lang.Float.POSITIVE_INFINITY";
+                } else if (value.floatValue() == Float.NEGATIVE_INFINITY) {
+                    return "java.lang.Float.NEGATIVE_INFINITY";
+                } else {
+                    return value + "f";
+                }
+            }
+        }, "float", Float.class);
+        register(new SingleValueHandler<Character>("char",
+                PROPERTY_VALUES + ".toChar") {
+            @Override
+            protected Character parse(String value) {
+                if (value.length() != 1) {
+                    throw new IllegalArgumentException();
+                }
+                return Character.valueOf(value.charAt(0));
+            }
+
+            @Override
+            protected String toLiteral(Character value) {
+                // Avoids escaping problems with e.g. ' and \
+                return "(char) " + (int) value.charValue();
+            }
+        }, "char", Character.class);
+    }
+
+    /**
+     * Handler for an enum type. Property values must be the name of a
+     * constant, and dynamic methods may return either a constant or its name.
+     */
+    private static class EnumHandler implements ValueTypeHandler<Object> {
+        private final JEnumType enumType;
+
+        public EnumHandler(JEnumType enumType) {
+            this.enumType = enumType;
+        }
+
+        @Override
+        public void validate(TreeLogger logger, JMethod method) {
+            // Always valid
+        }
+
+        @Override
+        public Object getStaticReturnValue(TreeLogger logger,
+                List<String> propertyValue, MethodModel method)
+                throws UnableToCompleteException {
+            if (propertyValue.size() != 1) {
+                logger.log(Type.ERROR, enumType.getName()
+                        + " only supported for properties with only one value");
+                throw new UnableToCompleteException();
+            }
+
+            String value = propertyValue.get(0).trim();
+            for (JEnumConstant constant : enumType.getEnumConstants()) {
+                if (constant.getName().equals(value)) {
+                    return value;
+                }
+            }
+
+            logger.log(Type.ERROR, "Can not interpret " + propertyValue.get(0)
+                    + " as " + enumType.getName());
+            throw new UnableToCompleteException();
+        }
+
+        @Override
+        public boolean isStoredInField() {
+            return false;
+        }
+
+        @Override
+        public void writeValue(TreeLogger logger, SourceWriter writer,
+                Object value) {
+            String name;
+            if (value instanceof Enum<?>) {
+                // Returned by a dynamic method
+                name = ((Enum<?>) value).name();
+            } else {
+                name = (String) value;
+            }
+            writer.print(enumType.getQualifiedSourceName());
+            writer.print(".");
+            writer.print(name);
+        }
+
+        @Override
+        public String getRuntimeConversion(String valuesExpression,
+                MethodModel method) {
+            return enumType.getQualifiedSourceName() + ".valueOf("
+                    + PROPERTY_VALUES + ".getSingle(" + valuesExpression
+                    + ", \"" + enumType.getName() + "\").trim())";
+        }
+    }
+
+    /**
+     * Handler for methods with an argument and a <code>boolean</code> return
+     * type. The method returns whether the argument is one of the property
+     * values.
+     */
+    private static class ContainsHandler implements
+            StatementTypeHandler<List<String>> {
+        private final ArgumentType argumentType;
+        private final String parameterName;
+
+        public ContainsHandler(ArgumentType argumentType, String parameterName) {
+            this.argumentType = argumentType;
+            this.parameterName = parameterName;
+        }
+
+        @Override
+        public void validate(TreeLogger logger, JMethod method) {
+            // Always valid
+        }
+
+        @Override
+        public List<String> getStaticReturnValue(TreeLogger logger,
+                List<String> propertyValue, MethodModel method)
+                throws UnableToCompleteException {
+            List<String> values = new ArrayList<String>();
+            for (String value : propertyValue) {
+                argumentType.validate(logger, value);
+                values.add(argumentType.normalize(value));
+            }
+            return values;
+        }
+
+        @Override
+        public void writeReturn(TreeLogger logger, SourceWriter writer,
+                List<String> value) {
+            Map<String, String> results = new LinkedHashMap<String, String>();
+            for (String propertyValue : value) {
+                results.put(propertyValue, "true");
+            }
+            writeLookup(writer, argumentType, parameterName, results, "false");
+        }
+
+        @Override
+        public String getRuntimeConversion(String valuesExpression,
+                MethodModel method) {
+            return argumentType.writeNormalizeValues(valuesExpression)
+                    + ".contains(" + argumentType.writeToString(parameterName)
+                    + ")";
+        }
+    }
+
+    /**
+     * Handler for methods with an argument and a <code>String</code> return
+     * type. Property values are <code>key=value</code> entries and the method
+     * returns the value for the key given as the argument, or
+     * <code>null</code> if there is no such key.
+     */
+    private static class LookupHandler implements
+            StatementTypeHandler<Map<String, String>> {
+        private final ArgumentType argumentType;
+        private final String parameterName;
+
+        public LookupHandler(ArgumentType argumentType, String parameterName) {
+            this.argumentType = argumentType;
+            this.parameterName = parameterName;
+        }
+
+        @Override
+        public void validate(TreeLogger logger, JMethod method) {
+            // Always valid
+        }
+
+        @Override
+        public Map<String, String> getStaticReturnValue(TreeLogger logger,
+                List<String> propertyValue, MethodModel method)
+                throws UnableToCompleteException {
+            // Different keys might be the same argument, e.g. 1 and 01
+            Map<String, String> entries = new LinkedHashMap<String, String>();
+            for (Entry<String, String> entry : parseEntries(logger,
+                    propertyValue).entrySet()) {
+                argumentType.validate(logger, entry.getKey());
+                entries.put(argumentType.normalize(entry.getKey()),
+                        entry.getValue());
+            }
+            return entries;
+        }
+
+        @Override
+        public void writeReturn(TreeLogger logger, SourceWriter writer,
+                Map<String, String> value) {
+            Map<String, String> results = new LinkedHashMap<String, String>();
+            for (Entry<String, String> entry : value.entrySet()) {
+                results.put(entry.getKey(), "\""
+                        + Generator.escape(entry.getValue()) + "\"");
+            }
+            writeLookup(writer, argumentType, parameterName, results, "null");
+        }
+
+        @Override
+        public String getRuntimeConversion(String valuesExpression,
+                MethodModel method) {
+            String entries = argumentType.writeNormalizeKeys(PROPERTY_VALUES
+                    + ".toMap(" + valuesExpression + ")");
+            return entries + ".get("
+                    + argumentType.writeToString(parameterName) + ")";
+        }
+    }
+
+    /**
+     * Writes statements that return the result for the value of a parameter.
+     * A switch is used for argument types that support it and an if chain
+     * for others.
+     * 
+     * @param results
+     *            map from argument values to Java expressions for the results
+     * @param defaultResult
+     *            Java expression for the result when the parameter has none
+     *            of the values
+     */
+    private static void writeLookup(SourceWriter writer,
+            ArgumentType argumentType, String parameterName,
+            Map<String, String> results, String defaultResult) {
+        if (results.isEmpty()
+                || argumentType.getCaseLabel(results.keySet().iterator()
+                        .next()) == null) {
+            for (Entry<String, String> entry : results.entrySet()) {
+                writer.println("if (%s) {", argumentType.writeCondition(
+                        parameterName, entry.getKey()));
+                writer.indent();
+                writer.println("return %s;", entry.getValue());
+                writer.outdent();
+                writer.println("}");
+            }
+            writer.println("return %s;", defaultResult);
+            return;
+        }
+
+        // Labels with the same result share a case, e.g. case 1: case 2:
+        Map<String, List<String>> labelsByResult = new LinkedHashMap<String, List<String>>();
+        for (Entry<String, String> entry : results.entrySet()) {
+            String label = argumentType.getCaseLabel(entry.getKey());
+            List<String> labels = labelsByResult.get(entry.getValue());
+            if (labels == null) {
+                labels = new ArrayList<String>();
+                labelsByResult.put(entry.getValue(), labels);
+            }
+            labels.add(label);
+        }
+
+        boolean nullable = argumentType.isNullable();
+        if (nullable) {
+            // Switching on null would throw
+            writer.println("if (%s != null) {", parameterName);
+            writer.indent();
+        }
+        writer.println("switch (%s) {", parameterName);
+        for (Entry<String, List<String>> entry : labelsByResult.entrySet()) {
+            for (String label : entry.getValue()) {
+                writer.println("case %s:", label);
+            }
+            writer.indent();
+            writer.println("return %s;", entry.getKey());
+            writer.outdent();
+        }
+        writer.println("}");
+        if (nullable) {
+            writer.outdent();
+            writer.println("}");
+        }
+        writer.println("return %s;", defaultResult);
+    }
+
+    private static void validateStringTypeArguments(TreeLogger logger,
+            JMethod method, String supportedType)
+            throws UnableToCompleteException {
+        JType type = method.getReturnType();
+        JParameterizedType parameterizedType = type.isParameterized();
+        boolean valid = parameterizedType != null;
+        if (valid) {
+            for (JClassType typeArg : parameterizedType.getTypeArgs()) {
+                valid &= typeArg.getQualifiedSourceName().equals(
+                        String.class.getName());
+            }
+        }
+        if (!valid) {
+            logger.log(Type.ERROR, type.getParameterizedQualifiedSourceName()
+                    + " is not supported. " + supportedType
+                    + " is the only supported "
+                    + type.getErasedType().getSimpleSourceName() + " type.");
+            throw new UnableToCompleteException();
+        }
+    }
+
+    /**
+     * Parses property values in the format <code>key=value</code>. A later
+     * entry replaces any previous entry with the same key.
+     */
+    private static Map<String, String> parseEntries(TreeLogger logger,
+            List<String> propertyValues) throws UnableToCompleteException {
+        Map<String, String> entries = new LinkedHashMap<String, String>();
+        for (String propertyValue : propertyValues) {
+            int separator = propertyValue.indexOf('=');
+            if (separator == -1) {
+                logger.log(Type.ERROR, "Can not interpret " + propertyValue
+                        + " as a key=value entry");
+                throw new UnableToCompleteException();
+            }
+            entries.put(propertyValue.substring(0, separator),
+                    propertyValue.substring(separator + 1));
+        }
+        return entries;
+    }
+
+    private static void writeString(SourceWriter writer, String value) {
+        writer.print("\"");
+        writer.print(Generator.escape(value));
+        writer.print("\"");
+    }
+
+    /**
+     * Writes an expression for an unmodifiable list of strings.
+     */
+    static void writeUnmodifiableList(SourceWriter writer, List<String> value) {
+        if (value.isEmpty()) {
+            // Collections.<String> emptyList()
+            writer.print(Collections.class.getName());
+            writer.print(".<java.lang.String> emptyList()");
+            return;
+        }
+
+        // Collections.unmodifiableList(Arrays.asList(value1, value2))
+        writer.print(Collections.class.getName());
+        writer.print(".unmodifiableList(");
+        writeAsList(writer, value);
+        writer.print(")");
+    }
+
+    private static void writeAsList(SourceWriter writer, List<String> value) {
+        // Arrays.asList(value1, value2)
+        writer.print(Arrays.class.getName());
+        writer.print(".asList(");
+        for (int i = 0; i < value.size(); i++) {
+            if (i != 0) {
+                writer.print(",");
+            }
+            writeString(writer, value.get(i));
+        }
+        writer.print(")");
+    }
+
+    private TypeHandlers() {
+        // Only static helpers
+    }
+
+    /**
+     * Finds the type handler for a method. Abstract methods with an argument
+     * use the argument to look up among the property values, whereas dynamic
+     * methods are handled based on their return type regardless of
+     * parameters.
+     * 
+     * @param method
+     *            the property source method
+     * @return the type handler, or <code>null</code> if the method is not
+     *         supported
+     */
+    @SuppressWarnings("unchecked")
+    public static TypeHandler<Object> get(JMethod method) {
+        JType returnType = method.getReturnType();
+        JParameter[] parameters = method.getParameters();
+        if (parameters.length == 1 && method.isAbstract()) {
+            ArgumentType argumentType = ArgumentType.get(parameters[0]);
+            if (argumentType == null) {
+                return null;
+            }
+            String returnTypeName = returnType.getQualifiedSourceName();
+            if (returnTypeName.equals("boolean")) {
+                return (TypeHandler<Object>) (TypeHandler<?>) new ContainsHandler(
+                        argumentType, parameters[0].getName());
+            } else if (returnTypeName.equals(String.class.getName())) {
+                return (TypeHandler<Object>) (TypeHandler<?>) new LookupHandler(
+                        argumentType, parameters[0].getName());
+            } else {
+                return null;
+            }
+        } else if (parameters.length > 1) {
+            return null;
+        }
+
+        JEnumType enumType = returnType.isEnum();
+        if (enumType != null) {
+            return new EnumHandler(enumType);
+        }
+        return (TypeHandler<Object>) typeHandlers.get(returnType
+                .getQualifiedSourceName());
+    }
+}
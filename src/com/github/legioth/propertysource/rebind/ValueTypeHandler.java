@@ -0,0 +1,22 @@
+package com.github.legioth.propertysource.rebind;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.user.rebind.SourceWriter;
+
+/**
+ * A type handler that writes converted values as a Java expression, e.g. a
+ * literal.
+ *
+ * @param <T>
+ *            the Java type used to represent converted values
+ */
+interface ValueTypeHandler<T> extends TypeHandler<T> {
+    /**
+     * Checks whether written values should be evaluated only once and stored
+     * in a static field instead of being evaluated each time the method is
+     * run, e.g. because evaluating the value creates new objects.
+     */
+    public boolean isStoredInField();
+
+    public void writeValue(TreeLogger logger, SourceWriter writer, T value);
+}
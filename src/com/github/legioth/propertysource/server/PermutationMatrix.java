@@ -0,0 +1,383 @@
+package com.github.legioth.propertysource.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import com.github.legioth.propertysource.client.PropertySource;
+
+/**
+ * Runs code once for every permutation of a GWT module on the JVM, e.g. to
+ * test client side logic that depends on property sources without compiling
+ * each permutation. The permutations are based on the selection and
+ * configuration properties declared in the module and all modules it
+ * inherits that are found on the class path.
+ * <p>
+ * While a test is running, <code>GWT.create</code> for a
+ * {@link PropertySource} type returns an instance that uses the property
+ * values of the permutation being tested, also when the instance is cached
+ * in a static field and used from multiple permutations. Permutations are
+ * tested in parallel, so the tested code should not share mutable state
+ * between threads.
+ * 
+ * <pre>
+ * PermutationMatrix.forModule(&quot;com.example.MyModule&quot;).run(
+ *         new PermutationMatrix.Test() {
+ *             public void run(Map&lt;String, List&lt;String&gt;&gt; properties) {
+ *                 assertNotNull(MyEntryPoint.getBrowserMessage());
+ *             }
+ *         });
+ * </pre>
+ * 
+ * Property providers are not evaluated. Neither are conditional
+ * <code>&lt;set-property&gt;</code> declarations, so the values of a property
+ * with such a declaration must be chosen using
+ * {@link #restrict(String, String...)}.
+ */
+public class PermutationMatrix {
+
+    /**
+     * Code to run for each permutation.
+     */
+    public interface Test {
+        /**
+         * @param properties
+         *            the property values of the permutation. Selection
+         *            properties have exactly one value.
+         */
+        public void run(Map<String, List<String>> properties) throws Exception;
+    }
+
+    // Possible values of each selection property, in declaration order
+    private final Map<String, Set<String>> selectionProperties;
+    private final Map<String, List<String>> configurationProperties;
+    // Properties with a conditional <set-property> that are not restricted
+    private final Set<String> conditionalProperties;
+
+    private PermutationMatrix(Map<String, Set<String>> selectionProperties,
+            Map<String, List<String>> configurationProperties,
+            Set<String> conditionalProperties) {
+        this.selectionProperties = selectionProperties;
+        this.configurationProperties = configurationProperties;
+        this.conditionalProperties = conditionalProperties;
+    }
+
+    /**
+     * Reads the properties of a module from the context class loader.
+     * 
+     * @param moduleName
+     *            the logical name of the module, e.g.
+     *            <code>com.example.MyModule</code>
+     */
+    public static PermutationMatrix forModule(String moduleName) {
+        ModuleReader reader = new ModuleReader(Thread.currentThread()
+                .getContextClassLoader());
+        if (!reader.read(moduleName)) {
+            throw new IllegalArgumentException("Module " + moduleName
+                    + " not found");
+        }
+        Map<String, List<String>> configurationProperties = new LinkedHashMap<String, List<String>>();
+        for (Entry<String, List<String>> entry : reader.configurationProperties
+                .entrySet()) {
+            configurationProperties.put(entry.getKey(),
+                    Collections.unmodifiableList(entry.getValue()));
+        }
+        return new PermutationMatrix(reader.selectionProperties,
+                configurationProperties, reader.conditionalProperties);
+    }
+
+    /**
+     * Limits a selection property to the given values, e.g. to test with
+     * only some user agents.
+     * 
+     * @return a new matrix with the limited values
+     */
+    public PermutationMatrix restrict(String propertyName, String... values) {
+        if (!selectionProperties.containsKey(propertyName)) {
+            throw new IllegalArgumentException("Selection property "
+                    + propertyName + " not found");
+        }
+        Map<String, Set<String>> restricted = new LinkedHashMap<String, Set<String>>(
+                selectionProperties);
+        restricted.put(propertyName,
+                new LinkedHashSet<String>(Arrays.asList(values)));
+        Set<String> conditional = new HashSet<String>(conditionalProperties);
+        conditional.remove(propertyName);
+        return new PermutationMatrix(restricted, configurationProperties,
+                conditional);
+    }
+
+    /**
+     * Gets the property values of all permutations.
+     * 
+     * @throws IllegalStateException
+     *             if the values of a property depend on a conditional
+     *             <code>&lt;set-property&gt;</code> and have not been
+     *             restricted
+     */
+    public List<Map<String, List<String>>> getPermutations() {
+        if (!conditionalProperties.isEmpty()) {
+            throw new IllegalStateException("Conditional <set-property> is"
+                    + " not supported. Use restrict() to choose the values"
+                    + " to test for " + new TreeSet<String>(
+                            conditionalProperties));
+        }
+
+        List<Map<String, List<String>>> permutations = new ArrayList<Map<String, List<String>>>();
+        permutations.add(new TreeMap<String, List<String>>(
+                configurationProperties));
+        for (Entry<String, Set<String>> entry : selectionProperties
+                .entrySet()) {
+            List<Map<String, List<String>>> expanded = new ArrayList<Map<String, List<String>>>();
+            for (Map<String, List<String>> permutation : permutations) {
+                for (String value : entry.getValue()) {
+                    Map<String, List<String>> copy = new TreeMap<String, List<String>>(
+                            permutation);
+                    copy.put(entry.getKey(), Collections.singletonList(value));
+                    expanded.add(copy);
+                }
+            }
+            permutations = expanded;
+        }
+
+        List<Map<String, List<String>>> unmodifiable = new ArrayList<Map<String, List<String>>>();
+        for (Map<String, List<String>> permutation : permutations) {
+            unmodifiable.add(Collections.unmodifiableMap(permutation));
+        }
+        return Collections.unmodifiableList(unmodifiable);
+    }
+
+    /**
+     * Runs a test for each permutation, using one thread per available
+     * processor.
+     * 
+     * @throws AssertionError
+     *             if the test failed for any permutation. The message lists
+     *             all failed permutations and the cause is the first failure.
+     */
+    public void run(final Test test) {
+        List<Map<String, List<String>>> permutations = getPermutations();
+        PropertySourceBridge.Installation bridge = PropertySourceBridge
+                .install();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime
+                .getRuntime().availableProcessors());
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (final Map<String, List<String>> permutation : permutations) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        PropertySources.bind(permutation);
+                        try {
+                            test.run(permutation);
+                        } finally {
+                            PropertySources.bind(null);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            StringBuilder failures = new StringBuilder();
+            Throwable firstFailure = null;
+            int failureCount = 0;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (firstFailure == null) {
+                        firstFailure = cause;
+                    }
+                    failureCount++;
+                    failures.append('\n')
+                            .append(describe(permutations.get(i)))
+                            .append(": ").append(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted", e);
+                }
+            }
+
+            if (firstFailure != null) {
+                AssertionError error = new AssertionError(failureCount
+                        + " of " + permutations.size()
+                        + " permutations failed:" + failures);
+                error.initCause(firstFailure);
+                throw error;
+            }
+        } finally {
+            executor.shutdownNow();
+            bridge.close();
+        }
+    }
+
+    private String describe(Map<String, List<String>> permutation) {
+        StringBuilder description = new StringBuilder();
+        for (String propertyName : selectionProperties.keySet()) {
+            if (description.length() != 0) {
+                description.append(", ");
+            }
+            description.append(propertyName).append('=')
+                    .append(permutation.get(propertyName).get(0));
+        }
+        return description.toString();
+    }
+
+    /**
+     * Collects the property declarations of a module and the modules it
+     * inherits.
+     */
+    private static class ModuleReader {
+        private final ClassLoader classLoader;
+        private final Set<String> readModules = new HashSet<String>();
+
+        private final Map<String, Set<String>> selectionProperties = new LinkedHashMap<String, Set<String>>();
+        private final Map<String, List<String>> configurationProperties = new LinkedHashMap<String, List<String>>();
+        private final Set<String> conditionalProperties = new HashSet<String>();
+
+        public ModuleReader(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * Reads a module unless it has already been read.
+         * 
+         * @return <code>false</code> if the module was not found
+         */
+        public boolean read(String moduleName) {
+            if (!readModules.add(moduleName)) {
+                return true;
+            }
+
+            InputStream stream = classLoader.getResourceAsStream(moduleName
+                    .replace('.', '/') + ".gwt.xml");
+            if (stream == null) {
+                return false;
+            }
+
+            Document document;
+            try {
+                try {
+                    DocumentBuilder builder = DocumentBuilderFactory
+                            .newInstance().newDocumentBuilder();
+                    builder.setEntityResolver(new EntityResolver() {
+                        @Override
+                        public InputSource resolveEntity(String publicId,
+                                String systemId) {
+                            // Don't download the DTD
+                            return new InputSource(new StringReader(""));
+                        }
+                    });
+                    document = builder.parse(stream);
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not read module "
+                        + moduleName, e);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Could not parse module "
+                        + moduleName, e);
+            }
+
+            NodeList children = document.getDocumentElement().getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                Node child = children.item(i);
+                if (child instanceof Element) {
+                    readElement((Element) child);
+                }
+            }
+            return true;
+        }
+
+        private void readElement(Element element) {
+            String tagName = element.getTagName();
+            String name = element.getAttribute("name");
+            if (tagName.equals("inherits")) {
+                // Modules that are not on the class path are ignored
+                read(name);
+            } else if (tagName.equals("define-property")) {
+                selectionProperties.put(name, new LinkedHashSet<String>(
+                        split(element.getAttribute("values"))));
+            } else if (tagName.equals("extend-property")) {
+                Set<String> values = selectionProperties.get(name);
+                if (values != null) {
+                    values.addAll(split(element.getAttribute("values")));
+                }
+            } else if (tagName.equals("set-property")) {
+                Set<String> values = selectionProperties.get(name);
+                if (values != null && hasChildElements(element)) {
+                    conditionalProperties.add(name);
+                } else if (values != null) {
+                    // Replaces any earlier conditional value
+                    conditionalProperties.remove(name);
+                    values.retainAll(split(element.getAttribute("value")));
+                }
+            } else if (tagName.equals("define-configuration-property")) {
+                configurationProperties.put(name, new ArrayList<String>());
+            } else if (tagName.equals("set-configuration-property")) {
+                List<String> values = new ArrayList<String>();
+                values.add(element.getAttribute("value"));
+                configurationProperties.put(name, values);
+            } else if (tagName.equals("extend-configuration-property")) {
+                List<String> values = configurationProperties.get(name);
+                if (values != null) {
+                    values.add(element.getAttribute("value"));
+                }
+            } else if (tagName.equals("clear-configuration-property")) {
+                List<String> values = configurationProperties.get(name);
+                if (values != null) {
+                    values.clear();
+                }
+            }
+        }
+
+        private static boolean hasChildElements(Element element) {
+            NodeList children = element.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                if (children.item(i) instanceof Element) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static List<String> split(String values) {
+            List<String> list = new ArrayList<String>();
+            for (String value : values.split(",")) {
+                if (value.trim().length() != 0) {
+                    list.add(value.trim());
+                }
+            }
+            return list;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.legioth.propertysource.server;
+
+import java.io.Closeable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.github.legioth.propertysource.client.PropertySource;
+import com.google.gwt.core.shared.GWT;
+import com.google.gwt.core.shared.GWTBridge;
+
+/**
+ * Makes <code>GWT.create</code> work on the JVM, returning property sources
+ * that use the property values bound to the current thread. Other classes
+ * are created using their default constructor.
+ */
+class PropertySourceBridge extends GWTBridge {
+    private static final Logger logger = Logger
+            .getLogger(PropertySourceBridge.class.getName());
+
+    // Guarded by the class
+    private static int installCount = 0;
+    private static GWTBridge previousBridge;
+
+    /**
+     * Restores the previous bridge when the last installation is closed.
+     */
+    static class Installation implements Closeable {
+        private boolean closed = false;
+
+        @Override
+        public void close() {
+            synchronized (PropertySourceBridge.class) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (--installCount == 0) {
+                    setBridge(previousBridge);
+                    previousBridge = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Installs the bridge unless it is already installed. The bridge stays
+     * installed until all installations have been closed, and the bridge
+     * that was used before is then restored.
+     *
+     * @return the installation, to close when the bridge is no longer needed
+     */
+    public static synchronized Installation install() {
+        if (installCount == 0) {
+            previousBridge = getBridge();
+            setBridge(new PropertySourceBridge());
+        }
+        installCount++;
+        return new Installation();
+    }
+
+    private static GWTBridge getBridge() {
+        try {
+            Field bridge = GWT.class.getDeclaredField("sGWTBridge");
+            bridge.setAccessible(true);
+            return (GWTBridge) bridge.get(null);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not read GWT bridge", e);
+        }
+    }
+
+    private static void setBridge(GWTBridge bridge) {
+        try {
+            // The same way as dev mode does it
+            Method setBridge = GWT.class.getDeclaredMethod("setBridge",
+                    GWTBridge.class);
+            setBridge.setAccessible(true);
+            setBridge.invoke(null, bridge);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not install GWT bridge", e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T create(Class<?> classLiteral) {
+        if (PropertySource.class.isAssignableFrom(classLiteral)) {
+            return (T) PropertySources.createBound(classLiteral
+                    .asSubclass(PropertySource.class));
+        }
+
+        try {
+            Constructor<?> constructor = classLiteral.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return (T) constructor.newInstance();
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("Can not create "
+                    + classLiteral.getName(), e);
+        }
+    }
+
+    @Override
+    public String getVersion() {
+        return "PropertySource JVM bridge";
+    }
+
+    @Override
+    public boolean isClient() {
+        return false;
+    }
+
+    @Override
+    public void log(String message, Throwable e) {
+        logger.log(Level.INFO, message, e);
+    }
+}
@@ -0,0 +1,586 @@
+package com.github.legioth.propertysource.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Writes the bytecode of a class implementing a property source interface.
+ * Values that can be expressed as constants, i.e. primitives, strings and enum
+ * constants, are returned directly from the method code, while other values
+ * are stored in final fields that are set by the constructor.
+ * <p>
+ * Classes use version 49 of the class file format, which doesn't need stack
+ * map frames for branches.
+ */
+class PropertySourceClassWriter {
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD = 0x15;
+    private static final int LLOAD = 0x16;
+    private static final int FLOAD = 0x17;
+    private static final int DLOAD = 0x18;
+    private static final int ALOAD = 0x19;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int AALOAD = 0x32;
+    private static final int GOTO = 0xa7;
+    private static final int IRETURN = 0xac;
+    private static final int LRETURN = 0xad;
+    private static final int FRETURN = 0xae;
+    private static final int DRETURN = 0xaf;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int GETSTATIC = 0xb2;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int INVOKEINTERFACE = 0xb9;
+    private static final int CHECKCAST = 0xc0;
+    private static final int IFNULL = 0xc6;
+
+    // Longer strings might not fit in a constant pool entry
+    private static final int MAX_CONSTANT_LENGTH = 0xffff / 3;
+
+    private final String className;
+    private final Class<?> type;
+
+    private final ConstantPool constants = new ConstantPool();
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private int methodCount;
+
+    private final List<Class<?>> fieldTypes = new ArrayList<Class<?>>();
+    private final List<Object> fieldValues = new ArrayList<Object>();
+
+    /**
+     * Loads each generated class separately so that it can be unloaded when
+     * it's no longer used.
+     */
+    private static class GeneratedClassLoader extends ClassLoader {
+        public GeneratedClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        public Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Collects constant pool entries, using the same index for entries that
+     * are the same.
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> indices = new HashMap<String, Integer>();
+        private int nextIndex = 1;
+
+        private Integer find(String key) {
+            return indices.get(key);
+        }
+
+        private int add(String key, int size) {
+            int index = nextIndex;
+            indices.put(key, Integer.valueOf(index));
+            nextIndex += size;
+            return index;
+        }
+
+        public int utf8(String value) throws IOException {
+            Integer index = find("utf8 " + value);
+            if (index != null) {
+                return index.intValue();
+            }
+            out.writeByte(1);
+            out.writeUTF(value);
+            return add("utf8 " + value, 1);
+        }
+
+        public int classRef(String internalName) throws IOException {
+            Integer index = find("class " + internalName);
+            if (index != null) {
+                return index.intValue();
+            }
+            int name = utf8(internalName);
+            out.writeByte(7);
+            out.writeShort(name);
+            return add("class " + internalName, 1);
+        }
+
+        public int string(String value) throws IOException {
+            Integer index = find("string " + value);
+            if (index != null) {
+                return index.intValue();
+            }
+            int utf8 = utf8(value);
+            out.writeByte(8);
+            out.writeShort(utf8);
+            return add("string " + value, 1);
+        }
+
+        public int integer(int value) throws IOException {
+            Integer index = find("int " + value);
+            if (index != null) {
+                return index.intValue();
+            }
+            out.writeByte(3);
+            out.writeInt(value);
+            return add("int " + value, 1);
+        }
+
+        public int floatValue(float value) throws IOException {
+            int bits = Float.floatToIntBits(value);
+            Integer index = find("float " + bits);
+            if (index != null) {
+                return index.intValue();
+            }
+            out.writeByte(4);
+            out.writeInt(bits);
+            return add("float " + bits, 1);
+        }
+
+        public int longValue(long value) throws IOException {
+            Integer index = find("long " + value);
+            if (index != null) {
+                return index.intValue();
+            }
+            out.writeByte(5);
+            out.writeLong(value);
+            // Longs and doubles take two entries
+            return add("long " + value, 2);
+        }
+
+        public int doubleValue(double value) throws IOException {
+            long bits = Double.doubleToLongBits(value);
+            Integer index = find("double " + bits);
+            if (index != null) {
+                return index.intValue();
+            }
+            out.writeByte(6);
+            out.writeLong(bits);
+            return add("double " + bits, 2);
+        }
+
+        private int nameAndType(String name, String descriptor)
+                throws IOException {
+            String key = "nameAndType " + name + " " + descriptor;
+            Integer index = find(key);
+            if (index != null) {
+                return index.intValue();
+            }
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            return add(key, 1);
+        }
+
+        /**
+         * Adds a field or method reference.
+         *
+         * @param tag
+         *            9 for fields, 10 for class methods and 11 for interface
+         *            methods
+         */
+        public int member(int tag, String owner, String name,
+                String descriptor) throws IOException {
+            String key = "member " + tag + " " + owner + "." + name + " "
+                    + descriptor;
+            Integer index = find(key);
+            if (index != null) {
+                return index.intValue();
+            }
+            int ownerIndex = classRef(owner);
+            int nameAndType = nameAndType(name, descriptor);
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+            return add(key, 1);
+        }
+    }
+
+    /**
+     * Bytecode of one method.
+     */
+    private static class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        public void op(int opcode) {
+            bytes.write(opcode);
+        }
+
+        public void op(int opcode, int operand) {
+            bytes.write(opcode);
+            bytes.write(operand >> 8);
+            bytes.write(operand);
+        }
+
+        public int size() {
+            return bytes.size();
+        }
+    }
+
+    /**
+     * @param className
+     *            the binary name of the class to write
+     * @param type
+     *            the public interface that the class implements
+     */
+    public PropertySourceClassWriter(String className, Class<?> type) {
+        this.className = className;
+        this.type = type;
+    }
+
+    /**
+     * Writes a method without parameters that always returns the given value.
+     */
+    public void writeConstantMethod(Method method, Object value)
+            throws IOException {
+        Class<?> returnType = method.getReturnType();
+        Code code = new Code();
+        if (returnType == boolean.class) {
+            pushInt(code, ((Boolean) value).booleanValue() ? 1 : 0);
+            code.op(IRETURN);
+        } else if (returnType == char.class) {
+            pushInt(code, ((Character) value).charValue());
+            code.op(IRETURN);
+        } else if (returnType == int.class || returnType == short.class
+                || returnType == byte.class) {
+            pushInt(code, ((Number) value).intValue());
+            code.op(IRETURN);
+        } else if (returnType == long.class) {
+            code.op(LDC2_W, constants.longValue(((Long) value).longValue()));
+            code.op(LRETURN);
+        } else if (returnType == float.class) {
+            code.op(LDC_W, constants.floatValue(((Float) value).floatValue()));
+            code.op(FRETURN);
+        } else if (returnType == double.class) {
+            code.op(LDC2_W,
+                    constants.doubleValue(((Double) value).doubleValue()));
+            code.op(DRETURN);
+        } else if (returnType == String.class
+                && ((String) value).length() <= MAX_CONSTANT_LENGTH) {
+            code.op(LDC_W, constants.string((String) value));
+            code.op(ARETURN);
+        } else if (returnType.isEnum()
+                && Modifier.isPublic(returnType.getModifiers())) {
+            String enumName = internalName(returnType);
+            code.op(GETSTATIC, constants.member(9, enumName,
+                    ((Enum<?>) value).name(), descriptor(returnType)));
+            code.op(ARETURN);
+        } else {
+            getField(code, addField(returnType, value));
+            code.op(ARETURN);
+        }
+        writeMethod(method.getName(), descriptor(method), code, 2, 1);
+    }
+
+    /**
+     * Writes a method with an argument that returns whether the argument is
+     * in a set of values or the value that the argument maps to.
+     *
+     * @param values
+     *            a set of values for <code>boolean</code> methods and a map
+     *            for <code>String</code> methods
+     */
+    public void writeLookupMethod(Method method, Object values)
+            throws IOException {
+        boolean contains = method.getReturnType() == boolean.class;
+        Class<?> fieldType = contains ? Set.class : Map.class;
+        Class<?> parameterType = method.getParameterTypes()[0];
+
+        Code code = new Code();
+        getField(code, addField(fieldType, values));
+
+        // The argument in the same form as the values
+        if (parameterType == int.class) {
+            code.op(ILOAD);
+            code.op(1);
+            code.op(INVOKESTATIC, constants.member(10, "java/lang/String",
+                    "valueOf", "(I)Ljava/lang/String;"));
+        } else if (parameterType.isEnum()) {
+            // argument == null ? null : argument.name()
+            code.op(ALOAD_1);
+            code.op(IFNULL, 10);
+            code.op(ALOAD_1);
+            code.op(INVOKEVIRTUAL, constants.member(10, "java/lang/Enum",
+                    "name", "()Ljava/lang/String;"));
+            code.op(GOTO, 4);
+            code.op(ACONST_NULL);
+        } else {
+            code.op(ALOAD_1);
+        }
+
+        if (contains) {
+            invokeInterface(code, "java/util/Set", "contains",
+                    "(Ljava/lang/Object;)Z", 2);
+            code.op(IRETURN);
+        } else {
+            invokeInterface(code, "java/util/Map", "get",
+                    "(Ljava/lang/Object;)Ljava/lang/Object;", 2);
+            code.op(CHECKCAST, constants.classRef("java/lang/String"));
+            code.op(ARETURN);
+        }
+        writeMethod(method.getName(), descriptor(method), code, 3, 2);
+    }
+
+    /**
+     * Writes a method that runs the same method of the property source
+     * returned by a {@link Callable}. Exceptions thrown by the callable are
+     * passed on as such.
+     */
+    public void writeDelegatingMethod(Method method, Callable<?> target)
+            throws IOException {
+        Code code = new Code();
+        getField(code, addField(Callable.class, target));
+        invokeInterface(code, "java/util/concurrent/Callable", "call",
+                "()Ljava/lang/Object;", 1);
+        code.op(CHECKCAST, constants.classRef(internalName(type)));
+
+        int slot = 1;
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (parameterType == long.class) {
+                code.op(LLOAD);
+            } else if (parameterType == double.class) {
+                code.op(DLOAD);
+            } else if (parameterType == float.class) {
+                code.op(FLOAD);
+            } else if (parameterType.isPrimitive()) {
+                code.op(ILOAD);
+            } else {
+                code.op(ALOAD);
+            }
+            // Wide loads are not needed with at most 255 parameter slots
+            code.op(slot);
+            slot += getSize(parameterType);
+        }
+
+        // The declaring interface might not be accessible
+        invokeInterface(code, internalName(type), method.getName(),
+                descriptor(method), slot);
+
+        Class<?> returnType = method.getReturnType();
+        if (returnType == void.class) {
+            code.op(RETURN);
+        } else if (returnType == long.class) {
+            code.op(LRETURN);
+        } else if (returnType == double.class) {
+            code.op(DRETURN);
+        } else if (returnType == float.class) {
+            code.op(FRETURN);
+        } else if (returnType.isPrimitive()) {
+            code.op(IRETURN);
+        } else {
+            code.op(ARETURN);
+        }
+        writeMethod(method.getName(), descriptor(method), code,
+                Math.max(slot + 1, 2), slot);
+    }
+
+    /**
+     * Writes a <code>toString()</code> method returning a fixed string.
+     */
+    public void writeToString(String value) throws IOException {
+        if (value.length() > MAX_CONSTANT_LENGTH) {
+            value = value.substring(0, MAX_CONSTANT_LENGTH);
+        }
+        Code code = new Code();
+        code.op(LDC_W, constants.string(value));
+        code.op(ARETURN);
+        writeMethod("toString", "()Ljava/lang/String;", code, 1, 1);
+    }
+
+    /**
+     * Defines the class in a new class loader and creates an instance of it.
+     */
+    public Object newInstance() {
+        try {
+            byte[] bytes = toByteArray();
+            Class<?> generated = new GeneratedClassLoader(
+                    type.getClassLoader()).define(className, bytes);
+            Constructor<?> constructor = generated
+                    .getConstructor(Object[].class);
+            return constructor.newInstance(new Object[] { fieldValues
+                    .toArray() });
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create an"
+                    + " implementation of " + type.getName(), e);
+        }
+    }
+
+    private byte[] toByteArray() throws IOException {
+        int thisClass = constants.classRef(className.replace('.', '/'));
+        int superClass = constants.classRef("java/lang/Object");
+        int typeClass = constants.classRef(internalName(type));
+
+        // Fields and constructor are written last since methods add fields
+        ByteArrayOutputStream fields = new ByteArrayOutputStream();
+        DataOutputStream fieldsOut = new DataOutputStream(fields);
+        for (int i = 0; i < fieldTypes.size(); i++) {
+            fieldsOut.writeShort(ACC_PRIVATE | ACC_FINAL);
+            fieldsOut.writeShort(constants.utf8(getFieldName(i)));
+            fieldsOut.writeShort(constants.utf8(descriptor(fieldTypes.get(i))));
+            fieldsOut.writeShort(0);
+        }
+        writeConstructor();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xcafebabe);
+        out.writeShort(0);
+        out.writeShort(49);
+        out.writeShort(constants.nextIndex);
+        out.write(constants.bytes.toByteArray());
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(typeClass);
+        out.writeShort(fieldTypes.size());
+        out.write(fields.toByteArray());
+        out.writeShort(methodCount);
+        out.write(methods.toByteArray());
+        out.writeShort(0);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a constructor that takes the values of all fields as an array.
+     */
+    private void writeConstructor() throws IOException {
+        Code code = new Code();
+        code.op(ALOAD_0);
+        code.op(INVOKESPECIAL, constants.member(10, "java/lang/Object",
+                "<init>", "()V"));
+        for (int i = 0; i < fieldTypes.size(); i++) {
+            code.op(ALOAD_0);
+            code.op(ALOAD_1);
+            pushIndex(code, i);
+            code.op(AALOAD);
+            code.op(CHECKCAST, constants.classRef(internalName(fieldTypes
+                    .get(i))));
+            code.op(PUTFIELD, constants.member(9, className.replace('.', '/'),
+                    getFieldName(i), descriptor(fieldTypes.get(i))));
+        }
+        code.op(RETURN);
+        writeMethod("<init>", "([Ljava/lang/Object;)V", code, 3, 2);
+    }
+
+    private void writeMethod(String name, String descriptor, Code code,
+            int maxStack, int maxLocals) throws IOException {
+        DataOutputStream out = new DataOutputStream(methods);
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(constants.utf8(name));
+        out.writeShort(constants.utf8(descriptor));
+        out.writeShort(1);
+        out.writeShort(constants.utf8("Code"));
+        out.writeInt(12 + code.size());
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.size());
+        out.write(code.bytes.toByteArray());
+        // No exception handlers and no attributes
+        out.writeShort(0);
+        out.writeShort(0);
+        methodCount++;
+    }
+
+    private int addField(Class<?> fieldType, Object value) {
+        fieldTypes.add(fieldType.isPrimitive() ? Object.class : fieldType);
+        fieldValues.add(value);
+        return fieldTypes.size() - 1;
+    }
+
+    private void getField(Code code, int field) throws IOException {
+        code.op(ALOAD_0);
+        code.op(GETFIELD, constants.member(9, className.replace('.', '/'),
+                getFieldName(field), descriptor(fieldTypes.get(field))));
+    }
+
+    private void invokeInterface(Code code, String owner, String name,
+            String descriptor, int argumentSlots) throws IOException {
+        code.op(INVOKEINTERFACE, constants.member(11, owner, name, descriptor));
+        code.op(argumentSlots);
+        code.op(0);
+    }
+
+    private void pushInt(Code code, int value) throws IOException {
+        code.op(LDC_W, constants.integer(value));
+    }
+
+    private static void pushIndex(Code code, int index) {
+        code.op(SIPUSH, index);
+    }
+
+    private static String getFieldName(int index) {
+        return "value" + index;
+    }
+
+    private static int getSize(Class<?> type) {
+        return type == long.class || type == double.class ? 2 : 1;
+    }
+
+    private static String internalName(Class<?> type) {
+        if (type.isArray()) {
+            return descriptor(type);
+        }
+        return type.getName().replace('.', '/');
+    }
+
+    private static String descriptor(Method method) {
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            descriptor.append(descriptor(parameterType));
+        }
+        return descriptor.append(')')
+                .append(descriptor(method.getReturnType())).toString();
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type == void.class) {
+            return "V";
+        } else if (type == boolean.class) {
+            return "Z";
+        } else if (type == char.class) {
+            return "C";
+        } else if (type == byte.class) {
+            return "B";
+        } else if (type == short.class) {
+            return "S";
+        } else if (type == int.class) {
+            return "I";
+        } else if (type == long.class) {
+            return "J";
+        } else if (type == float.class) {
+            return "F";
+        } else if (type == double.class) {
+            return "D";
+        } else if (type.isArray()) {
+            return type.getName().replace('.', '/');
+        } else {
+            return "L" + type.getName().replace('.', '/') + ";";
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.github.legioth.propertysource.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.client.DynamicPropertySource.PropertyProxy;
+import com.github.legioth.propertysource.client.PropertySnapshot;
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.BooleanConversion;
+import com.github.legioth.propertysource.client.annotations.Namespace;
+import com.github.legioth.propertysource.client.annotations.Property;
+import com.github.legioth.propertysource.client.impl.PropertyValues;
+
+/**
+ * Creates property sources on the JVM, e.g. for server side code or unit
+ * tests, using property values from a map instead of from the GWT compiler.
+ * Property names and conversions follow the same rules as in compiled code.
+ * <p>
+ * For a property source interface, all property values are converted when the
+ * instance is created, and a class is generated that returns the converted
+ * values as constants. One instance is shared for all maps that have the same
+ * values for the properties used by the interface, as long as it is among
+ * the most recently used instances of the interface. The interface must be
+ * public. A {@link DynamicPropertySource} subclass is instead instantiated and
+ * its methods run as usual, with the property values read from the map.
+ */
+public class PropertySources {
+
+    /*
+     * Kept with each class through ClassValue so that the cache doesn't
+     * prevent the class loader of the type from being unloaded
+     */
+    private static final ClassValue<TypeInstances> instances = new ClassValue<TypeInstances>() {
+        @Override
+        protected TypeInstances computeValue(Class<?> type) {
+            return new TypeInstances(type);
+        }
+    };
+
+    private static final int MAX_INSTANCES_PER_TYPE = 256;
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    private static final ThreadLocal<Map<String, ? extends List<String>>> boundProperties = new ThreadLocal<Map<String, ? extends List<String>>>();
+
+    private static final Field proxyField;
+    static {
+        try {
+            proxyField = DynamicPropertySource.class.getDeclaredField("proxy");
+            proxyField.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * A property source method together with the name of its property.
+     */
+    private static class MethodBinding {
+        private final Method method;
+        private final String propertyName;
+
+        public MethodBinding(Method method, String propertyName) {
+            this.method = method;
+            this.propertyName = propertyName;
+        }
+    }
+
+    /**
+     * The methods of a property source interface and the instances created
+     * for it, keyed by the values of the properties used by the methods. Only
+     * the most recently used instances are kept since the values might e.g.
+     * come from request parameters.
+     */
+    private static class TypeInstances {
+        private final List<MethodBinding> methodBindings = new ArrayList<MethodBinding>();
+        private final Set<String> propertyNames = new TreeSet<String>();
+        private final Map<List<List<String>>, Object> instances = new LinkedHashMap<List<List<String>>, Object>(
+                16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Entry<List<List<String>>, Object> eldest) {
+                return size() > MAX_INSTANCES_PER_TYPE;
+            }
+        };
+
+        public TypeInstances(Class<?> type) {
+            for (Method method : getImplementedMethods(type)) {
+                MethodBinding binding = new MethodBinding(method,
+                        getPropertyName(method));
+                methodBindings.add(binding);
+                propertyNames.add(binding.propertyName);
+            }
+        }
+    }
+
+    /**
+     * Finds properties for dynamic property sources, either from a map or
+     * from the properties bound to the current thread.
+     */
+    private static class MapPropertyProxy implements PropertyProxy {
+        // null to use the bound properties
+        private final Map<String, ? extends List<String>> properties;
+
+        public MapPropertyProxy(Map<String, ? extends List<String>> properties) {
+            this.properties = properties;
+        }
+
+        private Map<String, ? extends List<String>> getProperties() {
+            if (properties != null) {
+                return properties;
+            } else {
+                return getBoundProperties();
+            }
+        }
+
+        @Override
+        public String getSelectionPropertyValue(String name) {
+            return PropertyValues.getSingle(getValues(getProperties(), name),
+                    "Selection property");
+        }
+
+        @Override
+        public String getSelectionPropertyFallback(String name) {
+            // No fallback values outside the compiler
+            return getSelectionPropertyValue(name);
+        }
+
+        @Override
+        public List<String> getConfigurationPropertyValues(String name) {
+            return getValues(getProperties(), name);
+        }
+
+        @Override
+        public PropertySnapshot getSnapshot(String[] names) {
+            Map<String, ? extends List<String>> properties = getProperties();
+            Map<String, List<String>> values = new LinkedHashMap<String, List<String>>();
+            for (String name : names) {
+                List<String> propertyValues = properties.get(name);
+                if (propertyValues != null) {
+                    values.put(name, propertyValues);
+                }
+            }
+            return new PropertySnapshot(values);
+        }
+
+        @Override
+        public String readResource(String name) {
+            ClassLoader classLoader = Thread.currentThread()
+                    .getContextClassLoader();
+            if (classLoader == null) {
+                classLoader = PropertySources.class.getClassLoader();
+            }
+            InputStream in = classLoader.getResourceAsStream(name);
+            if (in == null) {
+                return null;
+            }
+            try {
+                try {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[4096];
+                    int count;
+                    while ((count = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, count);
+                    }
+                    return out.toString("UTF-8");
+                } finally {
+                    in.close();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read " + name, e);
+            }
+        }
+    }
+
+    private PropertySources() {
+        // Only static helpers
+    }
+
+    /**
+     * Creates a property source that uses the given property values.
+     * 
+     * @param type
+     *            the property source interface or dynamic property source
+     *            class
+     * @param properties
+     *            a map from property name to property values. Selection
+     *            properties have exactly one value.
+     * @return a property source instance
+     * @throws IllegalArgumentException
+     *             if a property is missing, if a value can not be converted
+     *             or if the type has methods that are not supported
+     */
+    public static <T extends PropertySource> T create(Class<T> type,
+            Map<String, ? extends List<String>> properties) {
+        if (DynamicPropertySource.class.isAssignableFrom(type)) {
+            return type.cast(createDynamic(type, new MapPropertyProxy(
+                    properties)));
+        } else if (!type.isInterface()) {
+            throw new IllegalArgumentException(type.getName()
+                    + " should either be an interface or extend "
+                    + DynamicPropertySource.class.getSimpleName());
+        }
+
+        if (!Modifier.isPublic(type.getModifiers())) {
+            throw new IllegalArgumentException(type.getName()
+                    + " must be public");
+        }
+
+        TypeInstances typeInstances = instances.get(type);
+
+        // Properties in deterministic order, copied since the caller might
+        // change its lists after the key has been stored
+        List<List<String>> key = new ArrayList<List<String>>();
+        for (String propertyName : typeInstances.propertyNames) {
+            key.add(Collections.unmodifiableList(new ArrayList<String>(
+                    getValues(properties, propertyName))));
+        }
+        key = Collections.unmodifiableList(key);
+
+        Object instance;
+        synchronized (typeInstances.instances) {
+            instance = typeInstances.instances.get(key);
+        }
+        if (instance == null) {
+            instance = createInstance(type, typeInstances.methodBindings,
+                    properties);
+
+            synchronized (typeInstances.instances) {
+                // Keep the first one if another thread was quicker
+                Object existing = typeInstances.instances.get(key);
+                if (existing != null) {
+                    instance = existing;
+                } else {
+                    typeInstances.instances.put(key, instance);
+                }
+            }
+        }
+        return type.cast(instance);
+    }
+
+    private static Object createInstance(Class<?> type,
+            List<MethodBinding> methodBindings,
+            Map<String, ? extends List<String>> properties) {
+        PropertySourceClassWriter writer = new PropertySourceClassWriter(
+                getClassName(type, "Values"), type);
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        try {
+            for (MethodBinding binding : methodBindings) {
+                Method method = binding.method;
+                Object value;
+                try {
+                    value = convert(method,
+                            getValues(properties, binding.propertyName));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Can not convert "
+                            + binding.propertyName + " for " + method + ": "
+                            + e.getMessage(), e);
+                }
+
+                if (method.getParameterTypes().length == 0) {
+                    writer.writeConstantMethod(method, value);
+                } else {
+                    writer.writeLookupMethod(method, value);
+                }
+                values.put(method.getName(), value);
+            }
+            writer.writeToString(type.getName() + values);
+        } catch (IOException e) {
+            // Only writing to memory
+            throw new RuntimeException(e);
+        }
+        return writer.newInstance();
+    }
+
+    /**
+     * Gets a unique name for a generated class, in the same package as the
+     * type for readable stack traces.
+     */
+    private static String getClassName(Class<?> type, String kind) {
+        return type.getName() + "$" + kind + classCounter.incrementAndGet();
+    }
+
+    /**
+     * Gets the abstract methods of an interface, leaving out methods with the
+     * same signature inherited from different interfaces.
+     */
+    private static Collection<Method> getImplementedMethods(Class<?> type) {
+        Map<String, Method> methods = new LinkedHashMap<String, Method>();
+        for (Method method : type.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers())) {
+                // Static and default methods
+                continue;
+            }
+            String signature = method.getName()
+                    + Arrays.toString(method.getParameterTypes())
+                    + method.getReturnType().getName();
+            if (!methods.containsKey(signature)) {
+                methods.put(signature, method);
+            }
+        }
+        return methods.values();
+    }
+
+    private static List<String> getValues(
+            Map<String, ? extends List<String>> properties, String propertyName) {
+        List<String> values = properties.get(propertyName);
+        if (values == null) {
+            throw new IllegalArgumentException("Property " + propertyName
+                    + " not found");
+        }
+        return values;
+    }
+
+    private static DynamicPropertySource createDynamic(Class<?> type,
+            PropertyProxy proxy) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            DynamicPropertySource source = (DynamicPropertySource) constructor
+                    .newInstance();
+            proxyField.set(source, proxy);
+            return source;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not create "
+                    + type.getName(), e);
+        }
+    }
+
+    /**
+     * Creates a property source that uses the property values bound to the
+     * thread calling its methods. The same instance can thus be used from
+     * different threads with different property values.
+     */
+    static <T extends PropertySource> T createBound(final Class<T> type) {
+        if (DynamicPropertySource.class.isAssignableFrom(type)) {
+            return type.cast(createDynamic(type, new MapPropertyProxy(null)));
+        } else if (!type.isInterface()) {
+            throw new IllegalArgumentException(type.getName()
+                    + " should either be an interface or extend "
+                    + DynamicPropertySource.class.getSimpleName());
+        }
+        if (!Modifier.isPublic(type.getModifiers())) {
+            throw new IllegalArgumentException(type.getName()
+                    + " must be public");
+        }
+
+        Callable<T> target = new Callable<T>() {
+            @Override
+            public T call() {
+                return create(type, getBoundProperties());
+            }
+        };
+        PropertySourceClassWriter writer = new PropertySourceClassWriter(
+                getClassName(type, "Bound"), type);
+        try {
+            for (Method method : getImplementedMethods(type)) {
+                writer.writeDelegatingMethod(method, target);
+            }
+            writer.writeToString(type.getName()
+                    + " bound to the current thread");
+        } catch (IOException e) {
+            // Only writing to memory
+            throw new RuntimeException(e);
+        }
+        return type.cast(writer.newInstance());
+    }
+
+    /**
+     * Binds property values to the current thread, or removes the binding if
+     * the properties are <code>null</code>.
+     */
+    static void bind(Map<String, ? extends List<String>> properties) {
+        if (properties == null) {
+            boundProperties.remove();
+        } else {
+            boundProperties.set(properties);
+        }
+    }
+
+    private static Map<String, ? extends List<String>> getBoundProperties() {
+        Map<String, ? extends List<String>> properties = boundProperties.get();
+        if (properties == null) {
+            throw new IllegalStateException(
+                    "No property values are bound to the current thread");
+        }
+        return properties;
+    }
+
+    /**
+     * Converts property values to the value returned by a method. Methods
+     * with an argument get a collection of the values or a map of the
+     * entries that the argument is looked up from.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object convert(Method method, List<String> values) {
+        Class<?> returnType = method.getReturnType();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+
+        if (parameterTypes.length == 1) {
+            Class<?> parameterType = parameterTypes[0];
+            if (parameterType != String.class && parameterType != int.class
+                    && !parameterType.isEnum()) {
+                throw new IllegalArgumentException(
+                        "Only String, int and enum arguments are supported");
+            } else if (returnType == boolean.class) {
+                if (parameterType == int.class) {
+                    values = PropertyValues.toIntValues(values);
+                }
+                return new HashSet<String>(values);
+            } else if (returnType == String.class) {
+                Map<String, String> entries = PropertyValues.toMap(values);
+                if (parameterType == int.class) {
+                    entries = PropertyValues.toIntKeys(entries);
+                }
+                return entries;
+            } else {
+                throw new IllegalArgumentException(returnType.getName()
+                        + " is not supported for methods with an argument."
+                        + " Only boolean and String are supported.");
+            }
+        } else if (parameterTypes.length != 0) {
+            throw new IllegalArgumentException(
+                    "Only supporting methods with no arguments or one argument");
+        }
+
+        if (returnType == String.class) {
+            return PropertyValues.getSingle(values, "String");
+        } else if (returnType == boolean.class || returnType == Boolean.class) {
+            BooleanConversion conversion = method
+                    .getAnnotation(BooleanConversion.class);
+            if (conversion == null) {
+                return Boolean.valueOf(PropertyValues.toBoolean(values, "",
+                        new String[0], false));
+            } else {
+                return Boolean.valueOf(PropertyValues.toBoolean(values,
+                        conversion.truePattern(), conversion.trueValues(),
+                        conversion.matchAll()));
+            }
+        } else if (returnType == List.class) {
+            return Collections.unmodifiableList(new ArrayList<String>(values));
+        } else if (returnType == Set.class) {
+            return PropertyValues.toSet(values);
+        } else if (returnType == Map.class) {
+            return PropertyValues.toMap(values);
+        } else if (returnType.isEnum()) {
+            return Enum.valueOf((Class) returnType,
+                    PropertyValues.getSingle(values, returnType.getSimpleName())
+                            .trim());
+        }
+
+        String value = PropertyValues.getSingle(values,
+                returnType.getSimpleName()).trim();
+        if (returnType == int.class || returnType == Integer.class) {
+            return Integer.valueOf(value);
+        } else if (returnType == long.class || returnType == Long.class) {
+            return Long.valueOf(value);
+        } else if (returnType == short.class || returnType == Short.class) {
+            return Short.valueOf(value);
+        } else if (returnType == byte.class || returnType == Byte.class) {
+            return Byte.valueOf(value);
+        } else if (returnType == double.class || returnType == Double.class) {
+            return Double.valueOf(value);
+        } else if (returnType == float.class || returnType == Float.class) {
+            return Float.valueOf(value);
+        } else if (returnType == char.class
+                || returnType == Character.class) {
+            return Character.valueOf(PropertyValues.toChar(value));
+        } else {
+            throw new IllegalArgumentException(returnType.getName()
+                    + " is not supported");
+        }
+    }
+
+    private static String getPropertyName(Method method) {
+        // Use @Property on method if defined
+        Property methodPropertyAnnotation = method
+                .getAnnotation(Property.class);
+        if (methodPropertyAnnotation != null) {
+            return methodPropertyAnnotation.value();
+        }
+
+        Class<?> enclosingType = method.getDeclaringClass();
+
+        // Use @Property on type if defined
+        Property typePropertyAnnotation = enclosingType
+                .getAnnotation(Property.class);
+        if (typePropertyAnnotation != null) {
+            return typePropertyAnnotation.value();
+        }
+
+        // Default to using method name
+        String propertyName = method.getName();
+
+        // Supplement with @Namespace on type if defined
+        Namespace namespace = enclosingType.getAnnotation(Namespace.class);
+        if (namespace != null) {
+            return namespace.value() + "." + propertyName;
+        } else {
+            return propertyName;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+
+public class BasicDynamicPropertySource extends DynamicPropertySource {
+
+    public boolean isString1() {
+        return "s1".equals(getSelectionPropertyValue("basic.string"));
+    }
+}
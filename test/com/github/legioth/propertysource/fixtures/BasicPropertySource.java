@@ -0,0 +1,21 @@
+package com.github.legioth.propertysource.fixtures;
+
+import java.util.List;
+
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.BooleanConversion;
+import com.github.legioth.propertysource.client.annotations.Namespace;
+import com.github.legioth.propertysource.client.annotations.Property;
+
+@Namespace("basic")
+public interface BasicPropertySource extends PropertySource {
+    public String string();
+
+    public boolean bool();
+
+    public List<String> list();
+
+    @Property("basic.string")
+    @BooleanConversion(truePattern = "s[12]")
+    public boolean isString1or2();
+}
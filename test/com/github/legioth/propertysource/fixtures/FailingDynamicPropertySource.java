@@ -0,0 +1,10 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+
+public class FailingDynamicPropertySource extends DynamicPropertySource {
+
+    public String fail() {
+        throw new IllegalStateException("Failed on purpose");
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.HostPageProperty;
+import com.github.legioth.propertysource.client.annotations.Namespace;
+import com.github.legioth.propertysource.client.annotations.Property;
+
+@Namespace("page")
+@HostPageProperty("config")
+public interface HostPagePropertySource extends PropertySource {
+    public boolean flag();
+
+    public int count();
+
+    @Property("page.flag")
+    public boolean hasFlag(String value);
+
+    @Property("page.count")
+    public boolean hasCount(int value);
+}
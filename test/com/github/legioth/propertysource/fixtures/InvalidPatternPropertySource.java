@@ -0,0 +1,9 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.BooleanConversion;
+
+public interface InvalidPatternPropertySource extends PropertySource {
+    @BooleanConversion(truePattern = "s[12")
+    public boolean broken();
+}
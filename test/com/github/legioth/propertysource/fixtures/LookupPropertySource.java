@@ -0,0 +1,27 @@
+package com.github.legioth.propertysource.fixtures;
+
+import java.util.Map;
+import java.util.Set;
+
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.Namespace;
+import com.github.legioth.propertysource.client.annotations.Property;
+
+@Namespace("lookup")
+public interface LookupPropertySource extends PropertySource {
+    public Set<String> set();
+
+    public Map<String, String> map();
+
+    @Property("lookup.set")
+    public boolean contains(String value);
+
+    @Property("lookup.map")
+    public String get(String key);
+
+    @Property("lookup.numbers")
+    public boolean hasNumber(int number);
+
+    @Property("lookup.labels")
+    public String getLabel(int number);
+}
@@ -0,0 +1,23 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.Namespace;
+
+@Namespace("numeric")
+public interface NumericPropertySource extends PropertySource {
+    public enum Mode {
+        FAST, SAFE
+    }
+
+    public int count();
+
+    public long size();
+
+    public double ratio();
+
+    public char separator();
+
+    public Integer boxed();
+
+    public Mode mode();
+}
@@ -0,0 +1,19 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.client.annotations.ArgumentValues;
+
+public class OverloadedDynamicPropertySource extends DynamicPropertySource {
+    public enum Color {
+        RED, GREEN;
+    }
+
+    public String pick(Color color) {
+        return "color " + color.name();
+    }
+
+    @ArgumentValues({ "RED", "blue" })
+    public String pick(String name) {
+        return "name " + name;
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.legioth.propertysource.fixtures;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.client.annotations.ArgumentValues;
+
+public class ReadingDynamicPropertySource extends DynamicPropertySource {
+
+    public String string() {
+        return getSelectionPropertyValue("basic.string");
+    }
+
+    public boolean isBool() {
+        return Boolean.parseBoolean(getSelectionPropertyValue("basic.bool"));
+    }
+
+    public List<String> reversedList() {
+        List<String> values = new ArrayList<String>(
+                getConfigurationPropertyValues("basic.list"));
+        Collections.reverse(values);
+        return values;
+    }
+
+    @ArgumentValues({ "s1", "s2", "s3" })
+    public boolean isString(String value) {
+        return value.equals(getSelectionPropertyValue("basic.string"));
+    }
+}
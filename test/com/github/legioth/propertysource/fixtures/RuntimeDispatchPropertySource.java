@@ -0,0 +1,15 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.PropertySource;
+import com.github.legioth.propertysource.client.annotations.Namespace;
+import com.github.legioth.propertysource.client.annotations.Property;
+import com.github.legioth.propertysource.client.annotations.RuntimeDispatch;
+
+@Namespace("dispatch")
+@RuntimeDispatch
+public interface RuntimeDispatchPropertySource extends PropertySource {
+    public String mode();
+
+    @Property("dispatch.mode")
+    public boolean isMode(String runtimeValue);
+}
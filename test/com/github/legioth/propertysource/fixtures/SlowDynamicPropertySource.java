@@ -0,0 +1,22 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.testing.Interruption;
+
+public class SlowDynamicPropertySource extends DynamicPropertySource {
+
+    public String fast() {
+        return "fast";
+    }
+
+    public String slow() {
+        // Busy wait that stops when the budget interrupts it
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < 2000) {
+            if (Interruption.interrupted()) {
+                return "interrupted";
+            }
+        }
+        return "slow";
+    }
+}
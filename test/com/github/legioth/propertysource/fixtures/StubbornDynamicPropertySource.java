@@ -0,0 +1,15 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+
+public class StubbornDynamicPropertySource extends DynamicPropertySource {
+
+    public String stubborn() {
+        // Busy wait that ignores interruption
+        long start = System.currentTimeMillis();
+        while (System.currentTimeMillis() - start < 1000) {
+            // Keep going
+        }
+        return "stubborn";
+    }
+}
@@ -0,0 +1,7 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.PropertySource;
+
+public interface UnsupportedArgumentPropertySource extends PropertySource {
+    public int count(String key);
+}
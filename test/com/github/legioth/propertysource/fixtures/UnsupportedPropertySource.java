@@ -0,0 +1,9 @@
+package com.github.legioth.propertysource.fixtures;
+
+import com.github.legioth.propertysource.client.PropertySource;
+
+public interface UnsupportedPropertySource extends PropertySource {
+    public String string();
+
+    public Object object();
+}
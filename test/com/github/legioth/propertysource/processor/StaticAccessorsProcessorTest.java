@@ -0,0 +1,110 @@
+package com.github.legioth.propertysource.processor;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StaticAccessorsProcessorTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void inheritedMethodsIncluded() throws Exception {
+        String source = process("test.Child",
+                "package test;\n"
+                        + "import com.github.legioth.propertysource.client.PropertySource;\n"
+                        + "import com.github.legioth.propertysource.client.annotations.StaticAccessors;\n"
+                        + "@StaticAccessors\n"
+                        + "public interface Child extends Parent<String>, PropertySource {\n"
+                        + "  boolean own();\n"
+                        + "}\n"
+                        + "interface Parent<T> {\n"
+                        + "  T inherited(int index);\n"
+                        + "}\n");
+
+        assertTrue(source.contains("public static boolean own() {"));
+        assertTrue(source
+                .contains("public static java.lang.String inherited(int index) {"));
+        assertFalse(source.contains("hashCode"));
+    }
+
+    @Test
+    public void frameworkMethodsExcluded() throws Exception {
+        String source = process("test.Dynamic",
+                "package test;\n"
+                        + "import com.github.legioth.propertysource.client.DynamicPropertySource;\n"
+                        + "import com.github.legioth.propertysource.client.annotations.StaticAccessors;\n"
+                        + "@StaticAccessors(\"DynamicValues\")\n"
+                        + "public class Dynamic extends DynamicPropertySource {\n"
+                        + "  public boolean own() { return true; }\n"
+                        + "  boolean hidden() { return true; }\n"
+                        + "}\n");
+
+        assertTrue(source.contains("public final class DynamicValues {"));
+        assertTrue(source.contains("public static boolean own() {"));
+        assertFalse(source.contains("hidden"));
+        assertFalse(source.contains("getSelectionProperty"));
+        assertFalse(source.contains("toString"));
+    }
+
+    /**
+     * Runs the processor on one source file and returns the generated source.
+     */
+    private String process(String typeName, String code) throws IOException {
+        File output = folder.newFolder();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler
+                .getStandardFileManager(null, null, null);
+
+        List<String> options = new ArrayList<String>(Arrays.asList(
+                "-proc:only", "-s", output.getPath(), "-classpath",
+                System.getProperty("java.class.path")));
+        StringWriter diagnostics = new StringWriter();
+        CompilationTask task = compiler.getTask(diagnostics, fileManager,
+                null, options, null,
+                Arrays.asList(new StringSource(typeName, code)));
+        task.setProcessors(Arrays.asList(new StaticAccessorsProcessor()));
+        assertTrue(diagnostics.toString(), task.call().booleanValue());
+        fileManager.close();
+
+        File[] generated = new File(output, "test").listFiles();
+        assertTrue(generated != null && generated.length == 1);
+        return new String(Files.readAllBytes(generated[0].toPath()),
+                StandardCharsets.UTF_8);
+    }
+
+    private static class StringSource extends SimpleJavaFileObject {
+        private final String code;
+
+        public StringSource(String typeName, String code) {
+            super(URI.create("string:///" + typeName.replace('.', '/')
+                    + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import com.github.legioth.propertysource.testing.InMemoryGeneratorContext;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.InMemoryTypeOracle;
+import com.github.legioth.propertysource.testing.Interruption;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger;
+import com.google.gwt.core.ext.PropertyOracle;
+import com.google.gwt.core.ext.RebindResult;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.TypeOracle;
+import com.google.gwt.dev.util.log.PrintWriterTreeLogger;
+
+/**
+ * Base class for tests that run the generator for the types in the fixtures
+ * package. All tests share one type oracle since building it is slow, while
+ * each test gets a new generator and context, like a new compile.
+ */
+public abstract class AbstractGeneratorTest {
+    private static final String FIXTURES_PACKAGE = "com.github.legioth.propertysource.fixtures";
+
+    private static TypeOracle typeOracle;
+
+    protected final RecordingTreeLogger logger = new RecordingTreeLogger();
+
+    private PropertySourceGenerator generator;
+    private InMemoryGeneratorContext context;
+
+    protected static synchronized TypeOracle getTypeOracle() {
+        if (typeOracle == null) {
+            PrintWriterTreeLogger buildLogger = new PrintWriterTreeLogger();
+            buildLogger.setMaxDetail(TreeLogger.WARN);
+            typeOracle = new InMemoryTypeOracle()
+                    .addPackage(FIXTURES_PACKAGE)
+                    .addSource(Interruption.class.getName(),
+                            Interruption.CLIENT_SOURCE).build(buildLogger);
+        }
+        return typeOracle;
+    }
+
+    /**
+     * Starts a new compile, with a new generator and generator context.
+     */
+    protected void newCompile() {
+        generator = null;
+        context = null;
+    }
+
+    /**
+     * Gets the generator of the current compile.
+     */
+    protected PropertySourceGenerator getGenerator() {
+        if (generator == null) {
+            generator = new PropertySourceGenerator();
+        }
+        return generator;
+    }
+
+    /**
+     * Gets the generator context of the current compile.
+     */
+    protected InMemoryGeneratorContext getContext() {
+        if (context == null) {
+            context = new InMemoryGeneratorContext(getTypeOracle(), null);
+        }
+        return context;
+    }
+
+    /**
+     * Generates a type for one permutation of the current compile.
+     *
+     * @param type
+     *            the type to generate
+     * @param propertyOracle
+     *            the property values of the permutation
+     * @return the result of the generator
+     */
+    protected RebindResult generate(Class<?> type,
+            PropertyOracle propertyOracle) throws UnableToCompleteException {
+        getContext().setPropertyOracle(propertyOracle);
+        return getGenerator().generateIncrementally(logger, getContext(),
+                type.getCanonicalName());
+    }
+
+    /**
+     * Generates a type for one permutation of the current compile and gets
+     * the source of the class used for it.
+     *
+     * @param type
+     *            the type to generate
+     * @param propertyOracle
+     *            the property values of the permutation
+     * @return the source of the resulting class
+     */
+    protected String generateSource(Class<?> type,
+            PropertyOracle propertyOracle) throws UnableToCompleteException {
+        RebindResult result = generate(type, propertyOracle);
+        String source = getContext().getGeneratedSource(
+                result.getResultTypeName());
+        assertNotNull("No source for " + result.getResultTypeName(), source);
+        return source;
+    }
+
+    /**
+     * Finds the body of a generated method, with all whitespace sequences
+     * replaced by a single space.
+     *
+     * @param source
+     *            the source of the generated class
+     * @param signature
+     *            the name and parameters of the method, e.g. "value(int i)"
+     * @return the statements of the method
+     */
+    protected static String getMethodBody(String source, String signature) {
+        int start = source.indexOf(" " + signature + " {");
+        assertTrue("No method " + signature + " in " + source, start != -1);
+        start = source.indexOf('{', start) + 1;
+
+        int depth = 1;
+        int end = start;
+        while (depth > 0) {
+            char c = source.charAt(end++);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+        }
+        return source.substring(start, end - 1).trim()
+                .replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Creates an empty property oracle.
+     */
+    protected static InMemoryPropertyOracle properties() {
+        return new InMemoryPropertyOracle();
+    }
+}
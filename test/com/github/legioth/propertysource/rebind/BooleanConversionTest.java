@@ -0,0 +1,59 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.BasicPropertySource;
+import com.github.legioth.propertysource.fixtures.InvalidPatternPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger.Message;
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+public class BooleanConversionTest extends AbstractGeneratorTest {
+
+    private static InMemoryPropertyOracle basicProperties(String string) {
+        return properties()
+                .setSelectionProperty("basic.string", "s1", "s2", "s3")
+                .setSelectionProperty("basic.bool", "true", "false")
+                .setConfigurationProperty("basic.list", "a", "b")
+                .withSelectionValue("basic.string", string);
+    }
+
+    @Test
+    public void patternCompiledOnce() {
+        assertSame(PatternCache.get("s[12]"), PatternCache.get("s[12]"));
+    }
+
+    @Test
+    public void truePatternMatchesWholeValue() throws Exception {
+        assertEquals("return true;", getMethodBody(
+                generateSource(BasicPropertySource.class,
+                        basicProperties("s2")), "isString1or2()"));
+        assertEquals("return false;", getMethodBody(
+                generateSource(BasicPropertySource.class,
+                        basicProperties("s3")), "isString1or2()"));
+    }
+
+    @Test
+    public void invalidPatternReportsMethod() {
+        try {
+            generate(InvalidPatternPropertySource.class, properties()
+                    .setSelectionProperty("broken", "true"));
+            fail("Should not accept an invalid pattern");
+        } catch (UnableToCompleteException e) {
+            List<Message> errors = logger.getErrors();
+            assertTrue(errors.get(0).getText(),
+                    errors.get(0).getText().startsWith(
+                            "Invalid truePattern in @BooleanConversion for "
+                                    + InvalidPatternPropertySource.class
+                                            .getName() + ".broken(): "));
+            assertEquals(1, errors.size());
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.BasicDynamicPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.google.gwt.core.ext.RebindMode;
+import com.google.gwt.core.ext.RebindResult;
+
+public class ClassNamingTest extends AbstractGeneratorTest {
+
+    private static InMemoryPropertyOracle stringProperty(String value) {
+        return properties().setSelectionProperty("basic.string", "s1", "s2",
+                "s3").withSelectionValue("basic.string", value);
+    }
+
+    @Test
+    public void sameContentSharesClass() throws Exception {
+        RebindResult s2 = generate(BasicDynamicPropertySource.class,
+                stringProperty("s2"));
+        RebindResult s3 = generate(BasicDynamicPropertySource.class,
+                stringProperty("s3"));
+
+        assertEquals(RebindMode.USE_ALL_NEW, s2.getRebindMode());
+        assertEquals(RebindMode.USE_EXISTING, s3.getRebindMode());
+        assertEquals(s2.getResultTypeName(), s3.getResultTypeName());
+    }
+
+    @Test
+    public void differentContentGetsDifferentClass() throws Exception {
+        RebindResult s1 = generate(BasicDynamicPropertySource.class,
+                stringProperty("s1"));
+        RebindResult s2 = generate(BasicDynamicPropertySource.class,
+                stringProperty("s2"));
+
+        assertFalse(s1.getResultTypeName().equals(s2.getResultTypeName()));
+    }
+
+    @Test
+    public void sameNameInEveryCompile() throws Exception {
+        String first = generate(BasicDynamicPropertySource.class,
+                stringProperty("s1")).getResultTypeName();
+
+        newCompile();
+        String second = generate(BasicDynamicPropertySource.class,
+                stringProperty("s1")).getResultTypeName();
+
+        assertEquals(first, second);
+        assertTrue(first, first.startsWith(BasicDynamicPropertySource.class
+                .getName() + "Impl_"));
+    }
+}
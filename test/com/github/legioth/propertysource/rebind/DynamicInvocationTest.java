@@ -0,0 +1,49 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.FailingDynamicPropertySource;
+import com.github.legioth.propertysource.fixtures.OverloadedDynamicPropertySource;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger.Message;
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+public class DynamicInvocationTest extends AbstractGeneratorTest {
+    private static final String COLOR = OverloadedDynamicPropertySource.Color.class
+            .getCanonicalName();
+
+
+    @Test
+    public void overloadsRunSeparately() throws Exception {
+        String source = generateSource(OverloadedDynamicPropertySource.class,
+                properties());
+
+        assertTrue(getMethodBody(source, "pick(" + COLOR + " color)")
+                .startsWith("if (color != null) { switch (color) { case RED:"
+                        + " return \"color RED\";"));
+        assertEquals("if (name != null) { switch (name) {"
+                + " case \"RED\": return \"name RED\";"
+                + " case \"blue\": return \"name blue\"; } }"
+                + " throw new IllegalArgumentException("
+                + "\"Unsupported argument: \" + name);",
+                getMethodBody(source, "pick(java.lang.String name)"));
+    }
+
+    @Test
+    public void exceptionReportsMethod() {
+        try {
+            generate(FailingDynamicPropertySource.class, properties());
+            fail("Should fail when the method throws");
+        } catch (UnableToCompleteException e) {
+            List<Message> errors = logger.getErrors();
+            assertEquals("fail() threw an exception", errors.get(0).getText());
+            assertTrue(errors.get(0).getCaught()
+                    instanceof IllegalStateException);
+        }
+    }
+}
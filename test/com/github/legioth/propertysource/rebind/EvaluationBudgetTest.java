@@ -0,0 +1,106 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.BasicDynamicPropertySource;
+import com.github.legioth.propertysource.fixtures.SlowDynamicPropertySource;
+import com.github.legioth.propertysource.fixtures.StubbornDynamicPropertySource;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger.Message;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+public class EvaluationBudgetTest extends AbstractGeneratorTest {
+
+    private List<String> getWarnings() {
+        List<String> warnings = new ArrayList<String>();
+        for (Message message : logger.getMessages(Type.WARN)) {
+            if (message.getType() == Type.WARN) {
+                warnings.add(message.getText());
+            }
+        }
+        return warnings;
+    }
+
+    @Test
+    public void methodWithinBudgetReturnsValue() throws Exception {
+        String source = generateSource(BasicDynamicPropertySource.class,
+                properties().setSelectionProperty("basic.string", "s1", "s2")
+                        .setConfigurationProperty(
+                                "propertysource.methodTimeout", "10000"));
+
+        assertEquals("return true;", getMethodBody(source, "isString1()"));
+    }
+
+    @Test
+    public void slowMethodReported() {
+        // Building the type oracle is not part of running the method
+        getTypeOracle();
+        long start = System.currentTimeMillis();
+        try {
+            generate(SlowDynamicPropertySource.class, properties()
+                    .setConfigurationProperty("propertysource.methodTimeout",
+                            "100"));
+            fail("Should fail when the method is too slow");
+        } catch (UnableToCompleteException e) {
+            String error = logger.getErrors().get(0).getText();
+            assertTrue(error, error.startsWith(SlowDynamicPropertySource.class
+                    .getCanonicalName() + "#"));
+            assertTrue(error, error.contains("slow()"));
+            assertTrue(error,
+                    error.endsWith(" did not complete within 100 ms"));
+        }
+        // Not waiting for the method to complete
+        assertTrue(System.currentTimeMillis() - start < 1500);
+    }
+
+    @Test
+    public void interruptedMethodNotWarned() {
+        try {
+            generate(SlowDynamicPropertySource.class, properties()
+                    .setConfigurationProperty("propertysource.methodTimeout",
+                            "100"));
+            fail("Should fail when the method is too slow");
+        } catch (UnableToCompleteException e) {
+            assertTrue(getWarnings().isEmpty());
+        }
+    }
+
+    @Test
+    public void methodIgnoringInterruptionWarned() {
+        try {
+            generate(StubbornDynamicPropertySource.class, properties()
+                    .setConfigurationProperty("propertysource.methodTimeout",
+                            "100"));
+            fail("Should fail when the method is too slow");
+        } catch (UnableToCompleteException e) {
+            List<String> warnings = getWarnings();
+            assertEquals(1, warnings.size());
+            assertTrue(warnings.get(0), warnings.get(0).endsWith(
+                    "stubborn() is still running 500 ms after being"
+                            + " interrupted and keeps running in the"
+                            + " background"));
+        }
+    }
+
+    @Test
+    public void invalidTimeoutReported() {
+        try {
+            generate(BasicDynamicPropertySource.class, properties()
+                    .setSelectionProperty("basic.string", "s1", "s2")
+                    .setConfigurationProperty("propertysource.methodTimeout",
+                            "soon"));
+            fail("Should fail for an invalid timeout");
+        } catch (UnableToCompleteException e) {
+            assertEquals("Can not interpret soon as a number for"
+                    + " propertysource.methodTimeout", logger.getErrors()
+                    .get(0).getText());
+        }
+    }
+}
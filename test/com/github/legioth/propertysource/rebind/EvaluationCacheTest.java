@@ -0,0 +1,181 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.legioth.propertysource.fixtures.BasicDynamicPropertySource;
+import com.github.legioth.propertysource.fixtures.ReadingDynamicPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger;
+
+public class EvaluationCacheTest {
+    private static final String TYPE_KEY = "test.Type";
+
+    private static final String JAR_CLASS = "library.Source";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final RecordingTreeLogger logger = new RecordingTreeLogger();
+
+    private static InMemoryPropertyOracle properties() {
+        return new InMemoryPropertyOracle().setSelectionProperty("selection",
+                "a", "b").setConfigurationProperty("configuration", "x");
+    }
+
+    private static Dependencies dependencies() {
+        Dependencies dependencies = new Dependencies();
+        dependencies.addSelectionProperty("selection");
+        dependencies.addConfigurationProperty("configuration");
+        return dependencies;
+    }
+
+    private void store(File directory, InMemoryPropertyOracle properties,
+            Dependencies dependencies, Map<String, Long> classChecksums,
+            String body) {
+        new EvaluationCache(directory).store(logger,
+                new MemoizingPropertyOracle(properties), TYPE_KEY,
+                dependencies, classChecksums, body);
+    }
+
+    private EvaluationCache.Result find(File directory,
+            InMemoryPropertyOracle properties) {
+        // A new cache for each lookup, like a new compile
+        return new EvaluationCache(directory).find(logger,
+                new MemoizingPropertyOracle(properties), TYPE_KEY);
+    }
+
+    @Test
+    public void unchangedInputsReuseEntry() throws Exception {
+        File directory = folder.newFolder();
+        store(directory, properties(), dependencies(),
+                Collections.<String, Long> emptyMap(), "body");
+
+        EvaluationCache.Result result = find(directory, properties());
+        assertNotNull(result);
+        assertEquals("body", result.getBody());
+        assertEquals(Collections.singleton("selection"),
+                result.getSelectionProperties());
+    }
+
+    @Test
+    public void changedPropertiesInvalidateEntry() throws Exception {
+        File directory = folder.newFolder();
+        store(directory, properties(), dependencies(),
+                Collections.<String, Long> emptyMap(), "body");
+
+        assertNull(find(directory,
+                properties().withSelectionValue("selection", "b")));
+        assertNull(find(directory,
+                properties().setConfigurationProperty("configuration", "y")));
+    }
+
+    @Test
+    public void definedPropertyInvalidatesEntryForMissingProperty()
+            throws Exception {
+        File directory = folder.newFolder();
+        Dependencies dependencies = dependencies();
+        dependencies.addConfigurationProperty("undefined");
+        store(directory, properties(), dependencies,
+                Collections.<String, Long> emptyMap(), "body");
+
+        assertNotNull(find(directory, properties()));
+        assertNull(find(directory,
+                properties().setConfigurationProperty("undefined", "z")));
+    }
+
+    @Test
+    public void changedClassInvalidatesEntry() throws Exception {
+        File directory = folder.newFolder();
+        String className = getClass().getName();
+        Long checksum = EvaluationClassLoader.getCurrentChecksum(className);
+        assertNotNull(checksum);
+
+        store(directory, properties(), dependencies(),
+                Collections.singletonMap(className, checksum), "current");
+        store(directory, properties(), dependencies(),
+                Collections.singletonMap(className,
+                        Long.valueOf(checksum.longValue() + 1)), "changed");
+
+        assertEquals("current", find(directory, properties()).getBody());
+    }
+
+    @Test
+    public void changedJarClassInvalidatesEntry() throws Exception {
+        File directory = folder.newFolder();
+        File jar = new File(folder.getRoot(), "library.jar");
+        writeJar(jar, BasicDynamicPropertySource.class);
+        URLClassLoader classPath = new URLClassLoader(new URL[] { jar.toURI()
+                .toURL() }, getClass().getClassLoader());
+        try {
+            EvaluationClassLoader.setClassPath(classPath);
+            Map<String, Long> checksums = EvaluationClassLoader.get(logger)
+                    .getChecksums(JAR_CLASS);
+            assertEquals(Collections.singleton(JAR_CLASS), checksums.keySet());
+
+            store(directory, properties(), dependencies(), checksums, "body");
+            assertNotNull(find(directory, properties()));
+
+            writeJar(jar, ReadingDynamicPropertySource.class);
+            assertNull(find(directory, properties()));
+        } finally {
+            EvaluationClassLoader.setClassPath(getClass().getClassLoader());
+            classPath.close();
+        }
+    }
+
+    /**
+     * Writes a jar with the bytecode of a class as the class file of
+     * {@link #JAR_CLASS}.
+     */
+    private static void writeJar(File jar, Class<?> content)
+            throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry(JAR_CLASS.replace('.', '/')
+                    + ".class"));
+            out.write(EvaluationClassLoader.readResource(content.getName()
+                    .replace('.', '/') + ".class"));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void oldestEntriesEvicted() throws Exception {
+        File directory = folder.newFolder();
+        EvaluationCache cache = new EvaluationCache(directory, 2);
+        for (String body : new String[] { "first", "second", "third" }) {
+            cache.store(logger, new MemoizingPropertyOracle(properties()),
+                    TYPE_KEY, dependencies(),
+                    Collections.<String, Long> emptyMap(), body);
+        }
+
+        File[] typeDirectories = directory.listFiles();
+        assertEquals(1, typeDirectories.length);
+        int entries = 0;
+        for (File file : typeDirectories[0].listFiles()) {
+            if (file.getName().endsWith(".properties")) {
+                entries++;
+            }
+        }
+        assertEquals(2, entries);
+        assertEquals(0, logger.getErrors().size());
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.client.DynamicPropertySource;
+import com.github.legioth.propertysource.fixtures.BasicDynamicPropertySource;
+import com.github.legioth.propertysource.fixtures.ReadingDynamicPropertySource;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger;
+
+public class EvaluationClassLoaderTest {
+    private final RecordingTreeLogger logger = new RecordingTreeLogger();
+
+    @Test
+    public void projectClassesDefinedByLoader() throws Exception {
+        EvaluationClassLoader loader = EvaluationClassLoader.get(logger);
+        Class<?> type = Class.forName(
+                BasicDynamicPropertySource.class.getName(), false, loader);
+
+        assertSame(loader, type.getClassLoader());
+        assertSame(DynamicPropertySource.class, type.getSuperclass());
+        assertEquals(EvaluationClassLoader.getCurrentChecksum(type.getName()),
+                loader.getChecksums().get(type.getName()));
+    }
+
+    @Test
+    public void sharedClassesDelegated() throws Exception {
+        EvaluationClassLoader loader = EvaluationClassLoader.get(logger);
+
+        assertSame(DynamicPropertySource.class, Class.forName(
+                DynamicPropertySource.class.getName(), false, loader));
+        assertFalse(loader.getChecksums().containsKey(
+                DynamicPropertySource.class.getName()));
+    }
+
+    @Test
+    public void unchangedLoaderReused() throws Exception {
+        EvaluationClassLoader loader = EvaluationClassLoader.get(logger);
+        Class.forName(BasicDynamicPropertySource.class.getName(), false,
+                loader);
+
+        assertSame(loader, EvaluationClassLoader.get(logger));
+    }
+
+    @Test
+    public void checksumsOfOneClassExcludeUnrelatedClasses() throws Exception {
+        EvaluationClassLoader loader = EvaluationClassLoader.get(logger);
+        String name = BasicDynamicPropertySource.class.getName();
+        Class.forName(name, false, loader);
+        Class.forName(ReadingDynamicPropertySource.class.getName(), false,
+                loader);
+
+        assertTrue(loader.getChecksums().containsKey(
+                ReadingDynamicPropertySource.class.getName()));
+        assertEquals(Collections.singleton(name), loader.getChecksums(name)
+                .keySet());
+    }
+}
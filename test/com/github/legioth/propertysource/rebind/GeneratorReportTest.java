@@ -0,0 +1,183 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Scanner;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.legioth.propertysource.fixtures.BasicPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.google.gwt.core.ext.LinkerContext;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.ConfigurationProperty;
+import com.google.gwt.core.ext.linker.SelectionProperty;
+
+public class GeneratorReportTest extends AbstractGeneratorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private InMemoryPropertyOracle basicProperties() {
+        return properties()
+                .setSelectionProperty("basic.string", "s1", "s2", "s3")
+                .setSelectionProperty("basic.bool", "true")
+                .setConfigurationProperty("basic.list", "a", "b")
+                .setConfigurationProperty(
+                        PropertySourceGenerator.REPORT_DIRECTORY_PROPERTY,
+                        getReportDirectory().getPath());
+    }
+
+    private File getReportDirectory() {
+        return new File(temporaryFolder.getRoot(), "report");
+    }
+
+    @Test
+    public void reportWrittenOnceByLinker() throws Exception {
+        for (InMemoryPropertyOracle permutation : basicProperties()
+                .getPermutations()) {
+            generate(BasicPropertySource.class, permutation);
+        }
+        assertFalse(getReportDirectory().exists());
+
+        new GeneratorReportLinker().link(logger, new ReportLinkerContext(
+                getReportDirectory().getPath()), getContext().getArtifacts(),
+                false);
+
+        String json = read(new File(getReportDirectory(),
+                "propertysource-report.json"));
+        assertTrue(json, json.contains("{\"type\": \""
+                + BasicPropertySource.class.getName()
+                + "\", \"invocations\": 3, \"evaluations\": 3"));
+        assertTrue(new File(getReportDirectory(),
+                "propertysource-report.csv").exists());
+    }
+
+    @Test
+    public void latestGeneratorReported() throws Exception {
+        generate(BasicPropertySource.class, basicProperties());
+        GeneratorReportArtifact previous = getContext().getArtifacts()
+                .find(GeneratorReportArtifact.class).first();
+
+        newCompile();
+        generate(BasicPropertySource.class, basicProperties());
+        getContext().commitArtifact(logger, previous);
+
+        SortedSet<GeneratorReportArtifact> reports = getContext()
+                .getArtifacts().find(GeneratorReportArtifact.class);
+        assertEquals(2, reports.size());
+        assertFalse(previous.equals(reports.last()));
+    }
+
+    @Test
+    public void noArtifactWithoutReportDirectory() throws Exception {
+        generate(BasicPropertySource.class, basicProperties()
+                .setConfigurationProperty(
+                        PropertySourceGenerator.REPORT_DIRECTORY_PROPERTY));
+
+        assertTrue(getContext().getArtifacts().isEmpty());
+    }
+
+    @Test
+    public void linkerSkippedWithoutReportDirectory() throws Exception {
+        generate(BasicPropertySource.class, basicProperties());
+        ArtifactSet artifacts = getContext().getArtifacts();
+
+        ArtifactSet result = new GeneratorReportLinker().link(logger,
+                new ReportLinkerContext(""), artifacts, false);
+
+        assertSame(artifacts, result);
+        assertFalse(getReportDirectory().exists());
+    }
+
+    private static String read(File file) throws Exception {
+        Scanner scanner = new Scanner(file, "UTF-8");
+        try {
+            return scanner.useDelimiter("\\A").next();
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * Linker context with only the report directory property.
+     */
+    private static class ReportLinkerContext implements LinkerContext {
+        private final String reportDirectory;
+
+        public ReportLinkerContext(String reportDirectory) {
+            this.reportDirectory = reportDirectory;
+        }
+
+        @Override
+        public SortedSet<ConfigurationProperty> getConfigurationProperties() {
+            SortedSet<ConfigurationProperty> properties = new TreeSet<ConfigurationProperty>(
+                    new Comparator<ConfigurationProperty>() {
+                        @Override
+                        public int compare(ConfigurationProperty o1,
+                                ConfigurationProperty o2) {
+                            return o1.getName().compareTo(o2.getName());
+                        }
+                    });
+            properties.add(new ConfigurationProperty() {
+                @Override
+                public String getName() {
+                    return PropertySourceGenerator.REPORT_DIRECTORY_PROPERTY;
+                }
+
+                @Override
+                public List<String> getValues() {
+                    return Arrays.asList(reportDirectory);
+                }
+
+                @Override
+                public boolean hasMultipleValues() {
+                    return false;
+                }
+            });
+            return properties;
+        }
+
+        @Override
+        public String getModuleFunctionName() {
+            return "test";
+        }
+
+        @Override
+        public long getModuleLastModified() {
+            return 0;
+        }
+
+        @Override
+        public String getModuleName() {
+            return "test";
+        }
+
+        @Override
+        public SortedSet<SelectionProperty> getProperties() {
+            return new TreeSet<SelectionProperty>();
+        }
+
+        @Override
+        public boolean isOutputCompact() {
+            return true;
+        }
+
+        @Override
+        public String optimizeJavaScript(TreeLogger logger, String jsProgram) {
+            return jsProgram;
+        }
+    }
+}
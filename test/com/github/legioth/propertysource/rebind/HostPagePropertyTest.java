@@ -0,0 +1,72 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.HostPagePropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+
+public class HostPagePropertyTest extends AbstractGeneratorTest {
+    private static final String PROPERTY_VALUES = "com.github.legioth.propertysource.client.impl.PropertyValues";
+
+    private static InMemoryPropertyOracle pageProperties() {
+        return properties().setSelectionProperty("page.flag", "true",
+                "false");
+    }
+
+    @Test
+    public void valueReadOnceAndRemembered() throws Exception {
+        String source = generateSource(HostPagePropertySource.class,
+                pageProperties());
+
+        assertEquals("if (!flagRead) { flagValue = " + PROPERTY_VALUES
+                + ".toBoolean(" + PROPERTY_VALUES + ".read(\"config\","
+                + " \"page.flag\", java.util.Collections.unmodifiableList("
+                + "java.util.Arrays.asList(\"true\"))),"
+                + " \"\", new String[] { }, false); flagRead = true; }"
+                + " return flagValue;", getMethodBody(source, "flag()"));
+        assertTrue(source, source.contains("private static boolean flagRead;"));
+    }
+
+    @Test
+    public void compileTimeValueUsedAsFallback() throws Exception {
+        String source = generateSource(HostPagePropertySource.class,
+                pageProperties().withSelectionValue("page.flag", "false"));
+
+        assertTrue(source, getMethodBody(source, "flag()").contains(
+                "\"page.flag\", java.util.Collections.unmodifiableList("
+                        + "java.util.Arrays.asList(\"false\"))"));
+    }
+
+    @Test
+    public void undefinedPropertyHasNoFallback() throws Exception {
+        String source = generateSource(HostPagePropertySource.class,
+                pageProperties());
+
+        assertTrue(source, getMethodBody(source, "count()").contains(
+                PROPERTY_VALUES + ".read(\"config\", \"page.count\", null)"));
+    }
+
+    @Test
+    public void argumentMethodRemembersValues() throws Exception {
+        String source = generateSource(HostPagePropertySource.class,
+                pageProperties());
+
+        assertTrue(source, getMethodBody(source,
+                "hasFlag(java.lang.String value)").endsWith(
+                "return hasFlagValues.contains(value);"));
+    }
+
+    @Test
+    public void intArgumentValuesNormalized() throws Exception {
+        String source = generateSource(HostPagePropertySource.class,
+                pageProperties());
+
+        assertTrue(source, getMethodBody(source, "hasCount(int value)")
+                .endsWith("return " + PROPERTY_VALUES
+                        + ".toIntValues(hasCountValues)"
+                        + ".contains(String.valueOf(value));"));
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.BasicPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.google.gwt.core.ext.RebindMode;
+import com.google.gwt.core.ext.RebindResult;
+
+public class IncrementalGenerationTest extends AbstractGeneratorTest {
+
+    private static InMemoryPropertyOracle basicProperties() {
+        return properties()
+                .setSelectionProperty("basic.string", "s1", "s2", "s3")
+                .setSelectionProperty("basic.bool", "true", "false")
+                .setConfigurationProperty("basic.list", "a", "b");
+    }
+
+    @Test
+    public void unchangedPropertiesReuseCachedResult() throws Exception {
+        RebindResult first = generate(BasicPropertySource.class,
+                basicProperties());
+        assertEquals(RebindMode.USE_ALL_NEW, first.getRebindMode());
+
+        newCompile();
+        getContext().setCachedResult(first);
+        RebindResult second = generate(BasicPropertySource.class,
+                basicProperties());
+
+        assertEquals(RebindMode.USE_ALL_CACHED, second.getRebindMode());
+        assertEquals(first.getResultTypeName(), second.getResultTypeName());
+    }
+
+    @Test
+    public void changedSelectionPropertyGeneratesNewClass() throws Exception {
+        RebindResult first = generate(BasicPropertySource.class,
+                basicProperties());
+
+        newCompile();
+        getContext().setCachedResult(first);
+        RebindResult second = generate(BasicPropertySource.class,
+                basicProperties().withSelectionValue("basic.string", "s3"));
+
+        assertEquals(RebindMode.USE_ALL_NEW, second.getRebindMode());
+        assertFalse(first.getResultTypeName().equals(
+                second.getResultTypeName()));
+    }
+
+    @Test
+    public void changedConfigurationPropertyGeneratesNewClass()
+            throws Exception {
+        RebindResult first = generate(BasicPropertySource.class,
+                basicProperties());
+
+        newCompile();
+        getContext().setCachedResult(first);
+        RebindResult second = generate(BasicPropertySource.class,
+                basicProperties().setConfigurationProperty("basic.list", "a"));
+
+        assertEquals(RebindMode.USE_ALL_NEW, second.getRebindMode());
+        assertFalse(first.getResultTypeName().equals(
+                second.getResultTypeName()));
+    }
+}
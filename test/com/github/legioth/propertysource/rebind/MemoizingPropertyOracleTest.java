@@ -0,0 +1,69 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger;
+
+public class MemoizingPropertyOracleTest {
+    private final RecordingTreeLogger logger = new RecordingTreeLogger();
+
+    private final InMemoryPropertyOracle properties = new InMemoryPropertyOracle()
+            .setSelectionProperty("selection", "a", "b")
+            .setConfigurationProperty("configuration", "x", "y");
+
+    private final MemoizingPropertyOracle oracle = new MemoizingPropertyOracle(
+            properties);
+
+    @Test
+    public void selectionPropertyLookedUpOnce() {
+        assertEquals("a",
+                oracle.getSelectionPropertyValue(logger, "selection"));
+        assertEquals("a",
+                oracle.getSelectionPropertyValue(logger, "selection"));
+        assertEquals(2, oracle.findSelectionProperty(logger, "selection")
+                .getPossibleValues().size());
+
+        assertEquals(1, properties.getLookupCount());
+    }
+
+    @Test
+    public void configurationPropertyLookedUpOnce() {
+        assertEquals(Arrays.asList("x", "y"),
+                oracle.getConfigurationPropertyValues("configuration"));
+        assertEquals("x",
+                oracle.getConfigurationPropertyValue("configuration"));
+
+        assertEquals(1, properties.getLookupCount());
+    }
+
+    @Test
+    public void missingPropertyLookedUpOnce() {
+        assertNull(oracle.getSelectionPropertyValue(logger, "missing"));
+        assertNull(oracle.getSelectionPropertyValue(logger, "missing"));
+        assertNull(oracle.getConfigurationPropertyValues("missing"));
+        assertNull(oracle.getConfigurationPropertyValues("missing"));
+
+        // One lookup for each kind of property
+        assertEquals(2, properties.getLookupCount());
+    }
+
+    @Test
+    public void nestedLookupsNotTimed() {
+        oracle.setNested(true);
+        try {
+            oracle.getSelectionPropertyValue(logger, "selection");
+            oracle.getConfigurationPropertyValues("configuration");
+        } finally {
+            oracle.setNested(false);
+        }
+
+        assertEquals(2, properties.getLookupCount());
+        assertEquals(0, oracle.getLookupNanos());
+    }
+}
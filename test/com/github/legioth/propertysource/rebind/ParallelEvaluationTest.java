@@ -0,0 +1,47 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.ReadingDynamicPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+public class ParallelEvaluationTest extends AbstractGeneratorTest {
+
+    private static InMemoryPropertyOracle readingProperties(String threads) {
+        return properties()
+                .setSelectionProperty("basic.string", "s2", "s1", "s3")
+                .setSelectionProperty("basic.bool", "true", "false")
+                .setConfigurationProperty("basic.list", "a", "b", "c")
+                .setConfigurationProperty("propertysource.evaluationThreads",
+                        threads);
+    }
+
+    @Test
+    public void parallelResultSameAsSequential() throws Exception {
+        String sequential = generateSource(ReadingDynamicPropertySource.class,
+                readingProperties("1"));
+
+        newCompile();
+        String parallel = generateSource(ReadingDynamicPropertySource.class,
+                readingProperties(" 4 "));
+
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void invalidThreadCountReported() {
+        try {
+            generate(ReadingDynamicPropertySource.class,
+                    readingProperties("many"));
+            fail("Should not accept a thread count that is not a number");
+        } catch (UnableToCompleteException e) {
+            assertEquals("Can not interpret many as the number of threads"
+                    + " for propertysource.evaluationThreads", logger
+                    .getErrors().get(0).getText());
+        }
+    }
+}
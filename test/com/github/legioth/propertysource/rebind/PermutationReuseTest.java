@@ -0,0 +1,101 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.BasicDynamicPropertySource;
+import com.github.legioth.propertysource.fixtures.BasicPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger.Message;
+import com.google.gwt.core.ext.RebindMode;
+import com.google.gwt.core.ext.RebindResult;
+import com.google.gwt.core.ext.SubsetFilteringPropertyOracle;
+import com.google.gwt.dev.cfg.RuleGenerateWith;
+import com.google.gwt.core.ext.TreeLogger.Type;
+
+public class PermutationReuseTest extends AbstractGeneratorTest {
+
+    private static InMemoryPropertyOracle basicProperties() {
+        return properties()
+                .setSelectionProperty("basic.string", "s1", "s2")
+                .setSelectionProperty("basic.bool", "true", "false")
+                .setSelectionProperty("unused", "x", "y")
+                .setConfigurationProperty("basic.list", "a", "b");
+    }
+
+    @Test
+    public void unusedPropertyReusesExistingClass() throws Exception {
+        RebindResult first = generate(BasicPropertySource.class,
+                basicProperties());
+        RebindResult second = generate(BasicPropertySource.class,
+                basicProperties().withSelectionValue("unused", "y"));
+
+        assertEquals(RebindMode.USE_ALL_NEW, first.getRebindMode());
+        assertEquals(RebindMode.USE_EXISTING, second.getRebindMode());
+        assertEquals(first.getResultTypeName(), second.getResultTypeName());
+        assertTrue(isReuseLogged(first.getResultTypeName()));
+    }
+
+    @Test
+    public void usedPropertyGeneratesNewClass() throws Exception {
+        RebindResult first = generate(BasicPropertySource.class,
+                basicProperties());
+        RebindResult second = generate(BasicPropertySource.class,
+                basicProperties().withSelectionValue("basic.string", "s2"));
+
+        assertEquals(RebindMode.USE_ALL_NEW, second.getRebindMode());
+        assertFalse(first.getResultTypeName().equals(
+                second.getResultTypeName()));
+    }
+
+    @Test
+    public void dynamicMethodNotRunForUnusedProperty() throws Exception {
+        RebindResult first = generate(BasicDynamicPropertySource.class,
+                basicProperties());
+        RebindResult second = generate(BasicDynamicPropertySource.class,
+                basicProperties().withSelectionValue("unused", "y")
+                        .withSelectionValue("basic.bool", "false"));
+
+        assertEquals(RebindMode.USE_EXISTING, second.getRebindMode());
+        assertEquals(first.getResultTypeName(), second.getResultTypeName());
+        assertTrue(isReuseLogged(first.getResultTypeName()));
+    }
+
+    @Test
+    public void propertiesLookedUpOncePerPermutation() throws Exception {
+        generate(BasicPropertySource.class, filtered(basicProperties()));
+        InMemoryPropertyOracle separate = basicProperties();
+        generate(BasicDynamicPropertySource.class, filtered(separate));
+
+        newCompile();
+        InMemoryPropertyOracle shared = basicProperties();
+        generate(BasicPropertySource.class, filtered(shared));
+        int lookupsBefore = shared.getLookupCount();
+        generate(BasicDynamicPropertySource.class, filtered(shared));
+
+        // e.g. basic.string was already looked up for the other type
+        assertTrue(shared.getLookupCount() - lookupsBefore < separate
+                .getLookupCount());
+    }
+
+    /**
+     * Wraps an oracle like GWT does for each generator call.
+     */
+    private static SubsetFilteringPropertyOracle filtered(
+            InMemoryPropertyOracle oracle) {
+        return new SubsetFilteringPropertyOracle(
+                RuleGenerateWith.ALL_PROPERTIES, oracle, "");
+    }
+
+    private boolean isReuseLogged(String className) {
+        for (Message message : logger.getMessages(Type.DEBUG)) {
+            if (message.getText().equals("Reusing " + className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.client.PropertySnapshot;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger;
+
+public class PropertyProxyImplTest {
+    private static final String RESOURCE = "com/github/legioth/propertysource/server/Matrix.gwt.xml";
+
+    private final RecordingTreeLogger logger = new RecordingTreeLogger();
+
+    private final Dependencies instanceDependencies = new Dependencies();
+    private final Dependencies methodDependencies = new Dependencies();
+
+    private final MemoizingPropertyOracle oracle = new MemoizingPropertyOracle(
+            new InMemoryPropertyOracle()
+                    .setSelectionProperty("selection", "a", "b")
+                    .setFallbackValue("selection", "b")
+                    .setConfigurationProperty("configuration", "x", "y"));
+
+    private final PropertyProxyImpl proxy = new PropertyProxyImpl(logger,
+            oracle, instanceDependencies);
+
+    @Test
+    public void readsRecordedForRunningMethod() {
+        proxy.setMethodDependencies(methodDependencies);
+        proxy.getSelectionPropertyValue("selection");
+        proxy.getConfigurationPropertyValues("configuration");
+        proxy.setMethodDependencies(null);
+
+        assertEquals(Collections.singleton("selection"),
+                methodDependencies.getSelectionProperties());
+        assertEquals(Collections.singleton("configuration"),
+                methodDependencies.getConfigurationProperties());
+        assertTrue(instanceDependencies.getSelectionProperties().isEmpty());
+        assertTrue(instanceDependencies.getConfigurationProperties()
+                .isEmpty());
+    }
+
+    @Test
+    public void readsOutsideMethodRecordedForInstance() {
+        proxy.getSelectionPropertyValue("selection");
+
+        assertEquals(Collections.singleton("selection"),
+                instanceDependencies.getSelectionProperties());
+    }
+
+    @Test
+    public void fallbackNotRecordedAsCurrentValue() {
+        proxy.setMethodDependencies(methodDependencies);
+        assertEquals("b", proxy.getSelectionPropertyFallback("selection"));
+
+        assertEquals(Collections.singleton("selection"),
+                methodDependencies.getFallbackProperties());
+        assertTrue(methodDependencies.getSelectionProperties().isEmpty());
+    }
+
+    @Test
+    public void resourceRecordedWithChecksum() {
+        proxy.setMethodDependencies(methodDependencies);
+        String content = proxy.readResource(RESOURCE);
+
+        assertTrue(content.contains("basic.string"));
+        assertEquals(Collections.singletonMap(RESOURCE,
+                EvaluationClassLoader.getResourceChecksum(RESOURCE)),
+                methodDependencies.getResources());
+    }
+
+    @Test
+    public void missingResourceRecorded() {
+        proxy.setMethodDependencies(methodDependencies);
+
+        assertNull(proxy.readResource("missing.txt"));
+        assertTrue(methodDependencies.getResources().containsKey(
+                "missing.txt"));
+        assertNull(methodDependencies.getResources().get("missing.txt"));
+    }
+
+    @Test
+    public void snapshotHasCurrentValues() {
+        PropertySnapshot snapshot = proxy.getSnapshot(new String[] {
+                "configuration", "selection", "undefined" });
+
+        assertEquals(Arrays.asList("configuration", "selection"),
+                Arrays.asList(snapshot.getNames().toArray()));
+        assertEquals("a", snapshot.getValue("selection"));
+        assertEquals(Arrays.asList("x", "y"),
+                snapshot.getValues("configuration"));
+        assertFalse(snapshot.contains("undefined"));
+        try {
+            snapshot.getValue("configuration");
+            fail("Should not get one value of many");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Property configuration does not have exactly"
+                    + " one value", e.getMessage());
+        }
+    }
+
+    @Test
+    public void snapshotIsImmutable() {
+        PropertySnapshot snapshot = proxy
+                .getSnapshot(new String[] { "configuration" });
+        try {
+            snapshot.getValues("configuration").add("z");
+            fail("Should not modify the values");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+        try {
+            snapshot.asMap().remove("configuration");
+            fail("Should not modify the snapshot");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void snapshotSharedAndRecordedForEveryMethod() {
+        String[] names = { "selection", "configuration" };
+        proxy.setMethodDependencies(methodDependencies);
+        PropertySnapshot first = proxy.getSnapshot(names);
+
+        Dependencies otherDependencies = new Dependencies();
+        proxy.setMethodDependencies(otherDependencies);
+        PropertySnapshot second = proxy.getSnapshot(names.clone());
+
+        assertSame(first, second);
+        for (Dependencies dependencies : Arrays.asList(methodDependencies,
+                otherDependencies)) {
+            assertEquals(Collections.singleton("selection"),
+                    dependencies.getSelectionProperties());
+            assertEquals(Collections.singleton("configuration"),
+                    dependencies.getConfigurationProperties());
+        }
+    }
+
+    @Test
+    public void snapshotSharedBetweenTypesOfPermutation() {
+        String[] names = { "selection", "configuration" };
+        Dependencies otherDependencies = new Dependencies();
+        PropertyProxyImpl otherProxy = new PropertyProxyImpl(logger, oracle,
+                otherDependencies);
+
+        assertSame(proxy.getSnapshot(names), otherProxy.getSnapshot(names));
+        assertEquals(Collections.singleton("selection"),
+                otherDependencies.getSelectionProperties());
+    }
+}
@@ -0,0 +1,107 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.BasicPropertySource;
+import com.github.legioth.propertysource.fixtures.UnsupportedArgumentPropertySource;
+import com.github.legioth.propertysource.fixtures.UnsupportedPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger.Message;
+import com.google.gwt.core.ext.TreeLogger.Type;
+import com.google.gwt.core.ext.UnableToCompleteException;
+import com.google.gwt.core.ext.typeinfo.JClassType;
+
+public class PropertySourceModelTest extends AbstractGeneratorTest {
+
+    private static JClassType findType(Class<?> type) {
+        return getTypeOracle().findType(type.getCanonicalName());
+    }
+
+    @Test
+    public void methodsInDeclarationOrder() throws Exception {
+        PropertySourceModel model = PropertySourceModel.create(logger,
+                findType(BasicPropertySource.class));
+
+        List<String> methodNames = new ArrayList<String>();
+        for (MethodModel method : model.getMethods()) {
+            methodNames.add(method.getMethod().getName());
+        }
+        assertEquals(Arrays.asList("string", "bool", "list", "isString1or2"),
+                methodNames);
+    }
+
+    @Test
+    public void propertyNamesSortedAndUnique() throws Exception {
+        PropertySourceModel model = PropertySourceModel.create(logger,
+                findType(BasicPropertySource.class));
+
+        assertEquals(
+                Arrays.asList("basic.bool", "basic.list", "basic.string"),
+                new ArrayList<String>(model.getPropertyNames()));
+        assertFalse(model.hasDynamicMethods());
+    }
+
+    @Test
+    public void unsupportedReturnTypeIsReported() {
+        try {
+            PropertySourceModel.create(logger,
+                    findType(UnsupportedPropertySource.class));
+            fail("Should not accept Object as return type");
+        } catch (UnableToCompleteException e) {
+            List<Message> errors = logger.getErrors();
+            assertEquals(1, errors.size());
+            assertEquals("java.lang.Object is not supported", errors.get(0)
+                    .getText());
+        }
+    }
+
+    @Test
+    public void unsupportedArgumentReturnTypeIsReported() {
+        try {
+            PropertySourceModel.create(logger,
+                    findType(UnsupportedArgumentPropertySource.class));
+            fail("Should not accept int as return type with an argument");
+        } catch (UnableToCompleteException e) {
+            assertEquals("int is not supported for methods with an argument."
+                    + " Only boolean and String are supported.", logger
+                    .getErrors().get(0).getText());
+        }
+    }
+
+    @Test
+    public void typeAnalyzedOncePerCompile() throws Exception {
+        InMemoryPropertyOracle properties = properties()
+                .setSelectionProperty("basic.string", "s1", "s2")
+                .setSelectionProperty("basic.bool", "true", "false")
+                .setConfigurationProperty("basic.list", "a", "b");
+        for (InMemoryPropertyOracle permutation : properties
+                .getPermutations()) {
+            generate(BasicPropertySource.class, permutation);
+        }
+
+        assertEquals(1, countAnalyses());
+
+        newCompile();
+        generate(BasicPropertySource.class, properties);
+        assertEquals(2, countAnalyses());
+    }
+
+    private int countAnalyses() {
+        String text = "Analyzing " + BasicPropertySource.class.getName();
+        int count = 0;
+        for (Message message : logger.getMessages(Type.DEBUG)) {
+            if (text.equals(message.getText())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,145 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+import com.github.legioth.propertysource.fixtures.BasicPropertySource;
+import com.github.legioth.propertysource.fixtures.LookupPropertySource;
+import com.github.legioth.propertysource.fixtures.NumericPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+
+public class ReturnTypesTest extends AbstractGeneratorTest {
+
+    private static InMemoryPropertyOracle basicProperties() {
+        return properties().setSelectionProperty("basic.string", "s1")
+                .setSelectionProperty("basic.bool", "true")
+                .setConfigurationProperty("basic.list", "a", "b");
+    }
+
+    private static InMemoryPropertyOracle numericProperties() {
+        return properties().setConfigurationProperty("numeric.count", " 42 ")
+                .setConfigurationProperty("numeric.size", "5000000000")
+                .setConfigurationProperty("numeric.ratio", "0.5")
+                .setConfigurationProperty("numeric.separator", "'")
+                .setConfigurationProperty("numeric.boxed", "-1")
+                .setSelectionProperty("numeric.mode", "SAFE", "FAST");
+    }
+
+    private static InMemoryPropertyOracle lookupProperties() {
+        return properties().setConfigurationProperty("lookup.set", "a", "b")
+                .setConfigurationProperty("lookup.map", "a=1", "b=2")
+                .setConfigurationProperty("lookup.numbers", "1", "01", "3")
+                .setConfigurationProperty("lookup.labels", "1=one", "01=first",
+                        "2=two");
+    }
+
+    @Test
+    public void listReturnsConstant() throws Exception {
+        String source = generateSource(BasicPropertySource.class,
+                basicProperties());
+
+        assertEquals("return listValue;",
+                getMethodBody(source, "list()"));
+        assertTrue(source, source.contains("private static final"
+                + " java.util.List<java.lang.String> listValue ="
+                + " java.util.Collections.unmodifiableList("
+                + "java.util.Arrays.asList(\"a\",\"b\"));"));
+    }
+
+    @Test
+    public void primitivesReturnLiterals() throws Exception {
+        String source = generateSource(NumericPropertySource.class,
+                numericProperties());
+
+        assertEquals("return 42;", getMethodBody(source, "count()"));
+        assertEquals("return 5000000000L;", getMethodBody(source, "size()"));
+        assertEquals("return 0.5d;", getMethodBody(source, "ratio()"));
+        assertEquals("return (char) 39;",
+                getMethodBody(source, "separator()"));
+        assertEquals("return -1;", getMethodBody(source, "boxed()"));
+    }
+
+    @Test
+    public void enumReturnsConstant() throws Exception {
+        String source = generateSource(NumericPropertySource.class,
+                numericProperties());
+
+        assertEquals("return com.github.legioth.propertysource.fixtures"
+                + ".NumericPropertySource.Mode.SAFE;",
+                getMethodBody(source, "mode()"));
+        assertFalse(source, source.contains("valueOf"));
+    }
+
+    @Test
+    public void invalidNumberReported() {
+        try {
+            generate(NumericPropertySource.class, numericProperties()
+                    .setConfigurationProperty("numeric.count", "many"));
+            fail("Should not accept a value that is not a number");
+        } catch (UnableToCompleteException e) {
+            assertEquals("Can not interpret many as int", logger.getErrors()
+                    .get(0).getText());
+        }
+    }
+
+    @Test
+    public void unknownEnumConstantReported() {
+        try {
+            generate(NumericPropertySource.class, numericProperties()
+                    .setSelectionProperty("numeric.mode", "SLOW"));
+            fail("Should not accept a value that is not a constant");
+        } catch (UnableToCompleteException e) {
+            assertEquals("Can not interpret SLOW as NumericPropertySource.Mode",
+                    logger.getErrors().get(0).getText());
+        }
+    }
+
+    @Test
+    public void mapReturnsConstant() throws Exception {
+        String source = generateSource(LookupPropertySource.class,
+                lookupProperties());
+
+        assertEquals("return mapValue;", getMethodBody(source, "map()"));
+        assertTrue(source, source.contains("private static final"
+                + " java.util.Map<java.lang.String, java.lang.String>"
+                + " mapValue = com.github.legioth.propertysource.client.impl.PropertyValues"
+                + ".map(\"a\",\"1\",\"b\",\"2\");"));
+    }
+
+    @Test
+    public void containsUsesSwitch() throws Exception {
+        String source = generateSource(LookupPropertySource.class,
+                lookupProperties());
+
+        assertEquals("switch (number) { case 1: case 3: return true; }"
+                + " return false;",
+                getMethodBody(source, "hasNumber(int number)"));
+    }
+
+    @Test
+    public void intArgumentValuesTrimmed() throws Exception {
+        String source = generateSource(LookupPropertySource.class,
+                lookupProperties().setConfigurationProperty("lookup.numbers",
+                        " 2 ", "4"));
+
+        assertEquals("switch (number) { case 2: case 4: return true; }"
+                + " return false;",
+                getMethodBody(source, "hasNumber(int number)"));
+    }
+
+    @Test
+    public void equalIntKeysUseLastEntry() throws Exception {
+        String source = generateSource(LookupPropertySource.class,
+                lookupProperties());
+
+        assertEquals("switch (number) { case 1: return \"first\";"
+                + " case 2: return \"two\"; } return null;",
+                getMethodBody(source, "getLabel(int number)"));
+    }
+}
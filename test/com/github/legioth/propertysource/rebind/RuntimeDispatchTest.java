@@ -0,0 +1,82 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.RuntimeDispatchPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+public class RuntimeDispatchTest extends AbstractGeneratorTest {
+
+    private static InMemoryPropertyOracle dispatchProperties() {
+        return properties().setSelectionProperty("dispatch.mode", "a", "b",
+                "c");
+    }
+
+    @Test
+    public void propertyReadOnceForSwitch() throws Exception {
+        String source = generateSource(RuntimeDispatchPropertySource.class,
+                dispatchProperties());
+
+        assertEquals("String runtimeValue = getRuntimeProperty0();"
+                + " switch (runtimeValue) {"
+                + " case \"a\": return \"a\";"
+                + " case \"b\": return \"b\"; }"
+                + " return \"c\";", getMethodBody(source, "mode()"));
+    }
+
+    @Test
+    public void localDoesNotHideParameter() throws Exception {
+        String source = generateSource(RuntimeDispatchPropertySource.class,
+                dispatchProperties());
+
+        String body = getMethodBody(source,
+                "isMode(java.lang.String runtimeValue)");
+        assertEquals("String runtimeValue_ = getRuntimeProperty0();"
+                + " switch (runtimeValue_) {"
+                + " case \"a\": if (runtimeValue != null) {"
+                + " switch (runtimeValue) { case \"a\": return true; } }"
+                + " return false;",
+                body.substring(0, body.indexOf(" case \"b\"")));
+    }
+
+    @Test
+    public void sameClassForEveryValue() throws Exception {
+        String first = generate(RuntimeDispatchPropertySource.class,
+                dispatchProperties()).getResultTypeName();
+        for (InMemoryPropertyOracle permutation : dispatchProperties()
+                .getPermutations()) {
+            assertEquals(first, generate(RuntimeDispatchPropertySource.class,
+                    permutation).getResultTypeName());
+        }
+    }
+
+    @Test
+    public void runtimePropertiesTypeGenerated() throws Exception {
+        generate(RuntimeDispatchPropertySource.class, dispatchProperties());
+
+        String source = getContext().getGeneratedSource(
+                RuntimeDispatchPropertySource.class.getName()
+                        + "_RuntimeProperties");
+        assertTrue(source, source.contains("@com.github.legioth.propertysource"
+                + ".client.annotations.Property(\"dispatch.mode\")"));
+        assertTrue(source, source.contains("String property0();"));
+    }
+
+    @Test
+    public void configurationPropertyReported() {
+        try {
+            generate(RuntimeDispatchPropertySource.class, properties()
+                    .setConfigurationProperty("dispatch.mode", "a"));
+            fail("Should not dispatch on a configuration property");
+        } catch (UnableToCompleteException e) {
+            assertEquals("Selection property dispatch.mode not found."
+                    + " Runtime dispatch is only supported for selection"
+                    + " properties.", logger.getErrors().get(0).getText());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.legioth.propertysource.rebind;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.NumericPropertySource;
+import com.github.legioth.propertysource.testing.InMemoryPropertyOracle;
+import com.github.legioth.propertysource.testing.RecordingTreeLogger.Message;
+import com.google.gwt.core.ext.UnableToCompleteException;
+
+public class ValueValidationTest extends AbstractGeneratorTest {
+    private static final String SUMMARY = "Invalid property values for "
+            + NumericPropertySource.class.getCanonicalName()
+            + ", set propertysource.validateAllValues to false to only check"
+            + " the values that are compiled";
+    private static final String INVALID_MODE = "Can not interpret SLOW as"
+            + " NumericPropertySource.Mode";
+
+    // The current value is valid, but another permutation has an invalid one
+    private static InMemoryPropertyOracle numericProperties() {
+        return properties().setConfigurationProperty("numeric.count", "1")
+                .setConfigurationProperty("numeric.size", "2")
+                .setConfigurationProperty("numeric.ratio", "0.5")
+                .setConfigurationProperty("numeric.separator", ",")
+                .setConfigurationProperty("numeric.boxed", "3")
+                .setSelectionProperty("numeric.mode", "FAST", "SAFE", "SLOW");
+    }
+
+    private List<String> getErrorTexts() {
+        List<String> texts = new ArrayList<String>();
+        for (Message message : logger.getErrors()) {
+            texts.add(message.getText());
+        }
+        return texts;
+    }
+
+    @Test
+    public void invalidValueOfOtherPermutationReported() {
+        try {
+            generate(NumericPropertySource.class, numericProperties());
+            fail("Should validate the values of all permutations");
+        } catch (UnableToCompleteException e) {
+            List<String> errors = getErrorTexts();
+            assertTrue(errors.toString(), errors.contains(INVALID_MODE));
+            assertEquals(SUMMARY, errors.get(errors.size() - 1));
+        }
+    }
+
+    @Test
+    public void allInvalidValuesReported() {
+        try {
+            generate(NumericPropertySource.class, numericProperties()
+                    .setConfigurationProperty("numeric.count", "many"));
+            fail("Should validate the values of all permutations");
+        } catch (UnableToCompleteException e) {
+            List<String> errors = getErrorTexts();
+            assertTrue(errors.toString(),
+                    errors.contains("Can not interpret many as int"));
+            assertTrue(errors.toString(), errors.contains(INVALID_MODE));
+        }
+    }
+
+    @Test
+    public void validationCanBeDisabled() throws Exception {
+        String source = generateSource(NumericPropertySource.class,
+                numericProperties().setConfigurationProperty(
+                        "propertysource.validateAllValues", "false"));
+
+        assertEquals("return 1;", getMethodBody(source, "count()"));
+        assertTrue(logger.getErrors().isEmpty());
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.legioth.propertysource.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.BasicPropertySource;
+import com.google.gwt.core.shared.GWT;
+
+public class PermutationMatrixTest {
+    private static final String MODULE = "com.github.legioth.propertysource.server.Matrix";
+    private static final String CONDITIONAL_MODULE = "com.github.legioth.propertysource.server.ConditionalMatrix";
+
+    @Test
+    public void permutationsFromModule() {
+        List<Map<String, List<String>>> permutations = PermutationMatrix
+                .forModule(MODULE).getPermutations();
+
+        assertEquals(4, permutations.size());
+        for (Map<String, List<String>> permutation : permutations) {
+            assertEquals(Arrays.asList("a", "b"),
+                    permutation.get("basic.list"));
+        }
+        assertEquals(Collections.singletonList("false"), permutations.get(1)
+                .get("basic.bool"));
+    }
+
+    @Test
+    public void testRunWithPermutationValues() {
+        final Set<String> tested = Collections
+                .newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        PermutationMatrix.forModule(MODULE).run(new PermutationMatrix.Test() {
+            @Override
+            public void run(Map<String, List<String>> properties) {
+                BasicPropertySource source = GWT
+                        .create(BasicPropertySource.class);
+                assertEquals(properties.get("basic.string").get(0),
+                        source.string());
+                tested.add(source.string() + " " + source.bool());
+            }
+        });
+
+        assertEquals(4, tested.size());
+    }
+
+    @Test
+    public void failedPermutationsListed() {
+        try {
+            PermutationMatrix.forModule(MODULE).restrict("basic.bool", "true")
+                    .run(new PermutationMatrix.Test() {
+                        @Override
+                        public void run(Map<String, List<String>> properties) {
+                            BasicPropertySource source = GWT
+                                    .create(BasicPropertySource.class);
+                            assertEquals("s1", source.string());
+                        }
+                    });
+            fail("Should fail for s2");
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith(
+                    "1 of 2 permutations failed:\nbasic.string=s2,"
+                            + " basic.bool=true: "));
+        }
+    }
+
+    @Test
+    public void conditionalSetPropertyRejected() {
+        PermutationMatrix matrix = PermutationMatrix
+                .forModule(CONDITIONAL_MODULE);
+        try {
+            matrix.getPermutations();
+            fail("Should not ignore a conditional <set-property>");
+        } catch (IllegalStateException e) {
+            assertEquals("Conditional <set-property> is not supported."
+                    + " Use restrict() to choose the values to test for"
+                    + " [basic.string]", e.getMessage());
+        }
+
+        assertEquals(2, matrix.restrict("basic.string", "s1")
+                .getPermutations().size());
+    }
+
+    @Test
+    public void previousBridgeRestored() {
+        PropertySourceBridge.Installation installation = PropertySourceBridge
+                .install();
+        PropertySources.bind(PermutationMatrix.forModule(MODULE)
+                .getPermutations().get(0));
+        try {
+            BasicPropertySource source = GWT.create(BasicPropertySource.class);
+            assertEquals("s1", source.string());
+        } finally {
+            PropertySources.bind(null);
+            installation.close();
+        }
+
+        try {
+            GWT.create(BasicPropertySource.class);
+            fail("Should not have a bridge");
+        } catch (UnsupportedOperationException expected) {
+            // GWT.create is not supported without a bridge
+        }
+    }
+}
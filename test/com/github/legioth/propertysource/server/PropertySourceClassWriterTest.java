@@ -0,0 +1,284 @@
+package com.github.legioth.propertysource.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.Test;
+
+import com.github.legioth.propertysource.client.impl.PropertyValues;
+
+public class PropertySourceClassWriterTest {
+
+    public enum Mode {
+        SAFE, FAST
+    }
+
+    public interface Constants {
+        public boolean bool();
+
+        public char character();
+
+        public byte byteValue();
+
+        public short shortValue();
+
+        public int intValue();
+
+        public long longValue();
+
+        public float floatValue();
+
+        public double doubleValue();
+
+        public String string();
+
+        public String longString();
+
+        public Mode mode();
+
+        public Integer boxed();
+
+        public List<String> list();
+    }
+
+    public interface Lookups {
+        public boolean contains(String value);
+
+        public boolean hasNumber(int number);
+
+        public boolean hasMode(Mode mode);
+
+        public String get(String key);
+
+        public String getByNumber(int number);
+
+        public String getByMode(Mode mode);
+    }
+
+    public interface Delegated {
+        public void run();
+
+        public String join(String a, long b, double c, float d, int e,
+                boolean f);
+
+        public long longValue(long value);
+
+        public double doubleValue(double value);
+
+        public float floatValue(float value);
+
+        public int intValue(int value);
+
+        public boolean bool(boolean value);
+    }
+
+    private static Method method(Class<?> type, String name) {
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name)) {
+                return method;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static PropertySourceClassWriter writer(Class<?> type) {
+        return new PropertySourceClassWriter(type.getName() + "Impl", type);
+    }
+
+    @Test
+    public void constantMethodsReturnValues() throws Exception {
+        char[] chars = new char[30000];
+        Arrays.fill(chars, 'x');
+        String longString = new String(chars);
+        List<String> list = Collections.unmodifiableList(Arrays.asList("a",
+                "b"));
+
+        PropertySourceClassWriter writer = writer(Constants.class);
+        writer.writeConstantMethod(method(Constants.class, "bool"),
+                Boolean.TRUE);
+        writer.writeConstantMethod(method(Constants.class, "character"),
+                Character.valueOf('\''));
+        writer.writeConstantMethod(method(Constants.class, "byteValue"),
+                Byte.valueOf((byte) -5));
+        writer.writeConstantMethod(method(Constants.class, "shortValue"),
+                Short.valueOf((short) 1000));
+        writer.writeConstantMethod(method(Constants.class, "intValue"),
+                Integer.valueOf(Integer.MIN_VALUE));
+        writer.writeConstantMethod(method(Constants.class, "longValue"),
+                Long.valueOf(5000000000L));
+        writer.writeConstantMethod(method(Constants.class, "floatValue"),
+                Float.valueOf(0.25f));
+        writer.writeConstantMethod(method(Constants.class, "doubleValue"),
+                Double.valueOf(0.5));
+        writer.writeConstantMethod(method(Constants.class, "string"), "s");
+        writer.writeConstantMethod(method(Constants.class, "longString"),
+                longString);
+        writer.writeConstantMethod(method(Constants.class, "mode"),
+                Mode.FAST);
+        writer.writeConstantMethod(method(Constants.class, "boxed"),
+                Integer.valueOf(-1));
+        writer.writeConstantMethod(method(Constants.class, "list"), list);
+        writer.writeToString("constants");
+
+        Constants constants = (Constants) writer.newInstance();
+
+        assertTrue(constants.bool());
+        assertEquals('\'', constants.character());
+        assertEquals(-5, constants.byteValue());
+        assertEquals(1000, constants.shortValue());
+        assertEquals(Integer.MIN_VALUE, constants.intValue());
+        assertEquals(5000000000L, constants.longValue());
+        assertEquals(0.25f, constants.floatValue(), 0);
+        assertEquals(0.5, constants.doubleValue(), 0);
+        assertEquals("s", constants.string());
+        assertEquals(longString, constants.longString());
+        assertSame(Mode.FAST, constants.mode());
+        assertEquals(Integer.valueOf(-1), constants.boxed());
+        assertSame(list, constants.list());
+        assertEquals("constants", constants.toString());
+    }
+
+    @Test
+    public void lookupMethodsUseArgument() throws Exception {
+        PropertySourceClassWriter writer = writer(Lookups.class);
+        writer.writeLookupMethod(method(Lookups.class, "contains"),
+                new HashSet<String>(Arrays.asList("a", "b")));
+        writer.writeLookupMethod(method(Lookups.class, "hasNumber"),
+                new HashSet<String>(Arrays.asList("1", "-3")));
+        writer.writeLookupMethod(method(Lookups.class, "hasMode"),
+                new HashSet<String>(Arrays.asList("SAFE")));
+        writer.writeLookupMethod(method(Lookups.class, "get"),
+                PropertyValues.map("a", "1"));
+        writer.writeLookupMethod(method(Lookups.class, "getByNumber"),
+                PropertyValues.map("2", "two"));
+        writer.writeLookupMethod(method(Lookups.class, "getByMode"),
+                PropertyValues.map("FAST", "fast"));
+
+        Lookups lookups = (Lookups) writer.newInstance();
+
+        assertTrue(lookups.contains("a"));
+        assertFalse(lookups.contains("c"));
+        assertFalse(lookups.contains(null));
+        assertTrue(lookups.hasNumber(-3));
+        assertFalse(lookups.hasNumber(3));
+        assertTrue(lookups.hasMode(Mode.SAFE));
+        assertFalse(lookups.hasMode(Mode.FAST));
+        assertFalse(lookups.hasMode(null));
+        assertEquals("1", lookups.get("a"));
+        assertNull(lookups.get("b"));
+        assertEquals("two", lookups.getByNumber(2));
+        assertNull(lookups.getByNumber(1));
+        assertEquals("fast", lookups.getByMode(Mode.FAST));
+        assertNull(lookups.getByMode(null));
+    }
+
+    @Test
+    public void delegatingMethodsPassArguments() throws Exception {
+        final int[] runCount = new int[1];
+        final Delegated target = new Delegated() {
+            @Override
+            public void run() {
+                runCount[0]++;
+            }
+
+            @Override
+            public String join(String a, long b, double c, float d, int e,
+                    boolean f) {
+                return a + b + c + d + e + f;
+            }
+
+            @Override
+            public long longValue(long value) {
+                return value + 1;
+            }
+
+            @Override
+            public double doubleValue(double value) {
+                return value / 2;
+            }
+
+            @Override
+            public float floatValue(float value) {
+                return value * 2;
+            }
+
+            @Override
+            public int intValue(int value) {
+                return -value;
+            }
+
+            @Override
+            public boolean bool(boolean value) {
+                return !value;
+            }
+        };
+        Callable<Delegated> callable = new Callable<Delegated>() {
+            @Override
+            public Delegated call() {
+                return target;
+            }
+        };
+
+        PropertySourceClassWriter writer = writer(Delegated.class);
+        for (Method method : Delegated.class.getMethods()) {
+            writer.writeDelegatingMethod(method, callable);
+        }
+        Delegated delegated = (Delegated) writer.newInstance();
+
+        delegated.run();
+        assertEquals(1, runCount[0]);
+        assertEquals("a20.53.045true",
+                delegated.join("a", 2, 0.5, 3, 45, true));
+        assertEquals(5000000001L, delegated.longValue(5000000000L));
+        assertEquals(0.25, delegated.doubleValue(0.5), 0);
+        assertEquals(1.5f, delegated.floatValue(0.75f), 0);
+        assertEquals(-7, delegated.intValue(7));
+        assertFalse(delegated.bool(true));
+    }
+
+    @Test
+    public void delegatingMethodPassesExceptions() throws Exception {
+        final IllegalStateException exception = new IllegalStateException();
+        Callable<Delegated> callable = new Callable<Delegated>() {
+            @Override
+            public Delegated call() {
+                throw exception;
+            }
+        };
+
+        PropertySourceClassWriter writer = writer(Delegated.class);
+        writer.writeDelegatingMethod(method(Delegated.class, "run"),
+                callable);
+        Delegated delegated = (Delegated) writer.newInstance();
+
+        try {
+            delegated.run();
+            fail("Should pass on the exception");
+        } catch (IllegalStateException e) {
+            assertSame(exception, e);
+        }
+    }
+
+    @Test
+    public void longToStringTruncated() throws Exception {
+        char[] chars = new char[30000];
+        Arrays.fill(chars, 'y');
+
+        PropertySourceClassWriter writer = writer(Lookups.class);
+        writer.writeToString(new String(chars));
+        Object instance = writer.newInstance();
+
+        assertEquals(0xffff / 3, instance.toString().length());
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.legioth.propertysource.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.github.legioth.propertysource.fixtures.BasicPropertySource;
+import com.github.legioth.propertysource.fixtures.LookupPropertySource;
+import com.github.legioth.propertysource.fixtures.NumericPropertySource;
+import com.github.legioth.propertysource.fixtures.NumericPropertySource.Mode;
+
+public class PropertySourcesTest {
+
+    private static Map<String, List<String>> basicProperties(String string) {
+        Map<String, List<String>> properties = new HashMap<String, List<String>>();
+        properties.put("basic.string", Arrays.asList(string));
+        properties.put("basic.bool", Arrays.asList("true"));
+        properties.put("basic.list", Arrays.asList("a", "b"));
+        return properties;
+    }
+
+    @After
+    public void unbind() {
+        PropertySources.bind(null);
+    }
+
+    @Test
+    public void valuesReturnedFromGeneratedClass() {
+        BasicPropertySource source = PropertySources.create(
+                BasicPropertySource.class, basicProperties("s1"));
+
+        assertEquals("s1", source.string());
+        assertTrue(source.bool());
+        assertEquals(Arrays.asList("a", "b"), source.list());
+        assertTrue(source.isString1or2());
+
+        assertFalse(Proxy.isProxyClass(source.getClass()));
+        // Only the list is not a constant
+        assertEquals(1, source.getClass().getDeclaredFields().length);
+    }
+
+    @Test
+    public void sameValuesShareInstance() {
+        BasicPropertySource first = PropertySources.create(
+                BasicPropertySource.class, basicProperties("s1"));
+
+        assertSame(first, PropertySources.create(BasicPropertySource.class,
+                basicProperties("s1")));
+        assertNotSame(first, PropertySources.create(
+                BasicPropertySource.class, basicProperties("s3")));
+    }
+
+    @Test
+    public void changedValuesDoNotAffectSharedInstance() {
+        Map<String, List<String>> properties = basicProperties("s1");
+        List<String> list = new ArrayList<String>(Arrays.asList("a", "b"));
+        properties.put("basic.list", list);
+        BasicPropertySource first = PropertySources.create(
+                BasicPropertySource.class, properties);
+
+        list.add("c");
+
+        assertSame(first, PropertySources.create(BasicPropertySource.class,
+                basicProperties("s1")));
+        assertEquals(Arrays.asList("a", "b"), first.list());
+    }
+
+    @Test
+    public void leastRecentlyUsedInstancesDropped() {
+        BasicPropertySource first = PropertySources.create(
+                BasicPropertySource.class, basicProperties("s1"));
+        for (int i = 0; i < 256; i++) {
+            PropertySources.create(BasicPropertySource.class,
+                    basicProperties("s1." + i));
+        }
+
+        assertNotSame(first, PropertySources.create(
+                BasicPropertySource.class, basicProperties("s1")));
+    }
+
+    @Test
+    public void primitivesAndEnums() {
+        Map<String, List<String>> properties = new HashMap<String, List<String>>();
+        properties.put("numeric.count", Arrays.asList(" 42 "));
+        properties.put("numeric.size", Arrays.asList("5000000000"));
+        properties.put("numeric.ratio", Arrays.asList("0.5"));
+        properties.put("numeric.separator", Arrays.asList("'"));
+        properties.put("numeric.boxed", Arrays.asList("-1"));
+        properties.put("numeric.mode", Arrays.asList("SAFE"));
+
+        NumericPropertySource source = PropertySources.create(
+                NumericPropertySource.class, properties);
+
+        assertEquals(42, source.count());
+        assertEquals(5000000000L, source.size());
+        assertEquals(0.5, source.ratio(), 0);
+        assertEquals('\'', source.separator());
+        assertEquals(Integer.valueOf(-1), source.boxed());
+        assertSame(Mode.SAFE, source.mode());
+    }
+
+    @Test
+    public void lookupMethods() {
+        Map<String, List<String>> properties = new HashMap<String, List<String>>();
+        properties.put("lookup.set", Arrays.asList("a", "b"));
+        properties.put("lookup.map", Arrays.asList("a=1", "b=2"));
+        properties.put("lookup.numbers", Arrays.asList("01", "3"));
+        properties.put("lookup.labels", Arrays.asList("1=one", "01=first"));
+
+        LookupPropertySource source = PropertySources.create(
+                LookupPropertySource.class, properties);
+
+        assertTrue(source.contains("a"));
+        assertFalse(source.contains("c"));
+        assertFalse(source.contains(null));
+        assertEquals("2", source.get("b"));
+        assertNull(source.get("c"));
+        assertTrue(source.hasNumber(3));
+        assertFalse(source.hasNumber(2));
+        assertTrue(source.hasNumber(1));
+        assertEquals("first", source.getLabel(1));
+        assertEquals("1", source.map().get("a"));
+        assertEquals(2, source.set().size());
+    }
+
+    @Test
+    public void missingPropertyReported() {
+        Map<String, List<String>> properties = basicProperties("s1");
+        properties.remove("basic.bool");
+        try {
+            PropertySources.create(BasicPropertySource.class, properties);
+            fail("Should not create a source without all properties");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Property basic.bool not found", e.getMessage());
+        }
+    }
+
+    @Test
+    public void boundSourceUsesCurrentThreadValues() {
+        BasicPropertySource source = PropertySources
+                .createBound(BasicPropertySource.class);
+
+        PropertySources.bind(basicProperties("s1"));
+        assertEquals("s1", source.string());
+        PropertySources.bind(basicProperties("s3"));
+        assertEquals("s3", source.string());
+        assertFalse(source.isString1or2());
+
+        PropertySources.bind(null);
+        try {
+            source.string();
+            fail("Should not work without bound values");
+        } catch (IllegalStateException expected) {
+            // Thrown as such by the generated class
+        }
+    }
+}
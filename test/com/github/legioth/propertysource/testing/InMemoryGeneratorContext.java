@@ -0,0 +1,208 @@
+package com.github.legioth.propertysource.testing;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gwt.core.ext.CachedGeneratorResult;
+import com.google.gwt.core.ext.GeneratorContext;
+import com.google.gwt.core.ext.PropertyOracle;
+import com.google.gwt.core.ext.RebindResult;
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.linker.Artifact;
+import com.google.gwt.core.ext.linker.ArtifactSet;
+import com.google.gwt.core.ext.linker.GeneratedResource;
+import com.google.gwt.core.ext.typeinfo.TypeOracle;
+import com.google.gwt.dev.resource.ResourceOracle;
+
+/**
+ * Generator context that keeps the generated sources in memory. One context
+ * corresponds to one compile: the generated classes are shared by all
+ * permutations, while the property oracle is changed for each permutation
+ * using {@link #setPropertyOracle(PropertyOracle)}.
+ */
+public class InMemoryGeneratorContext implements GeneratorContext {
+    private final TypeOracle typeOracle;
+    private PropertyOracle propertyOracle;
+
+    private CachedGeneratorResult cachedGeneratorResult;
+
+    private final Map<PrintWriter, String> pending = new HashMap<PrintWriter, String>();
+    private final Map<PrintWriter, StringWriter> pendingContent = new HashMap<PrintWriter, StringWriter>();
+    private final Map<String, String> generatedSources = new LinkedHashMap<String, String>();
+    private final ArtifactSet artifacts = new ArtifactSet();
+
+    /**
+     * Creates a context for a new compile.
+     *
+     * @param typeOracle
+     *            the type oracle of the compile
+     * @param propertyOracle
+     *            the property oracle of the first permutation
+     */
+    public InMemoryGeneratorContext(TypeOracle typeOracle,
+            PropertyOracle propertyOracle) {
+        this.typeOracle = typeOracle;
+        this.propertyOracle = propertyOracle;
+    }
+
+    /**
+     * Sets the property oracle for the next permutation.
+     */
+    public void setPropertyOracle(PropertyOracle propertyOracle) {
+        this.propertyOracle = propertyOracle;
+    }
+
+    /**
+     * Sets the result that the generator may reuse from a previous compile,
+     * as if generator result caching was enabled.
+     *
+     * @param result
+     *            the result of the previous compile, or <code>null</code> to
+     *            disable caching
+     */
+    public void setCachedResult(final RebindResult result) {
+        if (result == null) {
+            cachedGeneratorResult = null;
+            return;
+        }
+        cachedGeneratorResult = new CachedGeneratorResult() {
+            @Override
+            public String getResultTypeName() {
+                return result.getResultTypeName();
+            }
+
+            @Override
+            public long getTimeGenerated() {
+                return 0;
+            }
+
+            @Override
+            public Object getClientData(String key) {
+                Map<String, Serializable> clientData = result
+                        .getClientDataMap();
+                return clientData == null ? null : clientData.get(key);
+            }
+
+            @Override
+            public boolean isTypeCached(String typeName) {
+                return typeName.equals(result.getResultTypeName());
+            }
+        };
+    }
+
+    /**
+     * Gets the names of all classes that have been committed.
+     */
+    public synchronized Set<String> getGeneratedClassNames() {
+        return generatedSources.keySet();
+    }
+
+    /**
+     * Gets the source of a committed class.
+     *
+     * @param className
+     *            the fully qualified name of the class
+     * @return the source, or <code>null</code> if no such class has been
+     *         committed
+     */
+    public synchronized String getGeneratedSource(String className) {
+        return generatedSources.get(className);
+    }
+
+    /**
+     * Gets the artifacts that have been committed, e.g. for passing them to a
+     * linker.
+     */
+    public synchronized ArtifactSet getArtifacts() {
+        return new ArtifactSet(artifacts);
+    }
+
+    @Override
+    public synchronized PrintWriter tryCreate(TreeLogger logger,
+            String packageName, String simpleName) {
+        String className = packageName + "." + simpleName;
+        if (typeOracle.findType(className) != null
+                || generatedSources.containsKey(className)
+                || pending.containsValue(className)) {
+            return null;
+        }
+
+        StringWriter content = new StringWriter();
+        PrintWriter writer = new PrintWriter(content);
+        pending.put(writer, className);
+        pendingContent.put(writer, content);
+        return writer;
+    }
+
+    @Override
+    public synchronized void commit(TreeLogger logger, PrintWriter pw) {
+        String className = pending.remove(pw);
+        if (className == null) {
+            throw new IllegalStateException("Unknown writer");
+        }
+        pw.flush();
+        generatedSources.put(className, pendingContent.remove(pw).toString());
+    }
+
+    @Override
+    public TypeOracle getTypeOracle() {
+        return typeOracle;
+    }
+
+    @Override
+    public PropertyOracle getPropertyOracle() {
+        return propertyOracle;
+    }
+
+    @Override
+    public CachedGeneratorResult getCachedGeneratorResult() {
+        return cachedGeneratorResult;
+    }
+
+    @Override
+    public boolean isGeneratorResultCachingEnabled() {
+        return cachedGeneratorResult != null;
+    }
+
+    @Override
+    public boolean isProdMode() {
+        return true;
+    }
+
+    @Override
+    public boolean checkRebindRuleAvailable(String sourceTypeName) {
+        return false;
+    }
+
+    @Override
+    public boolean tryReuseTypeFromCache(String typeName) {
+        return false;
+    }
+
+    @Override
+    public synchronized void commitArtifact(TreeLogger logger,
+            Artifact<?> artifact) {
+        artifacts.replace(artifact);
+    }
+
+    @Override
+    public GeneratedResource commitResource(TreeLogger logger, OutputStream os) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public OutputStream tryCreateResource(TreeLogger logger, String partialPath) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ResourceOracle getResourcesOracle() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.legioth.propertysource.testing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gwt.core.ext.BadPropertyValueException;
+import com.google.gwt.core.ext.ConfigurationProperty;
+import com.google.gwt.core.ext.DefaultConfigurationProperty;
+import com.google.gwt.core.ext.DefaultSelectionProperty;
+import com.google.gwt.core.ext.PropertyOracle;
+import com.google.gwt.core.ext.SelectionProperty;
+import com.google.gwt.core.ext.TreeLogger;
+
+/**
+ * Property oracle for one permutation, with property values defined in code.
+ * Each selection property has a current value and a set of possible values,
+ * and {@link #getPermutations()} gives an oracle for every combination of the
+ * possible values, like the GWT compiler does.
+ */
+public class InMemoryPropertyOracle implements PropertyOracle {
+    private final Map<String, SelectionProperty> selectionProperties = new LinkedHashMap<String, SelectionProperty>();
+    private final Map<String, ConfigurationProperty> configurationProperties = new LinkedHashMap<String, ConfigurationProperty>();
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    /**
+     * Defines a selection property without a fallback value. The first
+     * possible value is used as the current value.
+     *
+     * @param name
+     *            the name of the property
+     * @param possibleValues
+     *            all values of the property
+     * @return this oracle
+     */
+    public InMemoryPropertyOracle setSelectionProperty(String name,
+            String... possibleValues) {
+        selectionProperties.put(name, new DefaultSelectionProperty(
+                possibleValues[0], "", name, new TreeSet<String>(
+                        Arrays.asList(possibleValues))));
+        return this;
+    }
+
+    /**
+     * Sets the fallback value of a defined selection property.
+     *
+     * @param name
+     *            the name of the property
+     * @param fallbackValue
+     *            the fallback value
+     * @return this oracle
+     */
+    public InMemoryPropertyOracle setFallbackValue(String name,
+            String fallbackValue) {
+        SelectionProperty property = getDefinedSelectionProperty(name);
+        selectionProperties.put(name, new DefaultSelectionProperty(
+                property.getCurrentValue(), fallbackValue, name,
+                property.getPossibleValues()));
+        return this;
+    }
+
+    /**
+     * Defines a configuration property.
+     *
+     * @param name
+     *            the name of the property
+     * @param values
+     *            the values of the property
+     * @return this oracle
+     */
+    public InMemoryPropertyOracle setConfigurationProperty(String name,
+            String... values) {
+        configurationProperties.put(name, new DefaultConfigurationProperty(
+                name, Collections.unmodifiableList(new ArrayList<String>(
+                        Arrays.asList(values)))));
+        return this;
+    }
+
+    /**
+     * Creates a copy of this oracle where a selection property has a
+     * different current value.
+     *
+     * @param name
+     *            the name of a defined selection property
+     * @param value
+     *            one of the possible values of the property
+     * @return a new oracle
+     */
+    public InMemoryPropertyOracle withSelectionValue(String name, String value) {
+        SelectionProperty property = getDefinedSelectionProperty(name);
+        if (!property.getPossibleValues().contains(value)) {
+            throw new IllegalArgumentException(value
+                    + " is not a possible value of " + name);
+        }
+
+        InMemoryPropertyOracle copy = copy();
+        copy.selectionProperties.put(name, new DefaultSelectionProperty(value,
+                property.getFallbackValue(), name,
+                property.getPossibleValues()));
+        return copy;
+    }
+
+    /**
+     * Creates an oracle for every combination of the possible values of the
+     * selection properties.
+     *
+     * @return a list of new oracles
+     */
+    public List<InMemoryPropertyOracle> getPermutations() {
+        List<InMemoryPropertyOracle> permutations = new ArrayList<InMemoryPropertyOracle>();
+        permutations.add(copy());
+        for (SelectionProperty property : selectionProperties.values()) {
+            List<InMemoryPropertyOracle> expanded = new ArrayList<InMemoryPropertyOracle>();
+            for (InMemoryPropertyOracle permutation : permutations) {
+                for (String value : property.getPossibleValues()) {
+                    expanded.add(permutation.withSelectionValue(
+                            property.getName(), value));
+                }
+            }
+            permutations = expanded;
+        }
+        return permutations;
+    }
+
+    /**
+     * Gets the number of times a property has been looked up from this
+     * oracle, including lookups of properties that are not defined.
+     */
+    public int getLookupCount() {
+        return lookups.get();
+    }
+
+    @Override
+    public SelectionProperty getSelectionProperty(TreeLogger logger,
+            String propertyName) throws BadPropertyValueException {
+        lookups.incrementAndGet();
+        SelectionProperty property = selectionProperties.get(propertyName);
+        if (property == null) {
+            throw new BadPropertyValueException(propertyName);
+        }
+        return property;
+    }
+
+    @Override
+    public ConfigurationProperty getConfigurationProperty(String propertyName)
+            throws BadPropertyValueException {
+        lookups.incrementAndGet();
+        ConfigurationProperty property = configurationProperties
+                .get(propertyName);
+        if (property == null) {
+            throw new BadPropertyValueException(propertyName);
+        }
+        return property;
+    }
+
+    private SelectionProperty getDefinedSelectionProperty(String name) {
+        SelectionProperty property = selectionProperties.get(name);
+        if (property == null) {
+            throw new IllegalArgumentException(name
+                    + " is not a selection property");
+        }
+        return property;
+    }
+
+    private InMemoryPropertyOracle copy() {
+        InMemoryPropertyOracle copy = new InMemoryPropertyOracle();
+        copy.selectionProperties.putAll(selectionProperties);
+        copy.configurationProperties.putAll(configurationProperties);
+        return copy;
+    }
+}
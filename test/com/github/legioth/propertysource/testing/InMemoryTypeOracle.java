@@ -0,0 +1,287 @@
+package com.github.legioth.propertysource.testing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import com.google.gwt.core.ext.TreeLogger;
+import com.google.gwt.core.ext.typeinfo.TypeOracle;
+import com.google.gwt.dev.javac.testing.GeneratorContextBuilder;
+import com.google.gwt.dev.javac.testing.Source;
+
+/**
+ * Builds a type oracle from sources held in memory, the same way the GWT
+ * compiler builds one from the source path. The sources of the emulated JRE,
+ * the GWT core classes and the client side classes of this library are always
+ * included, so that added types can use everything that client side code
+ * normally can.
+ * <p>
+ * Building a type oracle compiles all the sources, which takes a few seconds.
+ * Tests should share one oracle for all their types.
+ */
+public class InMemoryTypeOracle {
+
+    // Path prefixes of the sources that are always included
+    private static final String EMULATION_PREFIX = "com/google/gwt/emul/";
+    private static final String INTRINSIC_PREFIX = "com/google/gwt/dev/jjs/intrinsic/";
+    private static final String[] CLIENT_PREFIXES = {
+            "com/google/gwt/core/client/", "com/google/gwt/core/shared/",
+            "jsinterop/annotations/", "com/github/legioth/propertysource/client/" };
+
+    // A file for finding the jar or directory of each prefix above
+    private static final String EMULATION_MARKER = "java/lang/Object.java";
+    private static final String INTRINSIC_MARKER = "com/google/gwt/lang/Array.java";
+    private static final String[] CLIENT_MARKERS = { "GWT.java", "GWT.java",
+            "JsType.java", "PropertySource.java" };
+
+    private static Map<String, String> baseSources;
+
+    private final Map<String, String> sources = new LinkedHashMap<String, String>();
+
+    /**
+     * Adds the source of a class, read from the class path. Nested classes
+     * are added by adding their top level class.
+     *
+     * @param type
+     *            the top level class to add
+     * @return this builder
+     */
+    public InMemoryTypeOracle addClass(Class<?> type) {
+        String path = toPath(type.getName());
+        String source = readSource(path);
+        if (source == null) {
+            throw new IllegalArgumentException("No source found for "
+                    + type.getName());
+        }
+        sources.put(path, source);
+        return this;
+    }
+
+    /**
+     * Adds the sources of all classes in a package and its subpackages, read
+     * from the class path.
+     *
+     * @param packageName
+     *            the name of the package to add
+     * @return this builder
+     */
+    public InMemoryTypeOracle addPackage(String packageName) {
+        String prefix = packageName.replace('.', '/') + "/";
+        sources.putAll(findSources(prefix, prefix));
+        return this;
+    }
+
+    /**
+     * Adds the source of a top level type.
+     *
+     * @param typeName
+     *            the fully qualified name of the type
+     * @param source
+     *            the Java source of the type
+     * @return this builder
+     */
+    public InMemoryTypeOracle addSource(String typeName, String source) {
+        sources.put(toPath(typeName), source);
+        return this;
+    }
+
+    /**
+     * Compiles all sources into a new type oracle.
+     *
+     * @param logger
+     *            logger for compilation errors
+     * @return the type oracle
+     * @throws IllegalStateException
+     *             if an added type could not be compiled
+     */
+    public TypeOracle build(TreeLogger logger) {
+        GeneratorContextBuilder builder = GeneratorContextBuilder
+                .newEmptyBuilder();
+        builder.setTreeLogger(logger);
+        for (Entry<String, String> entry : getBaseSources().entrySet()) {
+            builder.add(new StringSource(entry.getKey(), entry.getValue()));
+        }
+        for (Entry<String, String> entry : sources.entrySet()) {
+            builder.add(new StringSource(entry.getKey(), entry.getValue()));
+        }
+
+        TypeOracle typeOracle = builder.buildGeneratorContext()
+                .getTypeOracle();
+
+        // Types that don't compile are silently left out of the oracle
+        for (String path : sources.keySet()) {
+            String typeName = path.substring(0, path.length() - 5).replace(
+                    '/', '.');
+            if (typeOracle.findType(typeName) == null) {
+                throw new IllegalStateException("Could not compile "
+                        + typeName + ", see the log for details");
+            }
+        }
+        return typeOracle;
+    }
+
+    private static synchronized Map<String, String> getBaseSources() {
+        if (baseSources == null) {
+            Map<String, String> found = new LinkedHashMap<String, String>();
+            for (Entry<String, String> entry : findSources(EMULATION_PREFIX,
+                    EMULATION_PREFIX + EMULATION_MARKER).entrySet()) {
+                found.put(entry.getKey().substring(EMULATION_PREFIX.length()),
+                        entry.getValue());
+            }
+            for (Entry<String, String> entry : findSources(INTRINSIC_PREFIX,
+                    INTRINSIC_PREFIX + INTRINSIC_MARKER).entrySet()) {
+                found.put(entry.getKey().substring(INTRINSIC_PREFIX.length()),
+                        entry.getValue());
+            }
+            for (int i = 0; i < CLIENT_PREFIXES.length; i++) {
+                found.putAll(findSources(CLIENT_PREFIXES[i], CLIENT_PREFIXES[i]
+                        + CLIENT_MARKERS[i]));
+            }
+            baseSources = found;
+        }
+        return baseSources;
+    }
+
+    private static String toPath(String typeName) {
+        return typeName.replace('.', '/') + ".java";
+    }
+
+    private static String readSource(String path) {
+        InputStream in = InMemoryTypeOracle.class.getClassLoader()
+                .getResourceAsStream(path);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return read(in);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read " + path, e);
+        }
+    }
+
+    /**
+     * Finds all Java sources on the class path with the given path prefix,
+     * both in directories and in jar files. The directories and jar files to
+     * search are found using a marker resource, since jar files don't always
+     * have entries for directories. When the same source is found many times,
+     * the first one is used like for classes.
+     */
+    private static Map<String, String> findSources(String prefix,
+            String marker) {
+        Map<String, String> found = new LinkedHashMap<String, String>();
+        try {
+            Enumeration<URL> markers = InMemoryTypeOracle.class
+                    .getClassLoader().getResources(marker);
+            while (markers.hasMoreElements()) {
+                URL url = markers.nextElement();
+                if ("jar".equals(url.getProtocol())) {
+                    JarFile jarFile = ((JarURLConnection) url.openConnection())
+                            .getJarFile();
+                    Enumeration<JarEntry> entries = jarFile.entries();
+                    while (entries.hasMoreElements()) {
+                        JarEntry entry = entries.nextElement();
+                        String name = entry.getName();
+                        if (isSource(prefix, name) && !found.containsKey(name)) {
+                            found.put(name,
+                                    read(jarFile.getInputStream(entry)));
+                        }
+                    }
+                } else if ("file".equals(url.getProtocol())) {
+                    // Go up from the marker to the root of the class path entry
+                    File root = new File(url.toURI());
+                    for (String segment : marker.split("/")) {
+                        if (!segment.isEmpty()) {
+                            root = root.getParentFile();
+                        }
+                    }
+                    for (File file : listFiles(new File(root, prefix))) {
+                        String name = root.toURI().relativize(file.toURI())
+                                .getPath();
+                        if (isSource(prefix, name) && !found.containsKey(name)) {
+                            found.put(name, read(new FileInputStream(file)));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not find sources in " + prefix,
+                    e);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException("Could not find sources in " + prefix,
+                    e);
+        }
+        return found;
+    }
+
+    private static boolean isSource(String prefix, String name) {
+        // Super source is not used for the type oracle
+        return name.startsWith(prefix) && name.endsWith(".java")
+                && !name.contains("/super/");
+    }
+
+    private static List<File> listFiles(File directory) {
+        List<File> files = new ArrayList<File>();
+        File[] children = directory.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    files.addAll(listFiles(child));
+                } else {
+                    files.add(child);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                out.write(buffer, 0, count);
+            }
+            return out.toString("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            throw new RuntimeException(e);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class StringSource implements Source {
+        private final String path;
+        private final String source;
+
+        public StringSource(String path, String source) {
+            this.path = path;
+            this.source = source;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+    }
+}
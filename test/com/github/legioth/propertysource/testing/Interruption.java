@@ -0,0 +1,31 @@
+package com.github.legioth.propertysource.testing;
+
+/**
+ * Lets fixtures check whether the thread running a dynamic method has been
+ * interrupted. Fixtures are also compiled as client side code, which can't
+ * use threads, so the type oracle of the tests gets {@link #CLIENT_SOURCE}
+ * instead of the source of this class.
+ */
+public class Interruption {
+
+    /**
+     * Client side version of this class, which is never interrupted.
+     */
+    public static final String CLIENT_SOURCE = "package "
+            + Interruption.class.getPackage().getName() + ";\n"
+            + "public class Interruption {\n"
+            + "    public static boolean interrupted() {\n"
+            + "        return false;\n" + "    }\n" + "}\n";
+
+    private Interruption() {
+        // Only static helpers
+    }
+
+    /**
+     * Checks whether the current thread has been interrupted, clearing the
+     * interrupted status like {@link Thread#interrupted()}.
+     */
+    public static boolean interrupted() {
+        return Thread.interrupted();
+    }
+}
@@ -0,0 +1,101 @@
+package com.github.legioth.propertysource.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gwt.core.ext.TreeLogger;
+
+/**
+ * Logger that keeps every message logged to it or to any of its branches, so
+ * that tests can check what was reported.
+ */
+public class RecordingTreeLogger extends TreeLogger {
+
+    /**
+     * A logged message.
+     */
+    public static class Message {
+        private final Type type;
+        private final String text;
+        private final Throwable caught;
+
+        public Message(Type type, String text, Throwable caught) {
+            this.type = type;
+            this.text = text;
+            this.caught = caught;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public Throwable getCaught() {
+            return caught;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + text
+                    + (caught == null ? "" : " (" + caught + ")");
+        }
+    }
+
+    private final List<Message> messages;
+
+    public RecordingTreeLogger() {
+        this(new ArrayList<Message>());
+    }
+
+    private RecordingTreeLogger(List<Message> messages) {
+        this.messages = messages;
+    }
+
+    @Override
+    public TreeLogger branch(Type type, String msg, Throwable caught,
+            HelpInfo helpInfo) {
+        log(type, msg, caught, helpInfo);
+        return new RecordingTreeLogger(messages);
+    }
+
+    @Override
+    public boolean isLoggable(Type type) {
+        return true;
+    }
+
+    @Override
+    public void log(Type type, String msg, Throwable caught, HelpInfo helpInfo) {
+        synchronized (messages) {
+            messages.add(new Message(type, msg, caught));
+        }
+    }
+
+    /**
+     * Gets the messages of the given type or a more severe one.
+     *
+     * @param type
+     *            the least severe type to include
+     * @return a list of messages in the order they were logged
+     */
+    public List<Message> getMessages(Type type) {
+        List<Message> found = new ArrayList<Message>();
+        synchronized (messages) {
+            for (Message message : messages) {
+                if (!message.getType().isLowerPriorityThan(type)) {
+                    found.add(message);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Gets the errors that have been logged.
+     */
+    public List<Message> getErrors() {
+        return getMessages(Type.ERROR);
+    }
+}